@@ -0,0 +1,204 @@
+package com.stadtiq;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Composite air-quality index (AQI, 0–500) of every row of the {@link ReadingStore}, computed from
+ * its CO₂, PM2,5 and SO₂ readings.
+ * <p>
+ * Each pollutant's reading is truncated to its table's precision and mapped linearly within the
+ * matching breakpoint segment to a sub-index, as in the US EPA AQI; the composite index is the
+ * highest sub-index and that pollutant is reported as dominant. PM2,5 (24 h, µg/m³) and SO₂
+ * (1 h, ppb) use the EPA tables. CO₂ is not part of the EPA index, so its table follows common
+ * indoor-air guidance (800/1000/1500/2000/5000 ppm). Readings above a table's last breakpoint
+ * score 500.
+ * <p>
+ * The index is kept per row in primitive arrays and only recomputed for rows the store reports as
+ * changed, one pollutant column at a time over all changed rows. Rankings of a city's districts
+ * are cached until one of its districts changes.
+ */
+public final class AirQualityIndex {
+
+    /** Index of a row without any of the three readings. */
+    public static final int NO_INDEX = -1;
+    public static final int MAX_INDEX = 500;
+
+    /** Category thresholds: Good, Moderate, Unhealthy for sensitive groups, Unhealthy, Very unhealthy, Hazardous. */
+    private static final int[] CATEGORY_UPPER_BOUNDS = { 50, 100, 150, 200, 300 };
+    public static final int CATEGORY_COUNT = CATEGORY_UPPER_BOUNDS.length + 1;
+
+    private static final int M = ReadingStore.METRIC_COUNT;
+
+    // Pollutants in the index, as store metrics, with their breakpoint tables: segment k maps
+    // concentrations [LOW[k], HIGH[k]] to indices [INDEX_LOW[k], INDEX_HIGH[k]]
+    static final int[] POLLUTANTS = {
+            ReadingStore.metricIndex(ReadingStore.KEY_PM25),
+            ReadingStore.metricIndex(ReadingStore.KEY_SO2),
+            ReadingStore.metricIndex(ReadingStore.KEY_CO2)
+    };
+    // Truncation applied before the lookup, as a multiplier: 10 keeps one decimal
+    private static final double[] PRECISION = { 10, 1, 1 };
+    private static final double[][] LOW = {
+            { 0.0, 9.1, 35.5, 55.5, 125.5, 225.5 },
+            { 0, 36, 76, 186, 305, 605 },
+            { 0, 801, 1001, 1501, 2001, 5001 }
+    };
+    private static final double[][] HIGH = {
+            { 9.0, 35.4, 55.4, 125.4, 225.4, 325.4 },
+            { 35, 75, 185, 304, 604, 1004 },
+            { 800, 1000, 1500, 2000, 5000, 40000 }
+    };
+    private static final int[] INDEX_LOW = { 0, 51, 101, 151, 201, 301 };
+    private static final int[] INDEX_HIGH = { 50, 100, 150, 200, 300, 500 };
+
+    private final ReadingStore store;
+    private final CityCatalog catalog;
+    private final int rowCount;
+
+    // Store rows as of the last refresh (changed rows only), composite index and dominant metric per row
+    private final double[] matrix;
+    private final int[] index;
+    private final int[] dominant;
+    private final BitSet changedRows = new BitSet();
+    private int[] dirtyRows = new int[64];
+    private long seenVersion = -1;
+
+    // Per city: districts ordered worst first (only those with an index), rebuilt when stale
+    private final int[][] rankings;
+    private final BitSet staleRankings = new BitSet();
+
+    private static AirQualityIndex instance;
+
+    /**
+     * Returns the process-wide index of the shared store, so activity recreation does not
+     * recompute every row.
+     */
+    public static synchronized AirQualityIndex getInstance(CityCatalog catalog, ReadingStore store) {
+        if (instance == null) {
+            instance = new AirQualityIndex(catalog, store);
+        }
+        return instance;
+    }
+
+    public AirQualityIndex(CityCatalog catalog, ReadingStore store) {
+        this.catalog = catalog;
+        this.store = store;
+        this.rowCount = store.getRowCount();
+        this.matrix = new double[rowCount * M];
+        this.index = new int[rowCount];
+        this.dominant = new int[rowCount];
+        Arrays.fill(index, NO_INDEX);
+        Arrays.fill(dominant, -1);
+        this.rankings = new int[catalog.getCityCount()][];
+        staleRankings.set(0, catalog.getCityCount());
+    }
+
+    /**
+     * Returns the composite index of a row, or {@link #NO_INDEX} if it has none of the readings.
+     * @param row A district ID or an {@link ReadingStore#overviewRow(int)} ID.
+     */
+    public synchronized int get(int row) {
+        if (row < 0 || row >= rowCount) return NO_INDEX;
+        refresh();
+        return index[row];
+    }
+
+    /**
+     * Returns the store metric with the highest sub-index of a row, or -1 if it has no index.
+     */
+    public synchronized int getDominantMetric(int row) {
+        if (row < 0 || row >= rowCount) return -1;
+        refresh();
+        return dominant[row];
+    }
+
+    /**
+     * Returns the districts of a city that have an index, worst first; ties keep catalog order.
+     * The array is shared and must not be modified.
+     */
+    public synchronized int[] rankDistricts(int cityId) {
+        if (cityId < 0 || cityId >= rankings.length) return new int[0];
+        refresh();
+        if (staleRankings.get(cityId)) {
+            rankings[cityId] = rank(cityId);
+            staleRankings.clear(cityId);
+        }
+        return rankings[cityId];
+    }
+
+    /**
+     * Returns the category (0 = Good … 5 = Hazardous) of an index, or -1 for {@link #NO_INDEX}.
+     */
+    public static int category(int aqi) {
+        if (aqi < 0) return -1;
+        for (int c = 0; c < CATEGORY_UPPER_BOUNDS.length; c++) {
+            if (aqi <= CATEGORY_UPPER_BOUNDS[c]) return c;
+        }
+        return CATEGORY_UPPER_BOUNDS.length;
+    }
+
+    /**
+     * Recomputes the rows that changed since the last refresh. Cheap if nothing changed.
+     */
+    public synchronized void refresh() {
+        if (store.getVersion() == seenVersion) return;
+        changedRows.clear();
+        seenVersion = store.copyRowsChangedSince(seenVersion, rowCount, matrix, changedRows);
+        int count = changedRows.cardinality();
+        if (count == 0) return;
+        if (dirtyRows.length < count) dirtyRows = new int[Math.max(count, dirtyRows.length * 2)];
+        int n = 0;
+        for (int row = changedRows.nextSetBit(0); row >= 0; row = changedRows.nextSetBit(row + 1)) {
+            dirtyRows[n++] = row;
+            index[row] = NO_INDEX;
+            dominant[row] = -1;
+            if (row < catalog.getTotalDistrictCount()) staleRankings.set(catalog.getCityOfDistrict(row));
+        }
+        // One pollutant column at a time over all changed rows, keeping the running maximum
+        for (int p = 0; p < POLLUTANTS.length; p++) {
+            int metric = POLLUTANTS[p];
+            for (int i = 0; i < n; i++) {
+                int row = dirtyRows[i];
+                int sub = subIndex(p, matrix[row * M + metric]);
+                if (sub > index[row]) {
+                    index[row] = sub;
+                    dominant[row] = metric;
+                }
+            }
+        }
+    }
+
+    /**
+     * Maps a concentration to the sub-index of pollutant {@code p} (a position in {@link #POLLUTANTS}),
+     * or {@link #NO_INDEX} for a missing reading.
+     */
+    static int subIndex(int p, double concentration) {
+        if (Double.isNaN(concentration)) return NO_INDEX;
+        double c = Math.floor(Math.max(0, concentration) * PRECISION[p] + 1e-9) / PRECISION[p];
+        double[] low = LOW[p];
+        double[] high = HIGH[p];
+        for (int k = 0; k < high.length; k++) {
+            if (c <= high[k]) {
+                return (int) Math.round((INDEX_HIGH[k] - INDEX_LOW[k]) / (high[k] - low[k]) * (c - low[k]) + INDEX_LOW[k]);
+            }
+        }
+        return MAX_INDEX;
+    }
+
+    // Sorts a city's districts by one packed key each: index high, inverted district ID low
+    private int[] rank(int cityId) {
+        int first = catalog.getFirstDistrictId(cityId);
+        int districts = catalog.getDistrictCount(cityId);
+        long[] keys = new long[districts];
+        int n = 0;
+        for (int d = first; d < first + districts; d++) {
+            if (index[d] == NO_INDEX) continue;
+            keys[n++] = ((long) index[d] << 32) | (0xFFFFFFFFL - d);
+        }
+        Arrays.sort(keys, 0, n);
+        int[] ranked = new int[n];
+        for (int i = 0; i < n; i++) ranked[i] = (int) (0xFFFFFFFFL - (keys[n - 1 - i] & 0xFFFFFFFFL));
+        return ranked;
+    }
+}
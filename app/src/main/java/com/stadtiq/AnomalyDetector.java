@@ -0,0 +1,143 @@
+package com.stadtiq;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Online anomaly detection for readings. Every (district, metric) pair keeps an exponentially
+ * weighted moving mean and variance ({@link Ewma}); a new reading whose z-score against them is
+ * at least {@link #Z_THRESHOLD} is flagged. Each reading updates its pair in O(1), so nothing
+ * is recomputed over the history when readings arrive.
+ * <p>
+ * The detector follows the {@link ReadingStore}: {@link #observe(ReadingStore)} picks up the
+ * readings changed since the last call. {@link #flagSeries(float[])} runs the same test over a
+ * history series, e.g. to mark points on the graph.
+ */
+public final class AnomalyDetector {
+
+    // Weight of a new reading in the moving statistics (an effective window of about 20 readings)
+    static final double ALPHA = 0.1;
+    // |z| from which a reading counts as anomalous
+    static final double Z_THRESHOLD = 3.0;
+    // Readings a pair needs before its statistics are trusted
+    static final int WARMUP_READINGS = 10;
+
+    private static final int M = ReadingStore.METRIC_COUNT;
+
+    /**
+     * Exponentially weighted moving mean and variance of one stream of readings. The first readings
+     * are weighted 1/n instead of {@link #ALPHA}, so the statistics start as the plain mean and
+     * variance instead of being biased towards the first reading.
+     */
+    static final class Ewma {
+        private double mean;
+        private double variance;
+        private int count;
+
+        /**
+         * Adds a reading and returns its z-score against the statistics before it, or NaN while
+         * warming up. Readings equal to a constant history score 0; others score infinitely high.
+         */
+        double update(double value) {
+            double z = Double.NaN;
+            double diff = value - mean;
+            if (count >= WARMUP_READINGS) {
+                z = variance > 0 ? diff / Math.sqrt(variance) : (diff == 0 ? 0 : Math.copySign(Double.POSITIVE_INFINITY, diff));
+            }
+            double weight = Math.max(ALPHA, 1.0 / (count + 1));
+            double increment = weight * diff;
+            mean += increment;
+            variance = (1 - weight) * (variance + diff * increment);
+            if (count < WARMUP_READINGS) count++;
+            return z;
+        }
+    }
+
+    private final int rowCount;
+    private final Ewma[] cells;
+    private final BitSet flagged = new BitSet();
+    // Store rows as of the last observation, and the staging copy of changed rows
+    private final double[] seen;
+    private final double[] incoming;
+    private final BitSet changedRows = new BitSet();
+    private long seenVersion = -1;
+
+    private static AnomalyDetector instance;
+
+    /**
+     * Returns the process-wide detector following the shared store, so its moving statistics
+     * survive activity recreation instead of warming up again.
+     */
+    public static synchronized AnomalyDetector getInstance(ReadingStore store) {
+        if (instance == null) {
+            instance = new AnomalyDetector(store.getRowCount());
+        }
+        return instance;
+    }
+
+    public AnomalyDetector(int rowCount) {
+        this.rowCount = rowCount;
+        this.cells = new Ewma[rowCount * M];
+        this.seen = new double[rowCount * M];
+        this.incoming = new double[rowCount * M];
+        Arrays.fill(seen, Double.NaN);
+    }
+
+    /**
+     * Feeds every reading of {@code store} that changed since the last call into its pair's
+     * statistics and updates its flag. Missing readings clear the flag.
+     * @return Whether any flag changed.
+     */
+    public synchronized boolean observe(ReadingStore store) {
+        if (store.getVersion() == seenVersion) return false;
+        changedRows.clear();
+        seenVersion = store.copyRowsChangedSince(seenVersion, rowCount, incoming, changedRows);
+        boolean flagsChanged = false;
+        for (int row = changedRows.nextSetBit(0); row >= 0; row = changedRows.nextSetBit(row + 1)) {
+            for (int m = 0; m < M; m++) {
+                int cell = row * M + m;
+                double value = incoming[cell];
+                if (Double.doubleToLongBits(value) == Double.doubleToLongBits(seen[cell])) continue;
+                seen[cell] = value;
+                boolean anomalous = false;
+                if (!Double.isNaN(value)) {
+                    Ewma ewma = cells[cell];
+                    if (ewma == null) ewma = cells[cell] = new Ewma();
+                    anomalous = Math.abs(ewma.update(value)) >= Z_THRESHOLD;
+                }
+                if (flagged.get(cell) != anomalous) {
+                    flagged.set(cell, anomalous);
+                    flagsChanged = true;
+                }
+            }
+        }
+        return flagsChanged;
+    }
+
+    /**
+     * Returns whether the current reading of a (district, metric) pair was flagged as anomalous.
+     */
+    public synchronized boolean isAnomalous(int row, int metric) {
+        if (row < 0 || row >= rowCount || metric < 0 || metric >= M) return false;
+        return flagged.get(row * M + metric);
+    }
+
+    /**
+     * Runs the detector over a series, oldest first, and returns the indices of the anomalous
+     * samples. Scaling the series by a positive factor or shifting it does not change the result,
+     * so normalized graph values can be passed.
+     */
+    public static int[] flagSeries(float[] values) {
+        Ewma ewma = new Ewma();
+        int[] indices = new int[8];
+        int count = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (Float.isNaN(values[i])) continue;
+            if (Math.abs(ewma.update(values[i])) >= Z_THRESHOLD) {
+                if (count == indices.length) indices = Arrays.copyOf(indices, count * 2);
+                indices[count++] = i;
+            }
+        }
+        return Arrays.copyOf(indices, count);
+    }
+}
@@ -0,0 +1,245 @@
+package com.stadtiq;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders and encodes one graph image per (district, metric) pair, e.g. for the monthly report.
+ * Graphs are processed in parallel on a small worker pool. A memory budget caps how many
+ * full-size bitmaps are alive at the same time: a worker only starts rendering once it holds
+ * one of the budget's permits, and bitmaps are recycled through a {@link BitmapPool} sized to
+ * the same number. Progress and a final {@link Summary} are reported on the main thread.
+ */
+public final class BatchGraphExport {
+
+    private static final String TAG = "BatchGraphExport";
+    private static final int MAX_WORKERS = 3;
+    // Share of the heap the batch may fill with bitmaps
+    private static final int HEAP_BUDGET_DIVISOR = 8;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * One graph of the batch.
+     */
+    public static final class Item {
+        final int districtId;
+        final String dataKey;
+        final String cityName;
+        final String districtName;
+        final String label;
+        final int color;
+
+        public Item(int districtId, String dataKey, String cityName, String districtName, String label, int color) {
+            this.districtId = districtId;
+            this.dataKey = dataKey;
+            this.cityName = cityName;
+            this.districtName = districtName;
+            this.label = label;
+            this.color = color;
+        }
+    }
+
+    /**
+     * Loads the timestamped samples of a graph (normalized 0..1). Called on worker threads.
+     */
+    public interface DataSource {
+        HistorySeries load(Item item);
+    }
+
+    /**
+     * Creates the destination of a graph's file. Called on worker threads.
+     */
+    public interface DestinationFactory {
+        GraphExportJob.Destination create(Item item, String fileName);
+    }
+
+    /**
+     * Receives progress and the result on the main thread.
+     */
+    public interface Listener {
+        void onProgress(int completed, int total);
+        void onFinished(Summary summary);
+    }
+
+    /**
+     * Outcome of a batch.
+     */
+    public static final class Summary {
+        public final int total;
+        public final int succeeded;
+        public final int failed;
+        public final boolean cancelled;
+        public final long elapsedMillis;
+        public final List<String> failedItems;
+
+        Summary(int total, int succeeded, int failed, boolean cancelled, long elapsedMillis, List<String> failedItems) {
+            this.total = total;
+            this.succeeded = succeeded;
+            this.failed = failed;
+            this.cancelled = cancelled;
+            this.elapsedMillis = elapsedMillis;
+            this.failedItems = failedItems;
+        }
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger succeeded = new AtomicInteger();
+    private final List<String> failedItems = Collections.synchronizedList(new ArrayList<>());
+    private final ExecutorService workers;
+    private final Semaphore bitmapBudget;
+    private final BitmapPool bitmapPool;
+    private volatile boolean finished;
+
+    private final List<Item> items;
+    private final GraphRenderer.Style style;
+    private final float density;
+    private final int width, height;
+    private final String timePeriod;
+    private final DataSource dataSource;
+    private final DestinationFactory destinations;
+    private final Listener listener;
+    private final long startMillis = System.currentTimeMillis();
+
+    private BatchGraphExport(List<Item> items, GraphRenderer.Style style, float density, int width, int height,
+                             String timePeriod, DataSource dataSource, DestinationFactory destinations, Listener listener) {
+        this.items = new ArrayList<>(items);
+        this.style = style;
+        this.density = density;
+        this.width = width;
+        this.height = height;
+        this.timePeriod = timePeriod;
+        this.dataSource = dataSource;
+        this.destinations = destinations;
+        this.listener = listener;
+
+        long bitmapBytes = (long) width * height * 4;
+        long budgetBytes = Runtime.getRuntime().maxMemory() / HEAP_BUDGET_DIVISOR;
+        int workerCount = Math.max(1, Math.min(MAX_WORKERS, Runtime.getRuntime().availableProcessors() - 1));
+        int liveBitmaps = (int) Math.max(1, Math.min(workerCount, budgetBytes / bitmapBytes));
+        this.bitmapBudget = new Semaphore(liveBitmaps);
+        this.bitmapPool = new BitmapPool(liveBitmaps);
+        this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "BatchGraphExport");
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+        Log.i(TAG, "Batch of " + this.items.size() + " graphs, " + workerCount + " workers, at most "
+                + liveBitmaps + " live bitmaps of " + (bitmapBytes / 1024) + " KB");
+    }
+
+    /**
+     * Starts the batch. Graphs are {@code width} × {@code height} pixels at {@code density} and encoded as PNG.
+     */
+    public static BatchGraphExport start(List<Item> items, GraphRenderer.Style style, float density, int width, int height,
+                                         String timePeriod, DataSource dataSource, DestinationFactory destinations,
+                                         Listener listener) {
+        BatchGraphExport batch = new BatchGraphExport(items, style, density, width, height, timePeriod,
+                dataSource, destinations, listener);
+        if (batch.items.isEmpty()) {
+            batch.finish();
+            return batch;
+        }
+        for (Item item : batch.items) {
+            batch.workers.execute(() -> batch.exportOne(item));
+        }
+        batch.workers.shutdown();
+        return batch;
+    }
+
+    /**
+     * Stops the batch; graphs already written are kept, the one being written is discarded.
+     */
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    public boolean isRunning() {
+        return !finished;
+    }
+
+    private void exportOne(Item item) {
+        try {
+            if (cancelled.get()) return;
+            bitmapBudget.acquireUninterruptibly();
+            Bitmap bitmap = null;
+            GraphExportJob.Destination destination = null;
+            try {
+                if (cancelled.get()) return;
+                HistorySeries series = dataSource.load(item);
+                List<GraphRenderer.Dataset> datasets = Collections.singletonList(
+                        new GraphRenderer.Dataset(series, item.color, item.label));
+                GraphRenderer renderer = new GraphRenderer(style, density);
+                renderer.setData(item.cityName, item.districtName, datasets, timePeriod, null);
+                bitmap = bitmapPool.acquire(width, height);
+                renderer.render(new Canvas(bitmap), width, height, false);
+
+                destination = destinations.create(item, buildFileName(item));
+                try (OutputStream out = new BufferedOutputStream(destination.open(), BUFFER_SIZE)) {
+                    if (!bitmap.compress(Bitmap.CompressFormat.PNG, 100, out)) {
+                        throw new IOException("Bitmap could not be compressed");
+                    }
+                }
+                if (cancelled.get()) {
+                    destination.discard();
+                    return;
+                }
+                destination.publish();
+                succeeded.incrementAndGet();
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "exportOne: Failed for district " + item.districtId + ", " + item.dataKey, e);
+                if (destination != null) destination.discard();
+                failedItems.add(item.districtName + " / " + item.label);
+            } finally {
+                bitmapPool.release(bitmap);
+                bitmapBudget.release();
+            }
+        } finally {
+            int done = completed.incrementAndGet();
+            mainHandler.post(() -> listener.onProgress(done, items.size()));
+            if (done == items.size()) finish();
+        }
+    }
+
+    private void finish() {
+        bitmapPool.clear();
+        long elapsed = System.currentTimeMillis() - startMillis;
+        int ok = succeeded.get();
+        List<String> failures = new ArrayList<>(failedItems);
+        Summary summary = new Summary(items.size(), ok, failures.size(), cancelled.get(), elapsed, failures);
+        Log.i(TAG, "finish: " + ok + "/" + items.size() + " exported, " + failures.size() + " failed, cancelled="
+                + summary.cancelled + ", " + elapsed + " ms");
+        mainHandler.post(() -> {
+            finished = true;
+            listener.onFinished(summary);
+        });
+    }
+
+    private static String buildFileName(Item item) {
+        String district = item.districtName != null ? item.districtName : "Gesamt";
+        String name = item.cityName + "_" + district + "_" + item.dataKey + ".png";
+        // Keep file names portable: letters, digits, '-', '_' and '.' only
+        StringBuilder sb = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            sb.append(Character.isLetterOrDigit(c) || c == '-' || c == '.' ? c : '_');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,90 @@
+package com.stadtiq;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Small pool of ARGB_8888 bitmaps reused across consecutive graph exports.
+ * A pooled bitmap is handed out again if its allocation is large enough for the requested size
+ * ({@link Bitmap#reconfigure}), so exporting the same graph repeatedly does not allocate a new
+ * multi-megabyte pixel buffer every time. All methods are thread-safe.
+ */
+public final class BitmapPool {
+
+    private static final String TAG = "BitmapPool";
+
+    private final int maxSize;
+    private final ArrayDeque<Bitmap> free = new ArrayDeque<>();
+    private boolean closed;
+
+    /**
+     * @param maxSize Maximum number of idle bitmaps kept; further released bitmaps are recycled.
+     */
+    public BitmapPool(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns a cleared (transparent) bitmap of the given size, reusing a pooled one if possible.
+     */
+    public synchronized Bitmap acquire(int width, int height) {
+        long requiredBytes = (long) width * height * 4;
+        Iterator<Bitmap> iterator = free.iterator();
+        while (iterator.hasNext()) {
+            Bitmap candidate = iterator.next();
+            if (candidate.isRecycled()) {
+                iterator.remove();
+                continue;
+            }
+            if (candidate.isMutable() && candidate.getAllocationByteCount() >= requiredBytes) {
+                iterator.remove();
+                if (candidate.getWidth() != width || candidate.getHeight() != height) {
+                    candidate.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+                }
+                candidate.eraseColor(Color.TRANSPARENT);
+                Log.d(TAG, "acquire: Reusing pooled bitmap for " + width + "x" + height);
+                return candidate;
+            }
+        }
+        Log.d(TAG, "acquire: Allocating new bitmap " + width + "x" + height);
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * Returns a bitmap to the pool. The caller must not use it afterwards.
+     */
+    public synchronized void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) return;
+        if (closed) {
+            // Released by a job that outlived the pool's owner
+            bitmap.recycle();
+            return;
+        }
+        if (free.size() >= maxSize) {
+            // Keep the most recently used sizes; drop the oldest idle bitmap.
+            free.pollFirst().recycle();
+        }
+        free.addLast(bitmap);
+    }
+
+    /**
+     * Recycles all idle bitmaps.
+     */
+    public synchronized void clear() {
+        for (Bitmap bitmap : free) bitmap.recycle();
+        free.clear();
+    }
+
+    /**
+     * Recycles all idle bitmaps, and every bitmap released from now on, e.g. by an export that is
+     * still finishing when the pool's owner is destroyed.
+     */
+    public synchronized void close() {
+        closed = true;
+        clear();
+    }
+}
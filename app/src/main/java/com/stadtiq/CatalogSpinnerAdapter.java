@@ -0,0 +1,96 @@
+package com.stadtiq;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.TextView;
+
+/**
+ * Spinner adapter that binds directly to the {@link CityCatalog} instead of a copied list of names.
+ * Position 0 is always the localized hint ("Select city"/"Select district") with item ID
+ * {@link CityCatalog#NO_ID}; all other positions report the catalog ID as their item ID,
+ * so {@code Spinner.getSelectedItemId()} yields the selected city or district ID directly.
+ * Switching the city of a district adapter only changes an offset, no list is rebuilt.
+ */
+public class CatalogSpinnerAdapter extends BaseAdapter {
+
+    private final LayoutInflater inflater;
+    private final CityCatalog catalog;
+    private final String hintText;
+    private final boolean showsDistricts;
+    private int cityId = CityCatalog.NO_ID; // Only used for district adapters
+
+    private CatalogSpinnerAdapter(Context context, CityCatalog catalog, String hintText, boolean showsDistricts) {
+        this.inflater = LayoutInflater.from(context);
+        this.catalog = catalog;
+        this.hintText = hintText;
+        this.showsDistricts = showsDistricts;
+    }
+
+    public static CatalogSpinnerAdapter forCities(Context context, CityCatalog catalog) {
+        return new CatalogSpinnerAdapter(context, catalog, context.getString(R.string.hint_select_city), false);
+    }
+
+    public static CatalogSpinnerAdapter forDistricts(Context context, CityCatalog catalog) {
+        return new CatalogSpinnerAdapter(context, catalog, context.getString(R.string.hint_select_district), true);
+    }
+
+    /**
+     * Shows the districts of the given city (district adapters only).
+     * @param cityId The city ID, or {@link CityCatalog#NO_ID} to show only the hint.
+     */
+    public void setCity(int cityId) {
+        if (this.cityId == cityId) return;
+        this.cityId = cityId;
+        notifyDataSetChanged();
+    }
+
+    @Override
+    public int getCount() {
+        if (!showsDistricts) return 1 + catalog.getCityCount();
+        return 1 + (cityId == CityCatalog.NO_ID ? 0 : catalog.getDistrictCount(cityId));
+    }
+
+    @Override
+    public String getItem(int position) {
+        int id = getIdAtPosition(position);
+        if (id == CityCatalog.NO_ID) return hintText;
+        return showsDistricts ? catalog.getDistrictName(id) : catalog.getCityName(id);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return getIdAtPosition(position);
+    }
+
+    /**
+     * Maps a spinner position to its catalog ID; the hint row maps to {@link CityCatalog#NO_ID}.
+     */
+    public int getIdAtPosition(int position) {
+        if (position <= 0 || position >= getCount()) return CityCatalog.NO_ID;
+        return showsDistricts ? catalog.getDistrictId(cityId, position - 1) : position - 1;
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return true;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        return bindText(position, convertView, parent, android.R.layout.simple_spinner_item);
+    }
+
+    @Override
+    public View getDropDownView(int position, View convertView, ViewGroup parent) {
+        return bindText(position, convertView, parent, android.R.layout.simple_spinner_dropdown_item);
+    }
+
+    private View bindText(int position, View convertView, ViewGroup parent, int layoutRes) {
+        View view = convertView != null ? convertView : inflater.inflate(layoutRes, parent, false);
+        ((TextView) view).setText(getItem(position));
+        return view;
+    }
+}
@@ -0,0 +1,201 @@
+package com.stadtiq;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * City-wide mean, median, minimum and maximum of every metric across a city's districts,
+ * shown while "Select district" is active.
+ * <p>
+ * For every (city, metric) pair the aggregates keep the districts' readings as a sorted array
+ * plus their sum, so all four statistics are O(1) to read. The first refresh builds these arrays
+ * from the whole district matrix in parallel on the common fork-join pool. Later refreshes only
+ * look at the rows the {@link ReadingStore} reports as changed and move each changed reading to
+ * its new place in the sorted array, so a new reading costs O(districts of its city) instead of
+ * a full recomputation. Missing (NaN) readings are left out of the statistics.
+ */
+public final class CityAggregates {
+
+    // District readings a fork-join leaf aggregates before it stops splitting
+    private static final int LEAF_CELLS = 4096;
+    private static final int M = ReadingStore.METRIC_COUNT;
+
+    /**
+     * Statistics of one metric across the districts of a city.
+     */
+    public static final class Stats {
+        public static final Stats EMPTY = new Stats(0, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+
+        /** Number of districts with a reading. */
+        public final int count;
+        public final double mean, median, min, max;
+
+        Stats(int count, double mean, double median, double min, double max) {
+            this.count = count;
+            this.mean = mean;
+            this.median = median;
+            this.min = min;
+            this.max = max;
+        }
+    }
+
+    private final CityCatalog catalog;
+    private final ReadingStore store;
+    private final int districtCount;
+
+    // District rows of the store as of the last refresh, and the staging copy of changed rows
+    private final double[] matrix;
+    private final double[] incoming;
+    private final BitSet changedRows = new BitSet();
+    // Per (city * M + metric): the non-NaN readings in ascending order (first sortedCounts[i] entries) and their sum
+    private final double[][] sorted;
+    private final int[] sortedCounts;
+    private final double[] sums;
+    private long seenVersion = -1;
+    private boolean built;
+
+    private static CityAggregates instance;
+
+    /**
+     * Returns the process-wide aggregates of the shared store, so activity recreation does not
+     * rebuild them from the whole matrix.
+     */
+    public static synchronized CityAggregates getInstance(CityCatalog catalog, ReadingStore store) {
+        if (instance == null) {
+            instance = new CityAggregates(catalog, store);
+        }
+        return instance;
+    }
+
+    public CityAggregates(CityCatalog catalog, ReadingStore store) {
+        this.catalog = catalog;
+        this.store = store;
+        this.districtCount = catalog.getTotalDistrictCount();
+        this.matrix = new double[districtCount * M];
+        this.incoming = new double[districtCount * M];
+        int units = catalog.getCityCount() * M;
+        this.sorted = new double[units][];
+        this.sortedCounts = new int[units];
+        this.sums = new double[units];
+    }
+
+    /**
+     * Returns the statistics of a metric across the districts of a city, bringing the aggregates
+     * up to date with the store first.
+     */
+    public synchronized Stats get(int cityId, int metric) {
+        if (cityId < 0 || cityId >= catalog.getCityCount() || metric < 0 || metric >= M) return Stats.EMPTY;
+        refresh();
+        int unit = cityId * M + metric;
+        int count = sortedCounts[unit];
+        if (count == 0) return Stats.EMPTY;
+        double[] values = sorted[unit];
+        double median = (count & 1) == 1 ? values[count / 2] : (values[count / 2 - 1] + values[count / 2]) / 2;
+        return new Stats(count, sums[unit] / count, median, values[0], values[count - 1]);
+    }
+
+    /**
+     * Applies the readings that changed since the last refresh. Cheap if nothing changed.
+     */
+    public synchronized void refresh() {
+        if (built && store.getVersion() == seenVersion) return;
+        changedRows.clear();
+        seenVersion = store.copyRowsChangedSince(seenVersion, districtCount, incoming, changedRows);
+        int changed = changedRows.cardinality();
+        if (changed == 0) return;
+
+        // When most districts changed (e.g. a full feed), rebuilding in parallel beats patching
+        if (!built || changed > districtCount / 2) {
+            for (int row = changedRows.nextSetBit(0); row >= 0; row = changedRows.nextSetBit(row + 1)) {
+                System.arraycopy(incoming, row * M, matrix, row * M, M);
+            }
+            ForkJoinPool.commonPool().invoke(new BuildTask(0, sorted.length));
+            built = true;
+            return;
+        }
+        for (int row = changedRows.nextSetBit(0); row >= 0; row = changedRows.nextSetBit(row + 1)) {
+            int unitBase = catalog.getCityOfDistrict(row) * M;
+            for (int m = 0; m < M; m++) {
+                int index = row * M + m;
+                double oldValue = matrix[index];
+                double newValue = incoming[index];
+                if (Double.doubleToLongBits(oldValue) == Double.doubleToLongBits(newValue)) continue;
+                replace(unitBase + m, oldValue, newValue);
+                matrix[index] = newValue;
+            }
+        }
+    }
+
+    // Moves one reading of a (city, metric) unit from oldValue to newValue; NaN means absent
+    private void replace(int unit, double oldValue, double newValue) {
+        double[] values = sorted[unit];
+        int count = sortedCounts[unit];
+        if (!Double.isNaN(oldValue)) {
+            int at = Arrays.binarySearch(values, 0, count, oldValue);
+            System.arraycopy(values, at + 1, values, at, count - at - 1);
+            count--;
+            sums[unit] -= oldValue;
+        }
+        if (!Double.isNaN(newValue)) {
+            int at = Arrays.binarySearch(values, 0, count, newValue);
+            if (at < 0) at = -at - 1;
+            System.arraycopy(values, at, values, at + 1, count - at);
+            values[at] = newValue;
+            count++;
+            sums[unit] += newValue;
+        }
+        sortedCounts[unit] = count;
+    }
+
+    /**
+     * Aggregates the (city, metric) units {@code [from, to)}, splitting the range while it covers
+     * more than {@link #LEAF_CELLS} district readings. Units write disjoint slots, so leaves need
+     * no locking; {@code invoke} publishes their results to the calling thread.
+     */
+    private final class BuildTask extends RecursiveAction {
+        private final int from, to;
+
+        BuildTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1 && cellCount() > LEAF_CELLS) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new BuildTask(from, mid), new BuildTask(mid, to));
+                return;
+            }
+            for (int unit = from; unit < to; unit++) build(unit);
+        }
+
+        private long cellCount() {
+            long cells = 0;
+            for (int unit = from; unit < to; unit++) cells += catalog.getDistrictCount(unit / M);
+            return cells;
+        }
+
+        private void build(int unit) {
+            int city = unit / M;
+            int metric = unit % M;
+            int first = catalog.getFirstDistrictId(city);
+            int districts = catalog.getDistrictCount(city);
+            double[] values = sorted[unit];
+            if (values == null || values.length < districts) values = sorted[unit] = new double[districts];
+            int count = 0;
+            double sum = 0;
+            for (int d = first; d < first + districts; d++) {
+                double value = matrix[d * M + metric];
+                if (Double.isNaN(value)) continue;
+                values[count++] = value;
+                sum += value;
+            }
+            Arrays.sort(values, 0, count);
+            sortedCounts[unit] = count;
+            sums[unit] = sum;
+        }
+    }
+}
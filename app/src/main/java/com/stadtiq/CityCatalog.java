@@ -0,0 +1,176 @@
+package com.stadtiq;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Catalog of all supported cities and their districts, loaded once from the bundled
+ * {@code city_catalog.tsv} asset into integer-ID tables.
+ * City IDs run from 0 to {@link #getCityCount()} - 1. District IDs are global
+ * (0 to {@link #getTotalDistrictCount()} - 1) and the districts of one city are contiguous,
+ * so a city's districts are the ID range [firstDistrictId, firstDistrictId + districtCount).
+ * Name lookups go through hash indexes; the "Select city/district" hint rows of the
+ * spinners are represented by {@link #NO_ID} rather than by their localized strings.
+ */
+public final class CityCatalog {
+
+    private static final String TAG = "CityCatalog";
+    private static final String ASSET_NAME = "city_catalog.tsv";
+
+    // ID used for "nothing selected" (the hint row of a spinner)
+    public static final int NO_ID = -1;
+
+    private static CityCatalog instance;
+
+    private final String[] cityNames;
+    private final int[] cityFirstDistrict; // length cityCount + 1, CSR-style offsets into districtNames
+    private final String[] districtNames;
+    private final int[] districtCity;
+    private final Map<String, Integer> cityIndex;
+    private final Map<String, Integer> districtIndex; // key: cityId + '/' + districtName
+
+    private CityCatalog(List<String> cities, List<List<String>> districtsPerCity) {
+        int cityCount = cities.size();
+        int totalDistricts = 0;
+        for (List<String> list : districtsPerCity) totalDistricts += list.size();
+
+        cityNames = cities.toArray(new String[0]);
+        cityFirstDistrict = new int[cityCount + 1];
+        districtNames = new String[totalDistricts];
+        districtCity = new int[totalDistricts];
+        cityIndex = new HashMap<>(cityCount * 2);
+        districtIndex = new HashMap<>(totalDistricts * 2);
+
+        int next = 0;
+        for (int c = 0; c < cityCount; c++) {
+            cityIndex.put(cityNames[c], c);
+            cityFirstDistrict[c] = next;
+            for (String district : districtsPerCity.get(c)) {
+                districtNames[next] = district;
+                districtCity[next] = c;
+                districtIndex.put(districtIndexKey(c, district), next);
+                next++;
+            }
+        }
+        cityFirstDistrict[cityCount] = next;
+    }
+
+    /**
+     * Returns the process-wide catalog, loading it from the assets on first use.
+     * If the asset cannot be read, an empty catalog is returned so the UI still shows its hints.
+     * @param context Any context; only its application assets are used.
+     */
+    public static synchronized CityCatalog getInstance(Context context) {
+        if (instance == null) {
+            try (Reader reader = new InputStreamReader(
+                    context.getApplicationContext().getAssets().open(ASSET_NAME), StandardCharsets.UTF_8)) {
+                instance = parse(reader);
+                Log.i(TAG, "getInstance: Loaded " + instance.getCityCount() + " cities and "
+                        + instance.getTotalDistrictCount() + " districts from '" + ASSET_NAME + "'.");
+            } catch (IOException e) {
+                Log.e(TAG, "getInstance: Failed to load '" + ASSET_NAME + "'. Using empty catalog.", e);
+                instance = new CityCatalog(new ArrayList<>(), new ArrayList<>());
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Parses catalog lines of the form {@code <city>\t<district>\t<district>...}.
+     * Blank lines and lines starting with '#' are ignored; a repeated city name extends the
+     * district list of its first occurrence.
+     */
+    static CityCatalog parse(Reader source) throws IOException {
+        List<String> cities = new ArrayList<>();
+        List<List<String>> districtsPerCity = new ArrayList<>();
+        Map<String, Integer> seen = new HashMap<>();
+        BufferedReader reader = source instanceof BufferedReader
+                ? (BufferedReader) source : new BufferedReader(source);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty() || line.charAt(0) == '#') continue;
+            String[] fields = line.split("\t");
+            String city = fields[0].trim();
+            if (city.isEmpty()) continue;
+            Integer cityId = seen.get(city);
+            if (cityId == null) {
+                cityId = cities.size();
+                seen.put(city, cityId);
+                cities.add(city);
+                districtsPerCity.add(new ArrayList<>(fields.length - 1));
+            }
+            List<String> target = districtsPerCity.get(cityId);
+            for (int i = 1; i < fields.length; i++) {
+                String district = fields[i].trim();
+                if (!district.isEmpty()) target.add(district);
+            }
+        }
+        return new CityCatalog(cities, districtsPerCity);
+    }
+
+    private static String districtIndexKey(int cityId, String district) {
+        return cityId + "/" + district;
+    }
+
+    public int getCityCount() {
+        return cityNames.length;
+    }
+
+    public String getCityName(int cityId) {
+        return cityNames[cityId];
+    }
+
+    /**
+     * @return The ID of the city with the given name, or {@link #NO_ID}.
+     */
+    public int findCity(String name) {
+        Integer id = name != null ? cityIndex.get(name) : null;
+        return id != null ? id : NO_ID;
+    }
+
+    public int getTotalDistrictCount() {
+        return districtNames.length;
+    }
+
+    public int getDistrictCount(int cityId) {
+        return cityFirstDistrict[cityId + 1] - cityFirstDistrict[cityId];
+    }
+
+    public int getFirstDistrictId(int cityId) {
+        return cityFirstDistrict[cityId];
+    }
+
+    /**
+     * Returns the global district ID of the n-th district of a city.
+     */
+    public int getDistrictId(int cityId, int indexInCity) {
+        return cityFirstDistrict[cityId] + indexInCity;
+    }
+
+    public String getDistrictName(int districtId) {
+        return districtNames[districtId];
+    }
+
+    public int getCityOfDistrict(int districtId) {
+        return districtCity[districtId];
+    }
+
+    /**
+     * @return The global ID of the named district within the city, or {@link #NO_ID}.
+     */
+    public int findDistrict(int cityId, String name) {
+        if (cityId == NO_ID || name == null) return NO_ID;
+        Integer id = districtIndex.get(districtIndexKey(cityId, name));
+        return id != null ? id : NO_ID;
+    }
+}
@@ -0,0 +1,236 @@
+package com.stadtiq;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Exports the recorded readings of the selected series as CSV, one row per reading:
+ * <pre>
+ *   timestamp_utc,city,district,metric,value,unit
+ * </pre>
+ * Values are the readings as recorded, in the unit the {@link ReadingStore} keeps the metric in
+ * ({@link ReadingStore#unit(int)}). They are not the graph's normalized points or rollup averages.
+ * Each series is streamed in chunks of {@link #CHUNK_SIZE} samples from a {@link SampleReader}:
+ * persisted readings are paged from the {@link ReadingDatabase} on its primary key, and pairs
+ * without persisted history read their history segment. Neither a series nor the file is ever held
+ * in memory as a whole, so multi-year, minute-resolution exports run in constant memory. Rows are
+ * written through one buffered writer.
+ */
+public final class CsvHistoryExport {
+
+    public static final String MIME_TYPE = "text/csv";
+    static final String HEADER = "timestamp_utc,city,district,metric,value,unit\n";
+    // Samples read from a series at a time
+    static final int CHUNK_SIZE = 4096;
+
+    private static final int WRITER_BUFFER_SIZE = 64 * 1024;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    /**
+     * Streams the samples of one series, oldest first. Called on the export thread.
+     */
+    public interface SampleReader {
+        /**
+         * Copies the next samples into the arrays, at most as many as they hold.
+         * @return The number of samples copied, or 0 once the series is exhausted.
+         */
+        int read(long[] timestamps, double[] values);
+    }
+
+    /**
+     * Opens the samples of a series for the exported period. Called on the export thread.
+     */
+    public interface SeriesSource {
+        /**
+         * @return A reader over the series' samples, or null if it has none.
+         */
+        SampleReader open(Series series) throws IOException;
+    }
+
+    /**
+     * One exported series.
+     */
+    public static final class Series {
+        public final String dataKey;
+        final int metric;
+        public final int districtId;
+        final String cityName;
+        final String districtName;
+
+        /**
+         * @param districtId The catalog district ID, or {@link CityCatalog#NO_ID} for the city-wide default.
+         * @param districtName The district name, or null for the city-wide default.
+         */
+        public Series(String dataKey, int districtId, String cityName, String districtName) {
+            this.dataKey = dataKey;
+            this.metric = ReadingStore.metricIndex(dataKey);
+            this.districtId = districtId;
+            this.cityName = cityName;
+            this.districtName = districtName;
+        }
+    }
+
+    private CsvHistoryExport() { }
+
+    /**
+     * Returns a reader paging through the persisted readings of a (district, metric) pair with
+     * {@code fromMillis <= timestamp <= toMillis}.
+     */
+    public static SampleReader databaseReader(ReadingDatabase database, int row, int metric, long fromMillis, long toMillis) {
+        return new SampleReader() {
+            private long afterMillis = fromMillis - 1;
+            private boolean exhausted;
+
+            @Override
+            public int read(long[] timestamps, double[] values) {
+                if (exhausted) return 0;
+                int count = database.readPage(row, metric, afterMillis, toMillis, timestamps, values);
+                if (count < timestamps.length) exhausted = true;
+                if (count > 0) afterMillis = timestamps[count - 1];
+                return count;
+            }
+        };
+    }
+
+    /**
+     * Returns a reader over the most recent samples of a history segment that cover
+     * {@code periodMillis} at the segment's cadence, the same samples the graph shows for it.
+     */
+    public static SampleReader segmentReader(HistorySegmentStore.Segment segment, long periodMillis) {
+        int count = (int) Math.min(segment.size(), Math.max(1, periodMillis / segment.stepMillis));
+        return new SampleReader() {
+            private int next = segment.size() - count;
+            private float[] scratch = new float[0];
+
+            @Override
+            public int read(long[] timestamps, double[] values) {
+                int length = Math.min(timestamps.length, segment.size() - next);
+                if (length <= 0) return 0;
+                if (scratch.length < length) scratch = new float[length];
+                segment.read(next, scratch, 0, length);
+                for (int i = 0; i < length; i++) {
+                    timestamps[i] = segment.startMillis + (long) (next + i) * segment.stepMillis;
+                    // Widen without float noise, so 0.3f is exported as 0.3
+                    values[i] = Double.parseDouble(Float.toString(scratch[i]));
+                }
+                next += length;
+                return length;
+            }
+        };
+    }
+
+    /**
+     * Returns export content writing the samples {@code source} opens for each series.
+     */
+    public static GraphExportJob.Content create(SeriesSource source, List<Series> series) {
+        List<Series> snapshot = new ArrayList<>(series);
+        return out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITER_BUFFER_SIZE);
+            write(writer, source, snapshot, CHUNK_SIZE);
+            writer.flush(); // The job closes the underlying stream
+        };
+    }
+
+    static void write(Writer writer, SeriesSource source, List<Series> series, int chunkSize) throws IOException {
+        writer.write(HEADER);
+        long[] timestamps = new long[chunkSize];
+        double[] values = new double[chunkSize];
+        StringBuilder row = new StringBuilder(96);
+        for (Series s : series) {
+            if (s.metric < 0) continue;
+            SampleReader reader = source.open(s);
+            if (reader == null) continue;
+
+            // City, district, metric and unit are the same for every row of the series
+            StringBuilder prefixBuilder = new StringBuilder();
+            prefixBuilder.append(',');
+            appendField(prefixBuilder, s.cityName);
+            prefixBuilder.append(',');
+            appendField(prefixBuilder, s.districtName);
+            prefixBuilder.append(',');
+            appendField(prefixBuilder, s.dataKey);
+            prefixBuilder.append(',');
+            String prefix = prefixBuilder.toString();
+            StringBuilder suffixBuilder = new StringBuilder();
+            suffixBuilder.append(',');
+            appendField(suffixBuilder, ReadingStore.unit(s.metric));
+            suffixBuilder.append('\n');
+            String suffix = suffixBuilder.toString();
+
+            int count;
+            while ((count = reader.read(timestamps, values)) > 0) {
+                for (int i = 0; i < count; i++) {
+                    row.setLength(0);
+                    appendIsoUtc(row, timestamps[i]);
+                    row.append(prefix);
+                    if (!Double.isNaN(values[i])) row.append(values[i]); // Missing readings stay empty
+                    row.append(suffix);
+                    writer.append(row);
+                }
+            }
+        }
+    }
+
+    // Quotes a CSV field if needed (e.g. "PM2,5")
+    static void appendField(StringBuilder sb, String value) {
+        if (value == null) return;
+        boolean needsQuotes = false;
+        for (int i = 0; i < value.length() && !needsQuotes; i++) {
+            char c = value.charAt(i);
+            needsQuotes = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!needsQuotes) {
+            sb.append(value);
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') sb.append('"');
+            sb.append(c);
+        }
+        sb.append('"');
+    }
+
+    /**
+     * Appends {@code yyyy-MM-ddTHH:mm:ssZ} for epoch millis without allocating a formatter or Date
+     * (civil-from-days conversion of the proleptic Gregorian calendar).
+     */
+    static void appendIsoUtc(StringBuilder sb, long epochMillis) {
+        long days = Math.floorDiv(epochMillis, MILLIS_PER_DAY);
+        long millisOfDay = epochMillis - days * MILLIS_PER_DAY;
+        long z = days + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long year = yearOfEra + era * 400;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthPrime = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * monthPrime + 2) / 5 + 1;
+        long month = monthPrime < 10 ? monthPrime + 3 : monthPrime - 9;
+        if (month <= 2) year++;
+
+        long secondsOfDay = millisOfDay / 1000;
+        sb.append(year).append('-');
+        appendTwoDigits(sb, month);
+        sb.append('-');
+        appendTwoDigits(sb, day);
+        sb.append('T');
+        appendTwoDigits(sb, secondsOfDay / 3600);
+        sb.append(':');
+        appendTwoDigits(sb, (secondsOfDay / 60) % 60);
+        sb.append(':');
+        appendTwoDigits(sb, secondsOfDay % 60);
+        sb.append('Z');
+    }
+
+    private static void appendTwoDigits(StringBuilder sb, long value) {
+        if (value < 10) sb.append('0');
+        sb.append(value);
+    }
+}
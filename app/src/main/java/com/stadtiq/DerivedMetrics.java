@@ -0,0 +1,189 @@
+package com.stadtiq;
+
+import java.util.Arrays;
+
+/**
+ * Metrics of the {@link ReadingStore} that are computed from other readings instead of being
+ * stored: dew point and absolute humidity, from air temperature, relative humidity and pressure.
+ * <p>
+ * Every derived quantity is a node that declares its inputs and a formula; inputs are metric IDs
+ * or other nodes, so the definitions form a small dependency graph. Values are computed lazily
+ * when read and memoized per row together with a stamp, the newest write version among the
+ * stored readings they depend on. A read re-evaluates a node only if that stamp moved, so a
+ * pressure change recomputes vapour pressure and both metrics built on it, a change of, say,
+ * CO₂ recomputes nothing, and derived values nobody reads are never computed.
+ * <p>
+ * Not thread-safe; the store calls it under its own lock.
+ */
+final class DerivedMetrics {
+
+    /**
+     * Computes a node's value from its inputs, in the order they were declared.
+     */
+    interface Formula {
+        double compute(double[] inputs);
+    }
+
+    private static final int M = ReadingStore.METRIC_COUNT;
+    private static final int T = ReadingStore.metricIndex(ReadingStore.KEY_T);
+    private static final int RH = ReadingStore.metricIndex(ReadingStore.KEY_RH);
+    private static final int P = ReadingStore.metricIndex(ReadingStore.KEY_P);
+    private static final int TD = ReadingStore.metricIndex(ReadingStore.KEY_TD);
+    private static final int ABS_HUMIDITY = ReadingStore.metricIndex(ReadingStore.KEY_ABS_HUMIDITY);
+
+    // Intermediate nodes get IDs after the metric IDs
+    private static final int VAPOUR_PRESSURE = M;
+
+    // Magnus formula over water (WMO): saturation vapour pressure in hPa of a temperature in °C
+    private static final double MAGNUS_E0 = 6.112;
+    private static final double MAGNUS_A = 17.62;
+    private static final double MAGNUS_B = 243.12;
+    // Specific gas constant of water vapour, J/(kg·K)
+    private static final double R_VAPOUR = 461.5;
+
+    // The nodes: their IDs, inputs and formulas. A missing input (NaN) makes the value missing,
+    // except for the pressure, which only refines the result.
+    private static final int[] NODE_IDS = { VAPOUR_PRESSURE, TD, ABS_HUMIDITY };
+    private static final int[][] NODE_INPUTS = {
+            { T, RH, P },
+            { VAPOUR_PRESSURE, P },
+            { VAPOUR_PRESSURE, T }
+    };
+    private static final Formula[] NODE_FORMULAS = {
+            // Actual vapour pressure (hPa), with the enhancement factor of moist air
+            in -> in[1] / 100 * enhancementFactor(in[2]) * saturationVapourPressure(in[0]),
+            // Temperature at which the vapour would saturate: the inverted Magnus formula
+            in -> {
+                double x = Math.log(in[0] / (MAGNUS_E0 * enhancementFactor(in[1])));
+                return MAGNUS_B * x / (MAGNUS_A - x);
+            },
+            // Vapour density from the ideal gas law, in g/m³
+            in -> in[0] * 100 / (R_VAPOUR * (in[1] + 273.15)) * 1000
+    };
+    private static final int NODE_COUNT = NODE_IDS.length;
+    // Inputs resolved to node positions (-1 for stored metrics), per node
+    private static final int[][] INPUT_NODES = new int[NODE_COUNT][];
+    private static final int[] DERIVED_METRICS;
+
+    static {
+        int metrics = 0;
+        for (int n = 0; n < NODE_COUNT; n++) {
+            INPUT_NODES[n] = new int[NODE_INPUTS[n].length];
+            for (int i = 0; i < NODE_INPUTS[n].length; i++) INPUT_NODES[n][i] = nodeOf(NODE_INPUTS[n][i]);
+            if (NODE_IDS[n] < M) metrics++;
+        }
+        DERIVED_METRICS = new int[metrics];
+        for (int n = 0, i = 0; n < NODE_COUNT; n++) {
+            if (NODE_IDS[n] < M) DERIVED_METRICS[i++] = NODE_IDS[n];
+        }
+    }
+
+    static double saturationVapourPressure(double celsius) {
+        return MAGNUS_E0 * Math.exp(MAGNUS_A * celsius / (MAGNUS_B + celsius));
+    }
+
+    // WMO enhancement factor of moist air at a pressure in hPa; 1 if the pressure is unknown
+    static double enhancementFactor(double hectopascal) {
+        if (Double.isNaN(hectopascal) || hectopascal <= 0) return 1;
+        return 1.0016 + 3.15e-6 * hectopascal - 0.074 / hectopascal;
+    }
+
+    /**
+     * Returns whether a metric is computed by this class rather than stored.
+     */
+    static boolean isDerived(int metric) {
+        return nodeOf(metric) >= 0;
+    }
+
+    /**
+     * Returns whether a stored metric is an input of a derived metric.
+     */
+    static boolean isInput(int metric) {
+        for (int n = 0; n < NODE_COUNT; n++) {
+            for (int input : NODE_INPUTS[n]) {
+                if (input == metric) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the IDs of the derived metrics.
+     */
+    static int[] metrics() {
+        return DERIVED_METRICS.clone();
+    }
+
+    // Returns the position of a node, or -1 for a stored metric
+    private static int nodeOf(int id) {
+        for (int n = 0; n < NODE_COUNT; n++) {
+            if (NODE_IDS[n] == id) return n;
+        }
+        return -1;
+    }
+
+    private final double[] values;
+    private final long[] cellVersions;
+    // Per row * NODE_COUNT + node: memoized value and the stamp it was computed for (-1: never)
+    private final double[] memoValues;
+    private final long[] memoStamps;
+    // Input values per node while it is evaluated; nodes never recurse into themselves
+    private final double[][] scratch = new double[NODE_COUNT][];
+    // Stamp of the node evaluated last, passed up to its caller
+    private long lastStamp;
+
+    /**
+     * @param values The store's row-major readings.
+     * @param cellVersions The store's write version per reading.
+     */
+    DerivedMetrics(int rowCount, double[] values, long[] cellVersions) {
+        this.values = values;
+        this.cellVersions = cellVersions;
+        this.memoValues = new double[rowCount * NODE_COUNT];
+        this.memoStamps = new long[rowCount * NODE_COUNT];
+        Arrays.fill(memoStamps, -1);
+        for (int n = 0; n < NODE_COUNT; n++) scratch[n] = new double[NODE_INPUTS[n].length];
+    }
+
+    /**
+     * Returns the value of a derived metric of a row, recomputing it only if an input changed.
+     */
+    double get(int row, int metric) {
+        return evaluate(row, nodeOf(metric));
+    }
+
+    /**
+     * Fills the derived metrics of a row into {@code dst}, at their metric IDs plus {@code offset}.
+     */
+    void fillRow(int row, double[] dst, int offset) {
+        for (int n = 0; n < NODE_COUNT; n++) {
+            if (NODE_IDS[n] < M) dst[offset + NODE_IDS[n]] = evaluate(row, n);
+        }
+    }
+
+    private double evaluate(int row, int node) {
+        int[] inputs = NODE_INPUTS[node];
+        int[] inputNodes = INPUT_NODES[node];
+        double[] in = scratch[node];
+        long stamp = 0;
+        for (int i = 0; i < inputs.length; i++) {
+            if (inputNodes[i] >= 0) {
+                in[i] = evaluate(row, inputNodes[i]);
+                stamp = Math.max(stamp, lastStamp);
+            } else {
+                int cell = row * M + inputs[i];
+                in[i] = values[cell];
+                stamp = Math.max(stamp, cellVersions[cell]);
+            }
+        }
+        lastStamp = stamp;
+        int memo = row * NODE_COUNT + node;
+        if (memoStamps[memo] == stamp) return memoValues[memo];
+        // NaN inputs propagate through the formulas
+        double value = NODE_FORMULAS[node].compute(in);
+        if (Double.isInfinite(value)) value = Double.NaN;
+        memoValues[memo] = value;
+        memoStamps[memo] = stamp;
+        return value;
+    }
+}
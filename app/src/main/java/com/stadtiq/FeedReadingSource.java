@@ -0,0 +1,69 @@
+package com.stadtiq;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a sensor feed payload (see {@link ReadingFeedParser}) from a URL on every refresh:
+ * a {@code file:} URL for a local feed file, or an {@code http:} URL, e.g. a local HTTP
+ * stand-in for the sensor backend. The payload is streamed into the store through a
+ * {@link ReadingIngestor}, which is kept across refreshes so older readings never replace newer ones,
+ * and appended to the persistent {@link ReadingDatabase} if one is given.
+ */
+public final class FeedReadingSource implements ReadingSource {
+
+    private static final String TAG = "FeedReadingSource";
+    private static final int CONNECT_TIMEOUT_MS = 5_000;
+    private static final int READ_TIMEOUT_MS = 10_000;
+
+    private final URL url;
+    private final CityCatalog catalog;
+    private final ReadingDatabase database;
+    private ReadingIngestor ingestor;
+    private ReadingStore ingestorStore;
+
+    /**
+     * @param database The history to append ingested readings to, or null.
+     */
+    public FeedReadingSource(URL url, CityCatalog catalog, ReadingDatabase database) {
+        this.url = url;
+        this.catalog = catalog;
+        this.database = database;
+    }
+
+    @Override
+    public boolean refresh(ReadingStore store) throws IOException {
+        if (ingestor == null || ingestorStore != store) {
+            ingestor = new ReadingIngestor(catalog, store, database);
+            ingestorStore = store;
+        }
+        URLConnection connection = url.openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        try {
+            if (connection instanceof HttpURLConnection) {
+                int code = ((HttpURLConnection) connection).getResponseCode();
+                if (code == HttpURLConnection.HTTP_NOT_MODIFIED || code == HttpURLConnection.HTTP_NO_CONTENT) return false;
+                if (code != HttpURLConnection.HTTP_OK) throw new IOException("Feed returned HTTP " + code);
+            }
+            long start = System.nanoTime();
+            long written;
+            try (Reader reader = new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)) {
+                written = ingestor.ingest(reader);
+            }
+            Log.d(TAG, "refresh: Ingested " + written + " readings from " + url + " in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms (rejected total " + ingestor.getRejectedCount()
+                    + ", stale total " + ingestor.getStaleCount() + ").");
+            return written > 0;
+        } finally {
+            if (connection instanceof HttpURLConnection) ((HttpURLConnection) connection).disconnect();
+        }
+    }
+}
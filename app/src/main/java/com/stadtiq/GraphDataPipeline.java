@@ -0,0 +1,113 @@
+package com.stadtiq;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs graph data computations on a background thread and posts the result back to the main thread.
+ * Requests submitted in quick succession are debounced, so only the last one of a burst starts.
+ * Starting a new request cancels the one still in flight, and results of outdated requests
+ * are dropped instead of being delivered. All public methods must be called on the main thread.
+ * @param <T> The type of the computed result.
+ */
+public final class GraphDataPipeline<T> {
+
+    private static final String TAG = "GraphDataPipeline";
+    // Quiet period after the last selection change before work starts
+    private static final long DEBOUNCE_MILLIS = 120;
+
+    /**
+     * A unit of work. Long-running tasks should check {@link Request#isStale()} and return early.
+     */
+    public interface Task<T> {
+        T run(Request request);
+    }
+
+    /**
+     * Handle of one submitted request, used by the task to detect that it has been superseded.
+     */
+    public static final class Request {
+        private final int generation;
+        private final AtomicInteger latestGeneration;
+
+        private Request(int generation, AtomicInteger latestGeneration) {
+            this.generation = generation;
+            this.latestGeneration = latestGeneration;
+        }
+
+        public boolean isStale() {
+            return generation != latestGeneration.get() || Thread.currentThread().isInterrupted();
+        }
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "GraphDataPipeline");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+    private final AtomicInteger latestGeneration = new AtomicInteger();
+    private Runnable pendingStart; // Debounced start of the latest request (main thread only)
+    private Future<?> inFlight;    // Work of the latest started request (main thread only)
+
+    /**
+     * Schedules a computation; the result is delivered on the main thread unless a newer
+     * request is submitted or {@link #cancel()} is called first.
+     */
+    public void submit(Task<T> task, Consumer<T> onResult) {
+        Request request = new Request(latestGeneration.incrementAndGet(), latestGeneration);
+        if (pendingStart != null) mainHandler.removeCallbacks(pendingStart);
+        pendingStart = () -> {
+            pendingStart = null;
+            if (inFlight != null) inFlight.cancel(true);
+            inFlight = executor.submit(() -> {
+                T result;
+                try {
+                    result = task.run(request);
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "submit: Graph data computation failed.", e);
+                    return;
+                }
+                if (request.isStale()) {
+                    Log.d(TAG, "submit: Dropping result of outdated request " + request.generation + ".");
+                    return;
+                }
+                mainHandler.post(() -> {
+                    // A newer request may have been submitted while this result was queued.
+                    if (request.generation == latestGeneration.get()) onResult.accept(result);
+                });
+            });
+        };
+        mainHandler.postDelayed(pendingStart, DEBOUNCE_MILLIS);
+    }
+
+    /**
+     * Invalidates the pending and in-flight requests without starting a new one.
+     */
+    public void cancel() {
+        latestGeneration.incrementAndGet();
+        if (pendingStart != null) {
+            mainHandler.removeCallbacks(pendingStart);
+            pendingStart = null;
+        }
+        if (inFlight != null) {
+            inFlight.cancel(true);
+            inFlight = null;
+        }
+    }
+
+    /**
+     * Cancels all work and stops the background thread. The pipeline cannot be used afterwards.
+     */
+    public void shutdown() {
+        cancel();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,319 @@
+package com.stadtiq;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Environment;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import androidx.annotation.RequiresApi;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Encodes an exported graph (a compressed bitmap, a vector document or raw data) and writes it
+ * to its destination on a background thread.
+ * Progress (bytes written) and the outcome are reported on the main thread. A job can be
+ * cancelled at any time; the partially written output is then discarded by its
+ * {@link Destination}, so half-written files never become visible to other apps.
+ */
+public final class GraphExportJob {
+
+    private static final String TAG = "GraphExportJob";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Minimum number of bytes between two progress callbacks
+    private static final long PROGRESS_STEP_BYTES = 32 * 1024;
+
+    // Exports run one after another; they are I/O bound and each holds a large bitmap.
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "GraphExport");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    /**
+     * What an export writes. {@link #writeTo(OutputStream)} runs on the export thread.
+     */
+    public interface Content {
+        void writeTo(OutputStream out) throws IOException;
+
+        /** Frees resources held for the export (e.g. returns a bitmap to its pool). Called once the job ends. */
+        default void release() { }
+    }
+
+    /**
+     * Where an export is written. Output stays hidden until {@link #publish()} succeeds.
+     */
+    public interface Destination {
+        OutputStream open() throws IOException;
+
+        /**
+         * Makes the completely written output visible.
+         * @return A user-facing location (e.g. a file path), or null if there is none to show.
+         */
+        String publish() throws IOException;
+
+        /** Removes any partially written output. Must not throw. */
+        void discard();
+    }
+
+    /**
+     * Receives job updates on the main thread.
+     */
+    public interface Listener {
+        void onProgress(long bytesWritten);
+        void onSuccess(String location);
+        void onFailure(IOException e);
+        void onCancelled();
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private volatile boolean finished;
+
+    private GraphExportJob() { }
+
+    /**
+     * Starts writing {@code content} to {@code destination}.
+     */
+    public static GraphExportJob start(Content content, Destination destination, Listener listener) {
+        GraphExportJob job = new GraphExportJob();
+        EXECUTOR.execute(() -> job.run(content, destination, listener));
+        return job;
+    }
+
+    /**
+     * Content that compresses {@code bitmap}. Ownership of the bitmap passes to the content;
+     * it is returned to {@code pool} when the job ends.
+     */
+    public static Content bitmapContent(Bitmap bitmap, Bitmap.CompressFormat format, int quality, BitmapPool pool) {
+        return new Content() {
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                if (!bitmap.compress(format, quality, out)) {
+                    throw new IOException("Bitmap could not be compressed as " + format);
+                }
+            }
+
+            @Override
+            public void release() {
+                pool.release(bitmap);
+            }
+        };
+    }
+
+    /**
+     * Requests cancellation. Writing stops at the next buffer flush and the output is discarded.
+     */
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    public boolean isRunning() {
+        return !finished;
+    }
+
+    private void run(Content content, Destination destination, Listener listener) {
+        try {
+            if (cancelled.get()) throw new InterruptedIOException("Export cancelled before start");
+            try (OutputStream out = new ProgressOutputStream(new BufferedOutputStream(destination.open(), BUFFER_SIZE), listener)) {
+                try {
+                    content.writeTo(out);
+                } catch (IOException e) {
+                    // Encoders such as Bitmap.compress swallow the stream's InterruptedIOException
+                    // and report a plain failure instead
+                    if (cancelled.get()) throw new InterruptedIOException("Export cancelled");
+                    throw e;
+                }
+            }
+            if (cancelled.get()) throw new InterruptedIOException("Export cancelled before publishing");
+            String location = destination.publish();
+            Log.i(TAG, "run: Export finished: " + location);
+            post(() -> listener.onSuccess(location));
+        } catch (InterruptedIOException e) {
+            Log.i(TAG, "run: Export cancelled.");
+            destination.discard();
+            post(listener::onCancelled);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "run: Export failed.", e);
+            destination.discard();
+            IOException failure = e instanceof IOException ? (IOException) e : new IOException(e.getMessage(), e);
+            post(() -> listener.onFailure(failure));
+        } finally {
+            content.release();
+        }
+    }
+
+    private void post(Runnable callback) {
+        mainHandler.post(() -> {
+            finished = true;
+            callback.run();
+        });
+    }
+
+    /**
+     * Counts written bytes for progress reporting and aborts the write once the job is cancelled.
+     */
+    private final class ProgressOutputStream extends FilterOutputStream {
+        private final Listener listener;
+        private long written;
+        private long lastReported;
+
+        ProgressOutputStream(OutputStream out, Listener listener) {
+            super(out);
+            this.listener = listener;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            checkCancelled();
+            out.write(b);
+            advance(1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            checkCancelled();
+            out.write(b, off, len);
+            advance(len);
+        }
+
+        private void checkCancelled() throws InterruptedIOException {
+            if (cancelled.get()) throw new InterruptedIOException("Export cancelled");
+        }
+
+        private void advance(int count) {
+            written += count;
+            if (written - lastReported >= PROGRESS_STEP_BYTES) {
+                lastReported = written;
+                long snapshot = written;
+                mainHandler.post(() -> listener.onProgress(snapshot));
+            }
+        }
+    }
+
+    /**
+     * Writes into a new MediaStore record that is marked {@code IS_PENDING} until publishing,
+     * so the gallery and other apps never see an incomplete file.
+     */
+    @RequiresApi(Build.VERSION_CODES.Q)
+    public static final class MediaStoreDestination implements Destination {
+        private final ContentResolver resolver;
+        private final Uri collection;
+        private final String relativePath;
+        private final String fileName;
+        private final String mimeType;
+        private Uri uri;
+
+        public MediaStoreDestination(ContentResolver resolver, Uri collection, String relativePath, String fileName, String mimeType) {
+            this.resolver = resolver;
+            this.collection = collection;
+            this.relativePath = relativePath;
+            this.fileName = fileName;
+            this.mimeType = mimeType;
+        }
+
+        /** An image in Pictures/StadtIQ. */
+        public static MediaStoreDestination forImage(ContentResolver resolver, String fileName, String mimeType) {
+            return new MediaStoreDestination(resolver, MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
+                    Environment.DIRECTORY_PICTURES + File.separator + "StadtIQ", fileName, mimeType);
+        }
+
+        /** A document (vector graph, data export) in Download/StadtIQ. */
+        public static MediaStoreDestination forDownload(ContentResolver resolver, String fileName, String mimeType) {
+            return new MediaStoreDestination(resolver, MediaStore.Downloads.EXTERNAL_CONTENT_URI,
+                    Environment.DIRECTORY_DOWNLOADS + File.separator + "StadtIQ", fileName, mimeType);
+        }
+
+        @Override
+        public OutputStream open() throws IOException {
+            ContentValues values = new ContentValues();
+            values.put(MediaStore.MediaColumns.DISPLAY_NAME, fileName);
+            values.put(MediaStore.MediaColumns.MIME_TYPE, mimeType);
+            values.put(MediaStore.MediaColumns.RELATIVE_PATH, relativePath);
+            values.put(MediaStore.MediaColumns.IS_PENDING, 1);
+            uri = resolver.insert(collection, values);
+            if (uri == null) throw new IOException("Failed to create new MediaStore record.");
+            OutputStream outputStream = resolver.openOutputStream(uri);
+            if (outputStream == null) throw new IOException("Failed to get output stream for MediaStore URI.");
+            return outputStream;
+        }
+
+        @Override
+        public String publish() throws IOException {
+            ContentValues values = new ContentValues();
+            values.put(MediaStore.MediaColumns.IS_PENDING, 0);
+            if (resolver.update(uri, values, null, null) != 1) {
+                throw new IOException("Failed to publish MediaStore record " + uri);
+            }
+            return null;
+        }
+
+        @Override
+        public void discard() {
+            if (uri != null) {
+                resolver.delete(uri, null, null);
+                uri = null;
+            }
+        }
+    }
+
+    /**
+     * Writes into a hidden temporary file next to the target and renames it when complete
+     * (pre-Android 10 public storage), then asks the media scanner to pick it up.
+     */
+    public static final class FileDestination implements Destination {
+        private final Context context;
+        private final File target;
+        private final File partFile;
+
+        public FileDestination(Context context, File target) {
+            this.context = context.getApplicationContext();
+            this.target = target;
+            this.partFile = new File(target.getParentFile(), "." + target.getName() + ".part");
+        }
+
+        @Override
+        public OutputStream open() throws IOException {
+            File directory = target.getParentFile();
+            if (directory != null && !directory.exists() && !directory.mkdirs()) {
+                throw new IOException("Failed to create directory: " + directory.getAbsolutePath());
+            }
+            return new FileOutputStream(partFile);
+        }
+
+        @Override
+        public String publish() throws IOException {
+            if (!partFile.renameTo(target)) {
+                throw new IOException("Failed to move export to " + target.getAbsolutePath());
+            }
+            Intent mediaScanIntent = new Intent(Intent.ACTION_MEDIA_SCANNER_SCAN_FILE);
+            mediaScanIntent.setData(Uri.fromFile(target));
+            context.sendBroadcast(mediaScanIntent);
+            return target.getAbsolutePath();
+        }
+
+        @Override
+        public void discard() {
+            if (partFile.exists() && !partFile.delete()) {
+                Log.w(TAG, "discard: Could not delete " + partFile.getAbsolutePath());
+            }
+        }
+    }
+}
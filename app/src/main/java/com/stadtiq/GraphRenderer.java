@@ -0,0 +1,715 @@
+package com.stadtiq;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.util.Log;
+import android.util.TypedValue;
+
+import androidx.core.content.ContextCompat;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Draws the history graph (title, axes, grid, series, markers, placeholder message and an
+ * optional legend) onto any {@link Canvas}, independent of a View.
+ * All sizes are given in dp and scaled by the renderer's density, so the same data can be
+ * drawn on screen, into a 4K export bitmap or into a print canvas just by choosing the target
+ * size and density. Theme lookups happen once in {@link Style#fromTheme(Context)}; the renderer
+ * itself needs no Context.
+ * Geometry is computed in {@link #layout(int, int)} and replayed by {@link #draw(Canvas)},
+ * which allocates nothing.
+ */
+public final class GraphRenderer {
+
+    private static final String TAG = "GraphRenderer";
+
+    public static final int MARKER_NONE = 0;
+    public static final int MARKER_CIRCLE = 1;
+    public static final int MARKER_SQUARE = 2;
+
+    private static final String Y_AXIS_TITLE = "Normalized Value (%)";
+    private static final String[] Y_AXIS_LABELS = { "100", "75", "50", "25", "0" };
+
+    /**
+     * One series of normalized (0..1) values with their timestamps, color and legend label.
+     */
+    public static final class Dataset {
+        final float[] points;
+        final long[] timestamps;
+        final int[] anomalies;
+        final int color;
+        final String label;
+
+        // Decimated copy of points as interleaved (index, value) pairs, cached per width and mode
+        private float[] decimated;
+        private int decimatedWidth = -1;
+        private int decimatedMode = -1;
+
+        public Dataset(HistorySeries series, int color, String label) {
+            this.points = series.values; this.timestamps = series.timestamps; this.anomalies = series.anomalies;
+            this.color = color; this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public int getColor() {
+            return color;
+        }
+
+        /**
+         * Returns the points reduced to about one per horizontal pixel of the plot area.
+         * The result is cached, so redraws at the same width reuse it.
+         */
+        synchronized float[] getDecimated(int widthPx, int mode) {
+            if (decimated == null || decimatedWidth != widthPx || decimatedMode != mode) {
+                decimated = SeriesDecimator.decimate(points, widthPx, mode);
+                decimatedWidth = widthPx;
+                decimatedMode = mode;
+            }
+            return decimated;
+        }
+    }
+
+    /**
+     * Colors and texts of the graph, resolved from a theme once.
+     */
+    public static final class Style {
+        int backgroundColor, axisColor, gridColor, labelTextColor, titleTextColor, emptyMessageColor, anomalyColor;
+        String xAxisTitle = "Time";
+
+        /**
+         * Resolves all graph colors and texts from the theme and resources of {@code context}.
+         */
+        public static Style fromTheme(Context context) {
+            Style style = new Style();
+            style.backgroundColor = getColorFromAttr(context, android.R.attr.colorBackground, R.color.colorBackground);
+            style.axisColor = getColorFromAttr(context, R.attr.graphAxisColor, R.color.graph_axis);
+            style.gridColor = getColorFromAttr(context, R.attr.graphGridColor, R.color.graph_grid);
+            style.labelTextColor = getColorFromAttr(context, R.attr.graphTextColor, R.color.graph_text);
+            style.titleTextColor = getColorFromAttr(context, android.R.attr.textColorPrimary, R.color.textColorPrimary);
+            style.emptyMessageColor = getColorFromAttr(context, android.R.attr.textColorSecondary, R.color.textColorSecondary);
+            style.anomalyColor = ContextCompat.getColor(context, R.color.colorError);
+            style.xAxisTitle = context.getString(R.string.graph_x_axis_label_time);
+            return style;
+        }
+
+        private static int getColorFromAttr(Context context, int attrResId, int defaultColorResId) {
+            TypedValue typedValue = new TypedValue();
+            context.getTheme().resolveAttribute(attrResId, typedValue, true);
+            if (typedValue.resourceId != 0) {
+                return ContextCompat.getColor(context, typedValue.resourceId);
+            } else if (typedValue.type >= TypedValue.TYPE_FIRST_COLOR_INT && typedValue.type <= TypedValue.TYPE_LAST_COLOR_INT) {
+                return typedValue.data;
+            }
+            Log.w(TAG, "Failed to resolve attribute. Using default: " + context.getResources().getResourceEntryName(defaultColorResId));
+            return ContextCompat.getColor(context, defaultColorResId);
+        }
+    }
+
+    private final Style style;
+    private final float density;
+    private final Paint axisPaint, textPaint, gridPaint, titleTextPaint, linePaint, markerPaint, anomalyPaint, legendBoxPaint;
+    private final TextPaint emptyMessagePaint, legendTextPaint;
+    private final float paddingLeftPx, paddingRightPx, paddingTopPx, paddingBottomPx;
+    private final float anomalyRadiusPx;
+    private final float markerMinSpacingPx, yLabelGapPx, yTitleOffsetPx, xLabelOffsetPx, xLabelMinSpacingPx, xAxisTitleOffsetPx;
+    private final float legendPaddingPx, legendBoxSizePx, legendTextOffsetPx, legendItemHeightPx;
+
+    // Data
+    private List<Dataset> datasets = Collections.emptyList();
+    private String city, districtForTitle, timePeriod;
+    private String emptyMessage = "";
+    private int decimationMode = SeriesDecimator.MODE_LTTB;
+    private int markerShape = MARKER_CIRCLE;
+
+    // Geometry computed by layout() and replayed by draw()
+    private boolean layoutValid;
+    private int laidOutWidth, laidOutHeight;
+    private float graphWidth, graphHeight;
+    private String titleText = "";
+    private final float[] yLabelYs = new float[5];
+    private final float[] gridLines = new float[4 * 4];
+    private TimeAxis timeAxis;
+    private float[] xLabelXs = new float[0];
+    private int xLabelCount;
+    private float[][] seriesLines = new float[0][];
+    private float[][] seriesMarkers = new float[0][];
+    private int[] seriesLineCounts = new int[0];
+    private int[] seriesMarkerCounts = new int[0];
+    // Centers (x, y pairs) of the rings around anomalous points, per dataset
+    private float[][] seriesAnomalies = new float[0][];
+    private int[] seriesAnomalyCounts = new int[0];
+    private StaticLayout emptyMessageLayout;
+    private float emptyMessageX, emptyMessageY;
+
+    /**
+     * @param density Pixels per dp of the target (e.g. {@code DisplayMetrics.density} on screen).
+     */
+    public GraphRenderer(Style style, float density) {
+        this.style = style;
+        this.density = density;
+        axisPaint = new Paint(Paint.ANTI_ALIAS_FLAG); axisPaint.setColor(style.axisColor); axisPaint.setStrokeWidth(dp(1.5f));
+        gridPaint = new Paint(Paint.ANTI_ALIAS_FLAG); gridPaint.setColor(style.gridColor); gridPaint.setStrokeWidth(dp(0.5f)); gridPaint.setStyle(Paint.Style.STROKE);
+        textPaint = new Paint(Paint.ANTI_ALIAS_FLAG); textPaint.setColor(style.labelTextColor); textPaint.setTextSize(dp(10f)); textPaint.setTextAlign(Paint.Align.CENTER);
+        titleTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG); titleTextPaint.setColor(style.titleTextColor); titleTextPaint.setTextSize(dp(12f)); titleTextPaint.setTextAlign(Paint.Align.CENTER); titleTextPaint.setFakeBoldText(true);
+
+        emptyMessagePaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+        emptyMessagePaint.setColor(style.emptyMessageColor);
+        emptyMessagePaint.setTextSize(dp(14f));
+        emptyMessagePaint.setTextAlign(Paint.Align.CENTER);
+
+        // Shared paints; only their color changes per dataset
+        linePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        linePaint.setStyle(Paint.Style.STROKE);
+        linePaint.setStrokeWidth(dp(2f));
+        linePaint.setStrokeCap(Paint.Cap.ROUND); // Hides the joints between drawLines segments
+        markerPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        markerPaint.setStyle(Paint.Style.STROKE);
+        markerPaint.setStrokeWidth(dp(7f));
+        markerPaint.setStrokeCap(Paint.Cap.ROUND);
+        anomalyPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        anomalyPaint.setStyle(Paint.Style.STROKE);
+        anomalyPaint.setStrokeWidth(dp(2f));
+        anomalyPaint.setColor(style.anomalyColor);
+        anomalyRadiusPx = dp(6f);
+
+        legendTextPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+        legendTextPaint.setTextSize(dp(12f));
+        legendTextPaint.setColor(style.titleTextColor);
+        legendBoxPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        legendBoxPaint.setStyle(Paint.Style.FILL);
+
+        paddingLeftPx = dp(50f); paddingRightPx = dp(20f);
+        paddingTopPx = dp(50f); paddingBottomPx = dp(50f);
+        markerMinSpacingPx = dp(10f); yLabelGapPx = dp(6f); yTitleOffsetPx = dp(4f);
+        xLabelOffsetPx = dp(15f); xLabelMinSpacingPx = dp(70f); xAxisTitleOffsetPx = dp(35f);
+        legendPaddingPx = dp(10f); legendBoxSizePx = dp(15f); legendTextOffsetPx = dp(5f);
+        Paint.FontMetrics fm = legendTextPaint.getFontMetrics();
+        legendItemHeightPx = (fm.descent - fm.ascent) + dp(4f);
+    }
+
+    /**
+     * Returns a renderer with the same style, data and options for a target of another density.
+     */
+    public GraphRenderer withDensity(float targetDensity) {
+        GraphRenderer copy = new GraphRenderer(style, targetDensity);
+        copy.setData(city, districtForTitle, datasets, timePeriod, emptyMessage);
+        copy.decimationMode = decimationMode;
+        copy.setMarkerShape(markerShape);
+        return copy;
+    }
+
+    public float dp(float dp) {
+        return dp * density;
+    }
+
+    public int getBackgroundColor() {
+        return style.backgroundColor;
+    }
+
+    public List<Dataset> getDatasets() {
+        return datasets;
+    }
+
+    /**
+     * @param city The city shown in the title, or null.
+     * @param districtForTitle The district shown in the title, or null.
+     * @param emptyMessage Shown instead of the series when {@code datasets} is empty.
+     */
+    public void setData(String city, String districtForTitle, List<Dataset> datasets, String timePeriod, String emptyMessage) {
+        this.city = city; this.districtForTitle = districtForTitle;
+        this.datasets = new ArrayList<>(datasets); this.timePeriod = timePeriod;
+        this.emptyMessage = emptyMessage != null ? emptyMessage : "";
+        layoutValid = false;
+    }
+
+    /**
+     * Selects how long series are reduced before drawing.
+     * @param mode {@link SeriesDecimator#MODE_LTTB} or {@link SeriesDecimator#MODE_MIN_MAX}.
+     */
+    public void setDecimationMode(int mode) {
+        if (decimationMode == mode) return;
+        decimationMode = mode;
+        layoutValid = false;
+    }
+
+    /**
+     * Selects the data point marker drawn on top of the lines.
+     * Regardless of the shape, markers are hidden for series too dense to tell them apart.
+     * @param shape {@link #MARKER_CIRCLE}, {@link #MARKER_SQUARE} or {@link #MARKER_NONE}.
+     */
+    public void setMarkerShape(int shape) {
+        if (markerShape == shape) return;
+        markerShape = shape;
+        markerPaint.setStrokeCap(shape == MARKER_SQUARE ? Paint.Cap.SQUARE : Paint.Cap.ROUND);
+        layoutValid = false;
+    }
+
+    /**
+     * Height of the legend drawn by {@link #drawLegend(Canvas, float)}, 0 if there are no datasets.
+     */
+    public int getLegendHeight() {
+        if (datasets.isEmpty()) return 0;
+        int height = (int) (datasets.size() * legendItemHeightPx + 2 * legendPaddingPx - dp(4f));
+        return Math.max(0, height);
+    }
+
+    /**
+     * Draws the graph into a {@code width} × {@code height} area and, if requested, the legend
+     * below it; the canvas must be at least {@code height + getLegendHeight()} tall in that case.
+     */
+    public void render(Canvas canvas, int width, int height, boolean includeLegend) {
+        layout(width, height);
+        draw(canvas);
+        if (includeLegend) drawLegend(canvas, height);
+    }
+
+    // Timestamp at a (possibly fractional) sample index, interpolated between neighbouring samples
+    private static long timeAt(long[] timestamps, float index) {
+        int i = Math.min((int) index, timestamps.length - 1);
+        if (i == timestamps.length - 1) return timestamps[i];
+        return timestamps[i] + (long) ((index - i) * (timestamps[i + 1] - timestamps[i]));
+    }
+
+    private static boolean isAllDigits(String text) {
+        if (text == null || text.isEmpty()) return false;
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isDigit(text.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Computes everything {@link #draw(Canvas)} needs (title, labels, grid, series buffers,
+     * marker positions, empty message) for a {@code width} × {@code height} target.
+     * Does nothing if neither the data nor the size changed since the last call.
+     */
+    public void layout(int width, int height) {
+        if (width <= 0 || height <= 0) return;
+        if (layoutValid && width == laidOutWidth && height == laidOutHeight) return;
+        graphWidth = width - paddingLeftPx - paddingRightPx;
+        graphHeight = height - paddingTopPx - paddingBottomPx;
+        boolean hasData = !datasets.isEmpty();
+        boolean periodIsMonths = isAllDigits(timePeriod);
+
+        // Title
+        String title;
+        if (hasData) {
+            if (datasets.size() == 1 && datasets.get(0).label != null) title = datasets.get(0).label + " Trend";
+            else {
+                StringBuilder labels = new StringBuilder();
+                for (int i = 0; i < datasets.size(); i++) {
+                    labels.append(datasets.get(i).label);
+                    if (i < datasets.size() - 1) labels.append(" & ");
+                }
+                title = labels.toString() + " Trends";
+            }
+        } else title = "Historical Data Overview";
+        String contextSuffix = ""; boolean cityShown = false;
+        // city/districtForTitle are null while the spinner hints are selected
+        if (city != null) {
+            contextSuffix += " in " + city;
+            cityShown = true;
+        }
+        if (districtForTitle != null) {
+            if (cityShown) contextSuffix += "/" + districtForTitle;
+            else contextSuffix += " in " + districtForTitle;
+        }
+        if (timePeriod != null && !timePeriod.isEmpty()) {
+            contextSuffix += ((cityShown || districtForTitle != null) ? " " : "") + "(" + timePeriod + (periodIsMonths ? " mo" : "") + ")";
+        }
+        titleText = title + contextSuffix;
+
+        // Y axis labels and grid lines
+        for (int i = 0; i <= 4; i++) {
+            float yPos = paddingTopPx + (graphHeight * ((float) i / 4f));
+            yLabelYs[i] = yPos + textPaint.getTextSize() / 3f;
+            if (i < 4) {
+                gridLines[i * 4] = paddingLeftPx; gridLines[i * 4 + 1] = yPos;
+                gridLines[i * 4 + 2] = width - paddingRightPx; gridLines[i * 4 + 3] = yPos;
+            }
+        }
+
+        // X axis: one time range for all series, ticks and labels from the (cached) axis model
+        long rangeStart = Long.MAX_VALUE, rangeEnd = Long.MIN_VALUE;
+        for (Dataset ds : datasets) {
+            if (ds.timestamps == null || ds.timestamps.length == 0) continue;
+            rangeStart = Math.min(rangeStart, ds.timestamps[0]);
+            rangeEnd = Math.max(rangeEnd, ds.timestamps[ds.timestamps.length - 1]);
+        }
+        if (rangeStart <= rangeEnd) {
+            timeAxis = TimeAxis.get(rangeStart, rangeEnd, (int) graphWidth, (int) xLabelMinSpacingPx);
+            xLabelCount = timeAxis.ticks.length;
+            if (xLabelXs.length < xLabelCount) xLabelXs = new float[xLabelCount];
+            for (int i = 0; i < xLabelCount; i++) xLabelXs[i] = timeAxis.toX(timeAxis.ticks[i], paddingLeftPx, graphWidth);
+        } else {
+            timeAxis = null;
+            xLabelCount = 0;
+        }
+
+        // Series segments and marker positions, packed into buffers that are reused across layouts
+        int datasetCount = datasets.size();
+        if (seriesLines.length < datasetCount) {
+            seriesLines = Arrays.copyOf(seriesLines, datasetCount);
+            seriesMarkers = Arrays.copyOf(seriesMarkers, datasetCount);
+            seriesLineCounts = Arrays.copyOf(seriesLineCounts, datasetCount);
+            seriesMarkerCounts = Arrays.copyOf(seriesMarkerCounts, datasetCount);
+            seriesAnomalies = Arrays.copyOf(seriesAnomalies, datasetCount);
+            seriesAnomalyCounts = Arrays.copyOf(seriesAnomalyCounts, datasetCount);
+        }
+        for (int d = 0; d < datasetCount; d++) {
+            Dataset dataset = datasets.get(d);
+            seriesLineCounts[d] = 0;
+            seriesMarkerCounts[d] = 0;
+            seriesAnomalyCounts[d] = 0;
+            if (dataset.points == null || dataset.points.length == 0) continue;
+            int currentDatasetPointCount = dataset.points.length;
+            // Long series are reduced to ~1 point per pixel; x stays in original index units and is mapped by timestamp.
+            float[] reduced = dataset.getDecimated((int) graphWidth, decimationMode);
+            int pointCount = reduced.length / 2;
+            float[] markers = seriesMarkers[d];
+            if (markers == null || markers.length < reduced.length) markers = seriesMarkers[d] = new float[reduced.length];
+            float[] lines = seriesLines[d];
+            int lineFloats = Math.max(0, pointCount - 1) * 4;
+            if (lines == null || lines.length < lineFloats) lines = seriesLines[d] = new float[lineFloats];
+            int lineIndex = 0;
+            for (int i = 0; i < reduced.length; i += 2) {
+                float x = timeAxis.toX(timeAt(dataset.timestamps, reduced[i]), paddingLeftPx, graphWidth);
+                float y = paddingTopPx + (1 - reduced[i + 1]) * graphHeight;
+                markers[i] = x;
+                markers[i + 1] = y;
+                if (i > 0) {
+                    // drawLines takes independent segments: (x0,y0,x1,y1) per segment
+                    lines[lineIndex++] = markers[i - 2]; lines[lineIndex++] = markers[i - 1];
+                    lines[lineIndex++] = x; lines[lineIndex++] = y;
+                }
+            }
+            seriesLineCounts[d] = currentDatasetPointCount > 1 ? lineIndex : 0;
+            // Markers only help while they can be told apart; dense series are drawn as lines only.
+            boolean markersVisible = markerShape != MARKER_NONE
+                    && (pointCount <= 1 || graphWidth / (pointCount - 1) >= markerMinSpacingPx);
+            seriesMarkerCounts[d] = markersVisible ? reduced.length : 0;
+
+            // Anomalies are placed at their original samples, so decimation never hides them
+            int anomalyCount = dataset.anomalies != null ? dataset.anomalies.length : 0;
+            float[] anomalies = seriesAnomalies[d];
+            if (anomalies == null || anomalies.length < anomalyCount * 2) anomalies = seriesAnomalies[d] = new float[anomalyCount * 2];
+            for (int a = 0; a < anomalyCount; a++) {
+                int index = dataset.anomalies[a];
+                anomalies[a * 2] = timeAxis.toX(dataset.timestamps[index], paddingLeftPx, graphWidth);
+                anomalies[a * 2 + 1] = paddingTopPx + (1 - dataset.points[index]) * graphHeight;
+            }
+            seriesAnomalyCounts[d] = anomalyCount * 2;
+        }
+
+        // Placeholder message
+        emptyMessageLayout = null;
+        if (!hasData) {
+            float textMaxWidth = graphWidth - dp(20f);
+            if (textMaxWidth <= 0) textMaxWidth = width - dp(40f);
+            if (textMaxWidth > 0 && graphHeight > 0) {
+                emptyMessageLayout = StaticLayout.Builder.obtain(
+                                emptyMessage, 0, emptyMessage.length(),
+                                emptyMessagePaint, (int) textMaxWidth)
+                        .setAlignment(Layout.Alignment.ALIGN_CENTER)
+                        .setLineSpacing(0, 1.0f)
+                        .setIncludePad(false)
+                        .build();
+                emptyMessageX = paddingLeftPx + (graphWidth - emptyMessageLayout.getWidth()) / 2f;
+                emptyMessageY = paddingTopPx + (graphHeight - emptyMessageLayout.getHeight()) / 2f;
+            }
+        }
+        laidOutWidth = width;
+        laidOutHeight = height;
+        layoutValid = true;
+    }
+
+    /**
+     * Draws the graph as laid out by the last {@link #layout(int, int)} call.
+     */
+    public void draw(Canvas canvas) {
+        if (!layoutValid) return;
+        int width = laidOutWidth; int height = laidOutHeight;
+
+        canvas.drawColor(style.backgroundColor);
+        canvas.drawText(titleText, width / 2f, paddingTopPx / 2f + titleTextPaint.getTextSize() / 3f, titleTextPaint);
+
+        canvas.drawLine(paddingLeftPx, paddingTopPx, paddingLeftPx, height - paddingBottomPx, axisPaint);
+        textPaint.setTextAlign(Paint.Align.RIGHT);
+        for (int i = 0; i <= 4; i++) {
+            canvas.drawText(Y_AXIS_LABELS[i], paddingLeftPx - yLabelGapPx, yLabelYs[i], textPaint);
+        }
+        canvas.drawLines(gridLines, gridPaint);
+        textPaint.setTextAlign(Paint.Align.CENTER); canvas.save();
+        float yTitleX = paddingLeftPx / 2f - yTitleOffsetPx;
+        float yTitleY = paddingTopPx + graphHeight / 2f;
+        canvas.rotate(-90, yTitleX, yTitleY);
+        canvas.drawText(Y_AXIS_TITLE, yTitleX, yTitleY + textPaint.getTextSize() / 2f, textPaint);
+        canvas.restore();
+
+        canvas.drawLine(paddingLeftPx, height - paddingBottomPx, width - paddingRightPx, height - paddingBottomPx, axisPaint);
+        for (int i = 0; i < xLabelCount; i++) {
+            canvas.drawText(timeAxis.labels[i], xLabelXs[i], height - paddingBottomPx + xLabelOffsetPx, textPaint);
+        }
+        canvas.drawText(style.xAxisTitle, paddingLeftPx + graphWidth / 2f, height - paddingBottomPx + xAxisTitleOffsetPx, textPaint);
+
+        if (!datasets.isEmpty()) {
+            // One drawLines and at most one drawPoints call per dataset
+            for (int d = 0; d < datasets.size(); d++) {
+                Dataset dataset = datasets.get(d);
+                if (seriesLineCounts[d] > 0) {
+                    linePaint.setColor(dataset.color);
+                    canvas.drawLines(seriesLines[d], 0, seriesLineCounts[d], linePaint);
+                }
+                if (seriesMarkerCounts[d] > 0) {
+                    markerPaint.setColor(dataset.color);
+                    canvas.drawPoints(seriesMarkers[d], 0, seriesMarkerCounts[d], markerPaint);
+                }
+                float[] anomalies = seriesAnomalies[d];
+                for (int i = 0; i < seriesAnomalyCounts[d]; i += 2) {
+                    canvas.drawCircle(anomalies[i], anomalies[i + 1], anomalyRadiusPx, anomalyPaint);
+                }
+            }
+        } else if (emptyMessageLayout != null) {
+            canvas.save();
+            canvas.translate(emptyMessageX, emptyMessageY);
+            emptyMessageLayout.draw(canvas);
+            canvas.restore();
+        } else {
+            canvas.drawText(emptyMessage, paddingLeftPx + graphWidth / 2f, paddingTopPx + graphHeight / 2f, emptyMessagePaint);
+        }
+    }
+
+    /**
+     * Draws one color box and label per dataset, starting at {@code top}.
+     */
+    public void drawLegend(Canvas canvas, float top) {
+        if (datasets.isEmpty()) return;
+        float currentY = top + legendPaddingPx;
+        float startX = legendPaddingPx;
+        for (Dataset dataset : datasets) {
+            if (dataset.label == null) continue;
+            legendBoxPaint.setColor(dataset.color);
+            canvas.drawRect(startX, currentY, startX + legendBoxSizePx, currentY + legendBoxSizePx, legendBoxPaint);
+            float textBaselineY = currentY + (legendBoxSizePx / 2f) - (legendTextPaint.descent() + legendTextPaint.ascent()) / 2f;
+            canvas.drawText(dataset.label, startX + legendBoxSizePx + legendTextOffsetPx, textBaselineY, legendTextPaint);
+            currentY += legendItemHeightPx;
+        }
+    }
+
+    /**
+     * Streams the graph as an SVG document into {@code out}, using the same geometry as
+     * {@link #draw(Canvas)}. Series are decimated to {@code width} and written point by point,
+     * so no raster and no full-document string are ever built.
+     * @param height Height of the graph area; the legend (if included) is added below it.
+     */
+    public void writeSvg(Writer out, int width, int height, boolean includeLegend) throws IOException {
+        layout(width, height);
+        int legendHeight = includeLegend ? getLegendHeight() : 0;
+        int totalHeight = height + legendHeight;
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        out.write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"" + width + "\" height=\"" + totalHeight
+                + "\" viewBox=\"0 0 " + width + " " + totalHeight + "\" font-family=\"sans-serif\">\n");
+        out.write("<rect width=\"100%\" height=\"100%\"");
+        writeSvgPaint(out, "fill", style.backgroundColor);
+        out.write("/>\n");
+
+        writeSvgText(out, titleText, width / 2f, paddingTopPx / 2f + titleTextPaint.getTextSize() / 3f, "middle", titleTextPaint, null);
+
+        // Axes and grid
+        out.write("<path fill=\"none\" stroke-width=\"");
+        writeSvgNumber(out, axisPaint.getStrokeWidth());
+        out.write('"');
+        writeSvgPaint(out, "stroke", style.axisColor);
+        out.write(" d=\"M");
+        writeSvgPoint(out, paddingLeftPx, paddingTopPx);
+        out.write(" V");
+        writeSvgNumber(out, height - paddingBottomPx);
+        out.write(" H");
+        writeSvgNumber(out, width - paddingRightPx);
+        out.write("\"/>\n");
+        out.write("<path fill=\"none\" stroke-width=\"");
+        writeSvgNumber(out, gridPaint.getStrokeWidth());
+        out.write('"');
+        writeSvgPaint(out, "stroke", style.gridColor);
+        out.write(" d=\"");
+        for (int i = 0; i < gridLines.length; i += 4) {
+            out.write('M');
+            writeSvgPoint(out, gridLines[i], gridLines[i + 1]);
+            out.write(" H");
+            writeSvgNumber(out, gridLines[i + 2]);
+            out.write(' ');
+        }
+        out.write("\"/>\n");
+
+        // Axis labels and titles
+        for (int i = 0; i <= 4; i++) {
+            writeSvgText(out, Y_AXIS_LABELS[i], paddingLeftPx - yLabelGapPx, yLabelYs[i], "end", textPaint, null);
+        }
+        float yTitleX = paddingLeftPx / 2f - yTitleOffsetPx;
+        float yTitleY = paddingTopPx + graphHeight / 2f;
+        writeSvgText(out, Y_AXIS_TITLE, yTitleX, yTitleY + textPaint.getTextSize() / 2f, "middle", textPaint,
+                "rotate(-90 " + yTitleX + " " + yTitleY + ")");
+        for (int i = 0; i < xLabelCount; i++) {
+            writeSvgText(out, timeAxis.labels[i], xLabelXs[i], height - paddingBottomPx + xLabelOffsetPx, "middle", textPaint, null);
+        }
+        writeSvgText(out, style.xAxisTitle, paddingLeftPx + graphWidth / 2f, height - paddingBottomPx + xAxisTitleOffsetPx, "middle", textPaint, null);
+
+        // Series: one polyline per dataset, markers as zero-length subpaths with round/square caps
+        for (int d = 0; d < datasets.size(); d++) {
+            Dataset dataset = datasets.get(d);
+            if (seriesLineCounts[d] > 0) {
+                float[] points = seriesMarkers[d];
+                int pointFloats = (seriesLineCounts[d] / 4 + 1) * 2;
+                out.write("<polyline fill=\"none\" stroke-linecap=\"round\" stroke-linejoin=\"round\" stroke-width=\"");
+                writeSvgNumber(out, linePaint.getStrokeWidth());
+                out.write('"');
+                writeSvgPaint(out, "stroke", dataset.color);
+                out.write(" points=\"");
+                for (int i = 0; i < pointFloats; i += 2) {
+                    if (i > 0) out.write(' ');
+                    writeSvgPoint(out, points[i], points[i + 1]);
+                }
+                out.write("\"/>\n");
+            }
+            if (seriesMarkerCounts[d] > 0) {
+                float[] markers = seriesMarkers[d];
+                out.write("<path fill=\"none\" stroke-linecap=\"");
+                out.write(markerShape == MARKER_SQUARE ? "square" : "round");
+                out.write("\" stroke-width=\"");
+                writeSvgNumber(out, markerPaint.getStrokeWidth());
+                out.write('"');
+                writeSvgPaint(out, "stroke", dataset.color);
+                out.write(" d=\"");
+                for (int i = 0; i < seriesMarkerCounts[d]; i += 2) {
+                    out.write('M');
+                    writeSvgPoint(out, markers[i], markers[i + 1]);
+                    out.write("h0");
+                }
+                out.write("\"/>\n");
+            }
+            float[] anomalies = seriesAnomalies[d];
+            for (int i = 0; i < seriesAnomalyCounts[d]; i += 2) {
+                out.write("<circle fill=\"none\" cx=\"");
+                writeSvgNumber(out, anomalies[i]);
+                out.write("\" cy=\"");
+                writeSvgNumber(out, anomalies[i + 1]);
+                out.write("\" r=\"");
+                writeSvgNumber(out, anomalyRadiusPx);
+                out.write("\" stroke-width=\"");
+                writeSvgNumber(out, anomalyPaint.getStrokeWidth());
+                out.write('"');
+                writeSvgPaint(out, "stroke", style.anomalyColor);
+                out.write("/>\n");
+            }
+        }
+        if (datasets.isEmpty()) {
+            writeSvgText(out, emptyMessage, paddingLeftPx + graphWidth / 2f, paddingTopPx + graphHeight / 2f, "middle", emptyMessagePaint, null);
+        }
+
+        if (legendHeight > 0) {
+            float currentY = height + legendPaddingPx;
+            float startX = legendPaddingPx;
+            for (Dataset dataset : datasets) {
+                if (dataset.label == null) continue;
+                out.write("<rect x=\"");
+                writeSvgNumber(out, startX);
+                out.write("\" y=\"");
+                writeSvgNumber(out, currentY);
+                out.write("\" width=\"");
+                writeSvgNumber(out, legendBoxSizePx);
+                out.write("\" height=\"");
+                writeSvgNumber(out, legendBoxSizePx);
+                out.write('"');
+                writeSvgPaint(out, "fill", dataset.color);
+                out.write("/>\n");
+                float textBaselineY = currentY + (legendBoxSizePx / 2f) - (legendTextPaint.descent() + legendTextPaint.ascent()) / 2f;
+                writeSvgText(out, dataset.label, startX + legendBoxSizePx + legendTextOffsetPx, textBaselineY, "start", legendTextPaint, null);
+                currentY += legendItemHeightPx;
+            }
+        }
+        out.write("</svg>\n");
+    }
+
+    private static void writeSvgText(Writer out, String text, float x, float y, String anchor, Paint paint, String transform) throws IOException {
+        out.write("<text x=\"");
+        writeSvgNumber(out, x);
+        out.write("\" y=\"");
+        writeSvgNumber(out, y);
+        out.write("\" text-anchor=\"");
+        out.write(anchor);
+        out.write("\" font-size=\"");
+        writeSvgNumber(out, paint.getTextSize());
+        out.write('"');
+        if (paint.isFakeBoldText()) out.write(" font-weight=\"bold\"");
+        if (transform != null) {
+            out.write(" transform=\"");
+            out.write(transform);
+            out.write('"');
+        }
+        writeSvgPaint(out, "fill", paint.getColor());
+        out.write('>');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&': out.write("&amp;"); break;
+                case '<': out.write("&lt;"); break;
+                case '>': out.write("&gt;"); break;
+                default: out.write(c);
+            }
+        }
+        out.write("</text>\n");
+    }
+
+    // Writes ` <attribute>="#RRGGBB"`, plus an opacity attribute for translucent colors
+    private static void writeSvgPaint(Writer out, String attribute, int color) throws IOException {
+        out.write(' ');
+        out.write(attribute);
+        out.write("=\"#");
+        for (int shift = 20; shift >= 0; shift -= 4) {
+            out.write(Character.forDigit((color >> shift) & 0xF, 16));
+        }
+        out.write('"');
+        int alpha = (color >>> 24);
+        if (alpha != 0xFF) {
+            out.write(' ');
+            out.write(attribute);
+            out.write("-opacity=\"");
+            writeSvgNumber(out, alpha / 255f);
+            out.write('"');
+        }
+    }
+
+    private static void writeSvgPoint(Writer out, float x, float y) throws IOException {
+        writeSvgNumber(out, x);
+        out.write(',');
+        writeSvgNumber(out, y);
+    }
+
+    // Writes a number with at most two decimals without going through String.format
+    private static void writeSvgNumber(Writer out, float value) throws IOException {
+        long hundredths = Math.round(value * 100.0);
+        if (hundredths < 0) {
+            out.write('-');
+            hundredths = -hundredths;
+        }
+        out.write(Long.toString(hundredths / 100));
+        int fraction = (int) (hundredths % 100);
+        if (fraction != 0) {
+            out.write('.');
+            out.write((char) ('0' + fraction / 10));
+            if (fraction % 10 != 0) out.write((char) ('0' + fraction % 10));
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.stadtiq;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Rollup tiers of the persisted reading history. For every (district, metric) pair, the
+ * {@link ReadingDatabase} keeps the minimum, maximum, sum and count of all readings per hour,
+ * per day and per calendar month (UTC), updated incrementally as readings are ingested.
+ * A graph period then reads one row per bucket of the finest tier that fits the plot's
+ * resolution ({@link #chooseTier(long, int)}), instead of every raw reading.
+ */
+public final class HistoryRollups {
+
+    // Tier IDs, finest first. TIER_RAW stands for the unaggregated readings.
+    public static final int TIER_RAW = -1;
+    public static final int TIER_HOURLY = 0;
+    public static final int TIER_DAILY = 1;
+    public static final int TIER_MONTHLY = 2;
+    static final int TIER_COUNT = 3;
+
+    private static final long MILLIS_PER_HOUR = 3_600_000L;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    // Average Gregorian month (365.2425 / 12 days), only used to estimate bucket counts
+    private static final long AVERAGE_MILLIS_PER_MONTH = 2_629_746_000L;
+    private static final long[] TIER_BUCKET_MILLIS = { MILLIS_PER_HOUR, MILLIS_PER_DAY, AVERAGE_MILLIS_PER_MONTH };
+
+    private HistoryRollups() { }
+
+    /**
+     * Returns the tier to draw a period with on a plot {@code plotWidthPx} pixels wide: the finest
+     * tier with at most one bucket per pixel, since more points than pixels only get decimated
+     * again by the renderer. Raw readings are used if even hourly buckets would not fill half the
+     * plot; monthly buckets if there are more days than pixels. With a phone-sized plot, one month
+     * is drawn from hourly buckets, a year from daily ones and several years from monthly ones.
+     */
+    public static int chooseTier(long periodMillis, int plotWidthPx) {
+        int maxPoints = Math.max(1, plotWidthPx);
+        if (periodMillis / TIER_BUCKET_MILLIS[TIER_HOURLY] < maxPoints / 2) return TIER_RAW;
+        for (int tier = TIER_HOURLY; tier < TIER_MONTHLY; tier++) {
+            if (periodMillis / TIER_BUCKET_MILLIS[tier] <= maxPoints) return tier;
+        }
+        return TIER_MONTHLY;
+    }
+
+    /**
+     * Returns the start (epoch millis, UTC) of the bucket of {@code tier} that contains {@code epochMillis}.
+     */
+    public static long bucketStart(int tier, long epochMillis) {
+        switch (tier) {
+            case TIER_HOURLY: return Math.floorDiv(epochMillis, MILLIS_PER_HOUR) * MILLIS_PER_HOUR;
+            case TIER_DAILY: return Math.floorDiv(epochMillis, MILLIS_PER_DAY) * MILLIS_PER_DAY;
+            case TIER_MONTHLY: return monthStartMillis(monthIndex(epochMillis));
+            default: throw new IllegalArgumentException("Unknown rollup tier " + tier);
+        }
+    }
+
+    // Sequential bucket number within a tier; months are counted from January 1970
+    static long bucketIndex(int tier, long epochMillis) {
+        switch (tier) {
+            case TIER_HOURLY: return Math.floorDiv(epochMillis, MILLIS_PER_HOUR);
+            case TIER_DAILY: return Math.floorDiv(epochMillis, MILLIS_PER_DAY);
+            case TIER_MONTHLY: return monthIndex(epochMillis);
+            default: throw new IllegalArgumentException("Unknown rollup tier " + tier);
+        }
+    }
+
+    /**
+     * Returns the number of months between January 1970 and the UTC month of {@code epochMillis}
+     * (civil-from-days conversion of the proleptic Gregorian calendar).
+     */
+    static long monthIndex(long epochMillis) {
+        long z = Math.floorDiv(epochMillis, MILLIS_PER_DAY) + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthPrime = (5 * dayOfYear + 2) / 153;
+        long month = monthPrime < 10 ? monthPrime + 3 : monthPrime - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return (year - 1970) * 12 + (month - 1);
+    }
+
+    /**
+     * Returns the epoch millis of the first day of a month counted by {@link #monthIndex(long)}.
+     */
+    static long monthStartMillis(long monthIndex) {
+        long year = 1970 + Math.floorDiv(monthIndex, 12);
+        long month = Math.floorMod(monthIndex, 12) + 1;
+        // Days-from-civil, with the year starting in March
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return (era * 146097 + dayOfEra - 719468) * MILLIS_PER_DAY;
+    }
+
+    /**
+     * Min/max/sum/count of one bucket.
+     */
+    static final class Aggregate {
+        final int tier;
+        final int row;
+        final int metric;
+        final long bucketStart;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double sum;
+        long count;
+
+        Aggregate(int tier, int row, int metric, long bucketStart) {
+            this.tier = tier;
+            this.row = row;
+            this.metric = metric;
+            this.bucketStart = bucketStart;
+        }
+
+        void add(double value) {
+            if (value < min) min = value;
+            if (value > max) max = value;
+            sum += value;
+            count++;
+        }
+    }
+
+    /**
+     * Merges the readings of one ingested batch per bucket of every tier, so each touched bucket
+     * is written once per batch instead of once per reading.
+     */
+    static final class BatchAccumulator {
+        private final Map<Long, Aggregate> buckets = new HashMap<>();
+
+        void add(int row, int metric, long timestampMillis, double value) {
+            for (int tier = 0; tier < TIER_COUNT; tier++) {
+                // tier: 4 bits, row: 20 bits, metric: 4 bits, bucket index: 36 bits
+                long key = ((long) tier << 60) | ((long) row << 40) | ((long) metric << 36)
+                        | (bucketIndex(tier, timestampMillis) & 0xF_FFFF_FFFFL);
+                Aggregate aggregate = buckets.get(key);
+                if (aggregate == null) {
+                    aggregate = new Aggregate(tier, row, metric, bucketStart(tier, timestampMillis));
+                    buckets.put(key, aggregate);
+                }
+                aggregate.add(value);
+            }
+        }
+
+        Collection<Aggregate> aggregates() {
+            return buckets.values();
+        }
+
+        void clear() {
+            buckets.clear();
+        }
+    }
+}
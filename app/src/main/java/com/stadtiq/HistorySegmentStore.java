@@ -0,0 +1,212 @@
+package com.stadtiq;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Append-only, memory-mapped store for the history of every (metric, district) pair.
+ * Each pair has its own segment file in {@code files/history}. A segment file consists of
+ * a fixed 32-byte header followed by little-endian float32 samples at a fixed cadence:
+ * <pre>
+ *   int   magic        ('SIQH')
+ *   int   version      (1)
+ *   int   metric       (ReadingStore metric ID)
+ *   int   district     (CityCatalog district ID, or NO_ID for the city-wide default)
+ *   long  startMillis  (epoch millis of sample 0)
+ *   long  stepMillis   (time between two samples)
+ *   float samples[]    (count = (fileLength - 32) / 4)
+ * </pre>
+ * Readers get a {@link Segment} backed by a read-only {@link MappedByteBuffer}, so the
+ * samples stay in the page cache instead of on the Java heap regardless of how much history exists.
+ */
+public final class HistorySegmentStore {
+
+    private static final String DIRECTORY_NAME = "history";
+    private static final int MAGIC = 0x53495148; // "SIQH"
+    private static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    private static final int SAMPLE_SIZE = 4;
+
+    // Upper bound of segments kept mapped at the same time
+    private static final int MAX_OPEN_SEGMENTS = 64;
+
+    private static HistorySegmentStore instance;
+
+    private final File directory;
+    // Process-wide LRU of mapped segments, keyed by (metric, district). Evicted mappings are
+    // released by the GC once no reader holds their Segment any more.
+    private final Map<Long, Segment> openSegments = new LinkedHashMap<Long, Segment>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Segment> eldest) {
+            return size() > MAX_OPEN_SEGMENTS;
+        }
+    };
+
+    /**
+     * A read-only view of one segment file.
+     */
+    public static final class Segment {
+        private final ByteBuffer samples;
+        private final int count;
+        public final long startMillis;
+        public final long stepMillis;
+
+        Segment(ByteBuffer samples, int count, long startMillis, long stepMillis) {
+            this.samples = samples;
+            this.count = count;
+            this.startMillis = startMillis;
+            this.stepMillis = stepMillis;
+        }
+
+        public int size() {
+            return count;
+        }
+
+        public float get(int index) {
+            return samples.getFloat(index * SAMPLE_SIZE);
+        }
+
+        /**
+         * Copies {@code length} samples starting at {@code from} into {@code dst}.
+         */
+        public void read(int from, float[] dst, int dstOffset, int length) {
+            // Absolute reads keep the shared buffer's position untouched, so concurrent readers are safe.
+            for (int i = 0; i < length; i++) {
+                dst[dstOffset + i] = samples.getFloat((from + i) * SAMPLE_SIZE);
+            }
+        }
+
+        /**
+         * Returns the most recent {@code maxPoints} samples (or fewer, if the segment is shorter).
+         */
+        public float[] readTail(int maxPoints) {
+            int length = Math.max(0, Math.min(maxPoints, count));
+            float[] out = new float[length];
+            read(count - length, out, 0, length);
+            return out;
+        }
+    }
+
+    /**
+     * Produces the samples of a segment that does not exist yet.
+     */
+    public interface Generator {
+        float[] generate();
+    }
+
+    public static synchronized HistorySegmentStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new HistorySegmentStore(new File(context.getApplicationContext().getFilesDir(), DIRECTORY_NAME));
+        }
+        return instance;
+    }
+
+    HistorySegmentStore(File directory) {
+        this.directory = directory;
+    }
+
+    private static long segmentKey(int metric, int districtId) {
+        return ((long) metric << 32) | (districtId & 0xffffffffL);
+    }
+
+    private File segmentFile(int metric, int districtId) {
+        String districtPart = districtId == CityCatalog.NO_ID ? "default" : String.valueOf(districtId);
+        return new File(directory, metric + "_" + districtPart + ".seg");
+    }
+
+    /**
+     * Maps the segment of a (metric, district) pair.
+     * Mapped segments are kept in a bounded LRU, so repeated selections do not remap the file.
+     * @return The mapped segment, or null if no history has been written for the pair.
+     * @throws IOException If the file exists but cannot be mapped or has an invalid header.
+     */
+    public synchronized Segment open(int metric, int districtId) throws IOException {
+        long key = segmentKey(metric, districtId);
+        Segment cached = openSegments.get(key);
+        if (cached != null) return cached;
+
+        File file = segmentFile(metric, districtId);
+        if (!file.exists()) return null;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            long length = channel.size();
+            // A file without a complete header was never written successfully; treat it as missing.
+            if (length < HEADER_SIZE) return null;
+            // The mapping stays valid after the channel is closed.
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+                throw new IOException("Unknown segment format: " + file);
+            }
+            long startMillis = mapped.getLong(16);
+            long stepMillis = mapped.getLong(24);
+            int count = (int) ((length - HEADER_SIZE) / SAMPLE_SIZE);
+            mapped.position(HEADER_SIZE);
+            ByteBuffer samples = mapped.slice().order(ByteOrder.LITTLE_ENDIAN);
+            Segment segment = new Segment(samples, count, startMillis, stepMillis);
+            openSegments.put(key, segment);
+            return segment;
+        }
+    }
+
+    /**
+     * Maps the segment of a (metric, district) pair, first writing it from {@code generator} if
+     * no history exists for the pair. Checking and writing happen under one lock, so concurrent
+     * callers never both write, which would append the generated samples twice.
+     * @param stepMillis Time between two generated samples; the last one is stamped with the current time.
+     * @return The mapped segment, or null if the generator returned no samples.
+     * @throws IOException If the segment cannot be written or mapped.
+     */
+    public synchronized Segment openOrCreate(int metric, int districtId, long stepMillis, Generator generator)
+            throws IOException {
+        Segment segment = open(metric, districtId);
+        if (segment != null) return segment;
+        float[] values = generator.generate();
+        if (values.length == 0) return null;
+        long startMillis = System.currentTimeMillis() - (values.length - 1) * stepMillis;
+        append(metric, districtId, startMillis, stepMillis, values);
+        return open(metric, districtId);
+    }
+
+    /**
+     * Appends samples to the segment of a (metric, district) pair, creating the file if needed.
+     * The cadence of an existing segment is kept; {@code startMillis}/{@code stepMillis} are
+     * only written into the header of a new file.
+     */
+    public synchronized void append(int metric, int districtId, long startMillis, long stepMillis, float[] values)
+            throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Failed to create history directory: " + directory);
+        }
+        File file = segmentFile(metric, districtId);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             FileChannel channel = raf.getChannel()) {
+            long end = channel.size();
+            if (end < HEADER_SIZE) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).putInt(metric).putInt(districtId)
+                        .putLong(startMillis).putLong(stepMillis);
+                header.flip();
+                channel.write(header, 0);
+                end = HEADER_SIZE;
+            }
+            ByteBuffer body = ByteBuffer.allocate(values.length * SAMPLE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            for (float value : values) body.putFloat(value);
+            body.flip();
+            while (body.hasRemaining()) {
+                end += channel.write(body, end);
+            }
+        }
+        // The old mapping does not cover the new samples; remap on next open.
+        openSegments.remove(segmentKey(metric, districtId));
+    }
+}
@@ -0,0 +1,48 @@
+package com.stadtiq;
+
+/**
+ * Samples of one history series with their epoch timestamps, oldest first.
+ * Values are normalized to 0..1 for the graph.
+ */
+public final class HistorySeries {
+
+    public static final HistorySeries EMPTY = new HistorySeries(new long[0], new float[0]);
+
+    public final long[] timestamps;
+    public final float[] values;
+    /** Indices of the samples flagged by the {@link AnomalyDetector}, ascending. */
+    public final int[] anomalies;
+
+    public HistorySeries(long[] timestamps, float[] values) {
+        this(timestamps, values, new int[0]);
+    }
+
+    private HistorySeries(long[] timestamps, float[] values, int[] anomalies) {
+        if (timestamps.length != values.length) {
+            throw new IllegalArgumentException("Got " + timestamps.length + " timestamps for " + values.length + " values");
+        }
+        this.timestamps = timestamps;
+        this.values = values;
+        this.anomalies = anomalies;
+    }
+
+    /**
+     * Returns this series with its anomalous samples flagged.
+     */
+    public HistorySeries withAnomaliesFlagged() {
+        return new HistorySeries(timestamps, values, AnomalyDetector.flagSeries(values));
+    }
+
+    /**
+     * Returns a series of samples taken every {@code stepMillis}, starting at {@code startMillis}.
+     */
+    public static HistorySeries ofCadence(float[] values, long startMillis, long stepMillis) {
+        long[] timestamps = new long[values.length];
+        for (int i = 0; i < values.length; i++) timestamps[i] = startMillis + i * stepMillis;
+        return new HistorySeries(timestamps, values);
+    }
+
+    public int size() {
+        return values.length;
+    }
+}
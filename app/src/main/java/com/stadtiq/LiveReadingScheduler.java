@@ -0,0 +1,129 @@
+package com.stadtiq;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.Choreographer;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Polls a {@link ReadingSource} on a fixed interval while the owning screen is visible.
+ * Refreshes run on a background thread; the main thread only receives
+ * {@link Listener#onReadingsChanged()}, at most once per frame no matter how many refreshes
+ * completed since the last one. Between refreshes the thread sleeps, so an idle screen
+ * costs no CPU. Call {@link #start()} from {@code onResume} and {@link #stop()} from {@code onPause}.
+ */
+public final class LiveReadingScheduler {
+
+    private static final String TAG = "LiveReadingScheduler";
+
+    /**
+     * Notified on the main thread after the store received new readings.
+     */
+    public interface Listener {
+        void onReadingsChanged();
+    }
+
+    private final ReadingSource source;
+    private final ReadingStore store;
+    private final long intervalMillis;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Choreographer choreographer;
+    private final AtomicBoolean framePending = new AtomicBoolean();
+    private final Choreographer.FrameCallback frameCallback = this::dispatchFrame;
+    private final Runnable postFrame = this::postFrame;
+
+    private ScheduledExecutorService executor;
+    private ScheduledFuture<?> task;
+    private volatile long lastRefreshMillis;
+    private boolean running; // Main thread only
+
+    /**
+     * Must be created on the main thread.
+     */
+    public LiveReadingScheduler(ReadingSource source, ReadingStore store, long intervalMillis, Listener listener) {
+        this.source = source;
+        this.store = store;
+        this.intervalMillis = intervalMillis;
+        this.listener = listener;
+        this.choreographer = Choreographer.getInstance();
+    }
+
+    /**
+     * Starts (or resumes) polling. A refresh that is overdue after a pause runs immediately,
+     * otherwise the regular cadence continues.
+     */
+    public void start() {
+        if (running) return;
+        running = true;
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "LiveReadings");
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+        }
+        long sinceLast = System.currentTimeMillis() - lastRefreshMillis;
+        long initialDelay = Math.max(0, intervalMillis - sinceLast);
+        task = executor.scheduleWithFixedDelay(this::refresh, initialDelay, intervalMillis, TimeUnit.MILLISECONDS);
+        Log.d(TAG, "start: Polling every " + intervalMillis + " ms, first refresh in " + initialDelay + " ms.");
+    }
+
+    /**
+     * Pauses polling. A refresh already in progress completes, but its update is not delivered.
+     */
+    public void stop() {
+        if (!running) return;
+        running = false;
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+        mainHandler.removeCallbacks(postFrame);
+        choreographer.removeFrameCallback(frameCallback);
+        framePending.set(false);
+        Log.d(TAG, "stop: Polling paused.");
+    }
+
+    /**
+     * Stops polling for good and ends the background thread.
+     */
+    public void shutdown() {
+        stop();
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    // Background thread
+    private void refresh() {
+        try {
+            boolean changed = source.refresh(store);
+            lastRefreshMillis = System.currentTimeMillis();
+            // Coalesce: only the first change since the last frame schedules a dispatch
+            if (changed && framePending.compareAndSet(false, true)) {
+                mainHandler.post(postFrame);
+            }
+        } catch (Exception e) {
+            // Keep the schedule alive; the next refresh may succeed
+            Log.e(TAG, "refresh: Reading source failed.", e);
+        }
+    }
+
+    private void postFrame() {
+        if (running) choreographer.postFrameCallback(frameCallback);
+        else framePending.set(false);
+    }
+
+    private void dispatchFrame(long frameTimeNanos) {
+        framePending.set(false);
+        if (running) listener.onReadingsChanged();
+    }
+}
@@ -28,14 +28,19 @@ import android.widget.ArrayAdapter;
 import android.widget.FrameLayout;
 import android.widget.ImageButton;
 import android.widget.LinearLayout;
+import android.widget.ListView;
 import android.widget.RadioButton;
 import android.widget.RadioGroup;
 import android.widget.Spinner;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 import com.google.android.material.navigation.NavigationView;
 
+import java.io.File;
+import java.net.MalformedURLException;
+import java.text.Collator;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -60,23 +65,43 @@ public class MainActivity extends AppCompatActivity
     private RecyclerView recyclerViewValues;
     private ImageButton btnListLayoutToggle;
 
-    // Data structures for cities, districts, and dummy environmental data
-    private List<String> cities;
-    private Map<String, List<String>> districts;
-    private Map<String, Map<String, Map<String, String>>> dummyData;
+    // Catalog of cities/districts, spinner adapters bound to it, and the environmental readings
+    private CityCatalog cityCatalog;
+    private CatalogSpinnerAdapter cityAdapter;
+    private CatalogSpinnerAdapter districtAdapter;
+    private ReadingStore readingStore;
+    private ReadingDatabase readingDatabase;
+    // City-wide statistics shown while the "select district" hint is active
+    private CityAggregates cityAggregates;
+    // Flags readings that deviate from their district's recent readings
+    private AnomalyDetector anomalyDetector;
+    // Composite air-quality index of every district, for the AQI row and the "worst districts" dialog
+    private AirQualityIndex airQualityIndex;
+    // Units the readings are shown in, and the formatter for the current locale
+    private UnitSystem unitSystem;
+    private ReadingFormatter readingFormatter;
 
     // Adapter for the RecyclerView displaying values
     private ValueAdapter valueAdapter;
+    // Refreshes the readings while the activity is in the foreground
+    private LiveReadingScheduler liveReadingScheduler;
+    private static final long LIVE_REFRESH_INTERVAL_MS = 10_000;
+    // Readings a district's history needs before its percentiles are shown
+    private static final long PERCENTILE_MIN_HISTORY = 5;
+    // Sensor feed payload picked up from the app's files directory instead of the simulator, if present
+    private static final String LOCAL_FEED_FILE_NAME = "sensor_feed.json";
 
     // Key for storing and retrieving language preference
     private static final String PREF_LANG_CODE = "pref_language_code";
+    // Key for storing the UnitSystem flags of the preferred units
+    private static final String PREF_UNIT_FLAGS = "pref_unit_flags";
     // State for list layout (1 or 2 columns)
     private int currentListLayoutColumns = 1;
     // Tracks the language code to detect changes on resume/restart
     public String lastKnownLangCode = null; // Made public for setLocale, consider alternatives
 
 
-    // --- CONSTANT DATA KEYS (used for dummyData and identifying values) ---
+    // --- CONSTANT DATA KEYS (used for the reading store and identifying values) ---
     private static final String KEY_CO2 = "CO₂";
     private static final String KEY_PM25 = "PM2,5";
     private static final String KEY_O2 = "O₂";
@@ -87,6 +112,8 @@ public class MainActivity extends AppCompatActivity
     private static final String KEY_LX = "lx";
     private static final String KEY_TD = "Td";
     private static final String KEY_ABS_HUMIDITY = "ABS_HUMIDITY_KEY";
+    // Not a stored metric: the AQI row is computed from CO₂, PM2,5 and SO₂
+    private static final String KEY_AQI = "AQI";
 
     // List of all data keys used to populate the value list
     private final List<String> ALL_VALUE_DATA_KEYS = Arrays.asList(
@@ -94,6 +121,11 @@ public class MainActivity extends AppCompatActivity
     );
     // --- END CONSTANT DATA KEYS ---
 
+    // Stored metrics of a dummy row, in order; the derived ones are computed from them
+    private static final String[] DUMMY_ROW_KEYS = {
+            KEY_CO2, KEY_PM25, KEY_O2, KEY_SO2, KEY_CH4, KEY_P, KEY_LP, KEY_LX, ReadingStore.KEY_T, ReadingStore.KEY_RH
+    };
+
     /**
      * Called before onCreate(), allows modification of the context this Activity runs in.
      * This is where we apply the user-selected locale.
@@ -218,13 +250,20 @@ public class MainActivity extends AppCompatActivity
             Log.e(TAG, "onCreate: listViewContainer (R.id.list_view_container) is NULL! This is critical for list display.");
         }
 
-        // Initialize data (dummy data, city/district lists)
-        // These methods might use string resources, so they are sensitive to the current locale
-        // and should be called after the locale is set in attachBaseContext.
-        initializeDummyData();
+        // Initialize data (city/district catalog, dummy data)
+        // The spinner hints use string resources, so they are sensitive to the current locale
+        // and must be created after the locale is set in attachBaseContext.
         initializeCityDistrictData();
+        initializeDummyData();
+        loadPersistedReadings(); // Replaces the dummy readings once the database has been read
+        // Number formats follow the locale set in attachBaseContext
+        readingFormatter = ReadingFormatter.forLocale(getResources().getConfiguration().getLocales().get(0));
+        unitSystem = UnitSystem.of(PreferenceManager.getDefaultSharedPreferences(this).getInt(PREF_UNIT_FLAGS, 0));
+        Log.d(TAG, "onCreate: Unit system flags " + unitSystem.getFlags() + " loaded from SharedPreferences.");
         initializeRecyclerView(); // Setup RecyclerView and its adapter
-        Log.d(TAG, "onCreate: Data (dummy, city/district) and RecyclerView initialized.");
+        liveReadingScheduler = new LiveReadingScheduler(createReadingSource(), readingStore,
+                LIVE_REFRESH_INTERVAL_MS, this::onLiveReadingsChanged);
+        Log.d(TAG, "onCreate: Data (dummy, city/district), RecyclerView and live refresh initialized.");
 
         // Setup listeners and adapters for spinners and buttons
         setupCitySpinner();
@@ -233,8 +272,7 @@ public class MainActivity extends AppCompatActivity
         Log.d(TAG, "onCreate: Spinners and list layout toggle button listeners setup.");
 
         // Perform initial data load based on default spinner selections
-        String initialCity = cities.get(spinnerCity.getSelectedItemPosition());
-        Log.i(TAG, "onCreate: Initial city from spinner is '" + initialCity + "'. Triggering initial data display.");
+        Log.i(TAG, "onCreate: Initial city ID from spinner is " + getSelectedCityId() + ". Triggering initial data display.");
         handleCityOrDistrictChange(); // This will update the main view (list)
         Log.i(TAG, "onCreate: Finished.");
     }
@@ -300,12 +338,52 @@ public class MainActivity extends AppCompatActivity
         } else {
             Log.w(TAG, "onResume: NavigationView is null, cannot set checked item.");
         }
+
+        // Resume live readings; an update that became due while paused is fetched right away
+        liveReadingScheduler.start();
+    }
+
+    /**
+     * Returns the source of live readings: a sensor feed file in the app's files directory if one
+     * was provided, otherwise the simulator, which stands in for a live backend until one is available.
+     */
+    private ReadingSource createReadingSource() {
+        File feedFile = new File(getFilesDir(), LOCAL_FEED_FILE_NAME);
+        if (feedFile.isFile()) {
+            try {
+                Log.i(TAG, "createReadingSource: Using sensor feed '" + feedFile.getAbsolutePath() + "'.");
+                return new FeedReadingSource(feedFile.toURI().toURL(), cityCatalog, readingDatabase);
+            } catch (MalformedURLException e) {
+                Log.e(TAG, "createReadingSource: Invalid feed file path, falling back to the simulator.", e);
+            }
+        }
+        Log.d(TAG, "createReadingSource: No sensor feed found. Using simulated readings.");
+        return new SimulatedReadingSource(System.nanoTime(), readingDatabase);
+    }
+
+    /**
+     * Called at most once per frame after the live refresh wrote new readings into the store.
+     * Rebuilds the list for the current selection; the adapter diffs it and rebinds only changed readings.
+     */
+    private void onLiveReadingsChanged() {
+        int cityId = getSelectedCityId();
+        if (cityId == CityCatalog.NO_ID) return; // Placeholder is shown, nothing to refresh
+        Log.v(TAG, "onLiveReadingsChanged: Refreshing list for City ID=" + cityId + ".");
+        updateListViewWithCalculatedData(cityId, getSelectedDistrictId());
     }
 
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.main_options_menu, menu);
-        Log.d(TAG, "onCreateOptionsMenu: Options menu (R.menu.main_options_menu) inflated.");
+        MenuItem worstDistrictsItem = menu.findItem(R.id.action_worst_districts);
+        if (worstDistrictsItem != null) {
+            worstDistrictsItem.setVisible(true);
+        }
+        MenuItem unitsItem = menu.findItem(R.id.action_units);
+        if (unitsItem != null) {
+            unitsItem.setVisible(true);
+        }
+        Log.d(TAG, "onCreateOptionsMenu: Options menu (R.menu.main_options_menu) inflated. Worst districts and units items set to visible.");
         return true;
     }
 
@@ -318,6 +396,14 @@ public class MainActivity extends AppCompatActivity
             Log.d(TAG, "onOptionsItemSelected: Language action (R.id.action_language) selected.");
             showLanguageSelectionDialog(); // Display the language selection dialog
             return true; // Event was handled
+        } else if (item.getItemId() == R.id.action_worst_districts) {
+            Log.d(TAG, "onOptionsItemSelected: Worst districts action (R.id.action_worst_districts) selected.");
+            showWorstDistrictsDialog();
+            return true;
+        } else if (item.getItemId() == R.id.action_units) {
+            Log.d(TAG, "onOptionsItemSelected: Units action (R.id.action_units) selected.");
+            showUnitSelectionDialog();
+            return true;
         }
         // If the item is not one we explicitly handle, pass it to the superclass
         return super.onOptionsItemSelected(item);
@@ -491,134 +577,110 @@ public class MainActivity extends AppCompatActivity
     /**
      * Initializes dummy data for environmental readings.
      * This data is hardcoded and used for demonstration purposes.
-     * The data structure is: City -> District -> {ValueKey: ReadingString}
+     * Readings are written into the shared {@link ReadingStore}, one row per district, in
+     * {@link #DUMMY_ROW_KEYS} order: CO₂, PM2,5, O₂, SO₂, CH₄, p, lp, lx, T, RH. Dew point and
+     * absolute humidity are derived from T, RH and p by the store.
      */
     private void initializeDummyData() {
         Log.d(TAG, "initializeDummyData: Starting with distinct fixed district data for demonstration.");
-        dummyData = new HashMap<>(); // Main map holding data for all cities
+        readingStore = ReadingStore.getInstance(cityCatalog);
+        // Process-wide like the store, so a rotation or locale change keeps the detector's warm-up
+        cityAggregates = CityAggregates.getInstance(cityCatalog, readingStore);
+        anomalyDetector = AnomalyDetector.getInstance(readingStore);
+        airQualityIndex = AirQualityIndex.getInstance(cityCatalog, readingStore);
 
         // --- Data for Braunschweig ---
-        Map<String, Map<String, String>> braunschweigCityData = new HashMap<>(); // Data for districts in Braunschweig
-
-        // Data for "Innere Stadt" district
-        Map<String, String> innerStadt = new HashMap<>();
-        innerStadt.put(KEY_CO2, "480 ppm"); innerStadt.put(KEY_PM25, "28 µg/m³"); innerStadt.put(KEY_O2, "20.6 %");
-        innerStadt.put(KEY_SO2, "7.5 ppb"); innerStadt.put(KEY_CH4, "2.2 ppm"); innerStadt.put(KEY_P, "1010.0 hPa");
-        innerStadt.put(KEY_LP, "75 dB");    innerStadt.put(KEY_LX, "700 lx");    innerStadt.put(KEY_TD, "9.5 °C");
-        innerStadt.put(KEY_ABS_HUMIDITY, "10.0 g/m³");
-        braunschweigCityData.put("Innere Stadt", innerStadt); // Add to Braunschweig's district data
-
-        // Data for "Westliches Ringgebiet" district
-        Map<String, String> westRing = new HashMap<>();
-        westRing.put(KEY_CO2, "440 ppm"); westRing.put(KEY_PM25, "20 µg/m³"); westRing.put(KEY_O2, "20.8 %");
-        westRing.put(KEY_SO2, "5.5 ppb"); westRing.put(KEY_CH4, "1.95 ppm"); westRing.put(KEY_P, "1012.0 hPa");
-        westRing.put(KEY_LP, "68 dB");    westRing.put(KEY_LX, "550 lx");     westRing.put(KEY_TD, "8.8 °C");
-        westRing.put(KEY_ABS_HUMIDITY, "9.0 g/m³");
-        braunschweigCityData.put("Westliches Ringgebiet", westRing);
-
-        // Data for "Östliches Ringgebiet" district
-        Map<String, String> ostRing = new HashMap<>();
-        ostRing.put(KEY_CO2, "425 ppm"); ostRing.put(KEY_PM25, "16 µg/m³"); ostRing.put(KEY_O2, "20.88 %");
-        ostRing.put(KEY_SO2, "4.8 ppb"); ostRing.put(KEY_CH4, "1.88 ppm"); ostRing.put(KEY_P, "1012.9 hPa");
-        ostRing.put(KEY_LP, "62 dB");    ostRing.put(KEY_LX, "490 lx");      ostRing.put(KEY_TD, "8.3 °C");
-        ostRing.put(KEY_ABS_HUMIDITY, "8.8 g/m³");
-        braunschweigCityData.put("Östliches Ringgebiet", ostRing);
-
-        // Data for "Südliches Ringgebiet" district
-        Map<String, String> suedRing = new HashMap<>();
-        suedRing.put(KEY_CO2, "435 ppm"); suedRing.put(KEY_PM25, "19 µg/m³"); suedRing.put(KEY_O2, "20.82 %");
-        suedRing.put(KEY_SO2, "5.1 ppb"); suedRing.put(KEY_CH4, "1.92 ppm"); suedRing.put(KEY_P, "1012.2 hPa");
-        suedRing.put(KEY_LP, "66 dB");    suedRing.put(KEY_LX, "530 lx");     suedRing.put(KEY_TD, "8.5 °C");
-        suedRing.put(KEY_ABS_HUMIDITY, "8.9 g/m³");
-        braunschweigCityData.put("Südliches Ringgebiet", suedRing);
-
-        // Data for "Weststadt" district
-        Map<String, String> weststadt = new HashMap<>();
-        weststadt.put(KEY_CO2, "412 ppm"); weststadt.put(KEY_PM25, "11 µg/m³"); weststadt.put(KEY_O2, "20.91 %");
-        weststadt.put(KEY_SO2, "3.3 ppb"); weststadt.put(KEY_CH4, "1.78 ppm"); weststadt.put(KEY_P, "1013.5 hPa");
-        weststadt.put(KEY_LP, "57 dB");    weststadt.put(KEY_LX, "430 lx");    weststadt.put(KEY_TD, "7.8 °C");
-        weststadt.put(KEY_ABS_HUMIDITY, "8.3 g/m³");
-        braunschweigCityData.put("Weststadt", weststadt);
-
-        // Data for "Heidberg-Melverode" district
-        Map<String, String> heidberg = new HashMap<>();
-        heidberg.put(KEY_CO2, "402 ppm"); heidberg.put(KEY_PM25, "8 µg/m³"); heidberg.put(KEY_O2, "20.97 %");
-        heidberg.put(KEY_SO2, "2.7 ppb"); heidberg.put(KEY_CH4, "1.71 ppm"); heidberg.put(KEY_P, "1014.2 hPa");
-        heidberg.put(KEY_LP, "51 dB");    heidberg.put(KEY_LX, "370 lx");    heidberg.put(KEY_TD, "7.3 °C");
-        heidberg.put(KEY_ABS_HUMIDITY, "7.8 g/m³");
-        braunschweigCityData.put("Heidberg-Melverode", heidberg);
-
-        // Data for "Südstadt" district
-        Map<String, String> suedstadt = new HashMap<>();
-        suedstadt.put(KEY_CO2, "418 ppm"); suedstadt.put(KEY_PM25, "13 µg/m³"); suedstadt.put(KEY_O2, "20.90 %");
-        suedstadt.put(KEY_SO2, "3.9 ppb"); suedstadt.put(KEY_CH4, "1.81 ppm"); suedstadt.put(KEY_P, "1013.1 hPa");
-        suedstadt.put(KEY_LP, "59 dB");    suedstadt.put(KEY_LX, "460 lx");     suedstadt.put(KEY_TD, "7.9 °C");
-        suedstadt.put(KEY_ABS_HUMIDITY, "8.4 g/m³");
-        braunschweigCityData.put("Südstadt", suedstadt);
-
-        // Data for "Bebelhof" district
-        Map<String, String> bebelhof = new HashMap<>();
-        bebelhof.put(KEY_CO2, "428 ppm"); bebelhof.put(KEY_PM25, "17 µg/m³"); bebelhof.put(KEY_O2, "20.86 %");
-        bebelhof.put(KEY_SO2, "4.9 ppb"); bebelhof.put(KEY_CH4, "1.89 ppm"); bebelhof.put(KEY_P, "1012.6 hPa");
-        bebelhof.put(KEY_LP, "64 dB");    bebelhof.put(KEY_LX, "510 lx");     bebelhof.put(KEY_TD, "8.4 °C");
-        bebelhof.put(KEY_ABS_HUMIDITY, "8.85 g/m³");
-        braunschweigCityData.put("Bebelhof", bebelhof);
-
-        // Data for "Nördliches Ringgebiet" district
-        Map<String, String> nordRing = new HashMap<>();
-        nordRing.put(KEY_CO2, "433 ppm"); nordRing.put(KEY_PM25, "19 µg/m³"); nordRing.put(KEY_O2, "20.83 %");
-        nordRing.put(KEY_SO2, "5.3 ppb"); nordRing.put(KEY_CH4, "1.91 ppm"); nordRing.put(KEY_P, "1012.3 hPa");
-        nordRing.put(KEY_LP, "67 dB");    nordRing.put(KEY_LX, "540 lx");     nordRing.put(KEY_TD, "8.6 °C");
-        nordRing.put(KEY_ABS_HUMIDITY, "8.95 g/m³");
-        braunschweigCityData.put("Nördliches Ringgebiet", nordRing);
-
-        // Data for "Braunschweig-Nord" district
-        Map<String, String> bsNord = new HashMap<>();
-        bsNord.put(KEY_CO2, "408 ppm"); bsNord.put(KEY_PM25, "9 µg/m³"); bsNord.put(KEY_O2, "20.94 %");
-        bsNord.put(KEY_SO2, "3.0 ppb"); bsNord.put(KEY_CH4, "1.73 ppm"); bsNord.put(KEY_P, "1013.9 hPa");
-        bsNord.put(KEY_LP, "54 dB");    bsNord.put(KEY_LX, "400 lx");    bsNord.put(KEY_TD, "7.6 °C");
-        bsNord.put(KEY_ABS_HUMIDITY, "8.0 g/m³");
-        braunschweigCityData.put("Braunschweig-Nord", bsNord);
-
-        // Placeholder data for the "Select District" hint option
-        Map<String, String> hintDistrictData = new HashMap<>();
-        hintDistrictData.put(KEY_CO2, "400 ppm"); hintDistrictData.put(KEY_PM25, "7 µg/m³"); hintDistrictData.put(KEY_O2, "20.98 %");
-        hintDistrictData.put(KEY_SO2, "2.5 ppb"); hintDistrictData.put(KEY_CH4, "1.7 ppm"); hintDistrictData.put(KEY_P, "1014.5 hPa");
-        hintDistrictData.put(KEY_LP, "50 dB");    hintDistrictData.put(KEY_LX, "300 lx");    hintDistrictData.put(KEY_TD, "7.0 °C");
-        hintDistrictData.put(KEY_ABS_HUMIDITY, "7.5 g/m³");
-        // Uses getString() for the key to ensure it matches the localized hint in the spinner
-        braunschweigCityData.put(getString(R.string.hint_select_district), hintDistrictData);
-
-        // Add Braunschweig's data to the main dummyData map
-        dummyData.put("Braunschweig", braunschweigCityData);
-        Log.d(TAG, "initializeDummyData: Finished. Braunschweig data includes " + braunschweigCityData.size() + " district entries (including hint).");
+        int city = cityCatalog.findCity("Braunschweig");
+        if (city == CityCatalog.NO_ID) {
+            Log.w(TAG, "initializeDummyData: 'Braunschweig' is not in the catalog. No dummy data written.");
+            return;
+        }
+        putDummyRow(city, "Innere Stadt", 480, 28, 20.6, 7.5, 2.2, 1010.0, 75, 700, 14.2, 73);
+        putDummyRow(city, "Westliches Ringgebiet", 440, 20, 20.8, 5.5, 1.95, 1012.0, 68, 550, 13.6, 73);
+        putDummyRow(city, "Östliches Ringgebiet", 425, 16, 20.88, 4.8, 1.88, 1012.9, 62, 490, 13.3, 72);
+        putDummyRow(city, "Südliches Ringgebiet", 435, 19, 20.82, 5.1, 1.92, 1012.2, 66, 530, 13.5, 72);
+        putDummyRow(city, "Weststadt", 412, 11, 20.91, 3.3, 1.78, 1013.5, 57, 430, 12.9, 71);
+        putDummyRow(city, "Heidberg-Melverode", 402, 8, 20.97, 2.7, 1.71, 1014.2, 51, 370, 12.4, 71);
+        putDummyRow(city, "Südstadt", 418, 13, 20.90, 3.9, 1.81, 1013.1, 59, 460, 13.0, 71);
+        putDummyRow(city, "Bebelhof", 428, 17, 20.86, 4.9, 1.89, 1012.6, 64, 510, 13.4, 72);
+        putDummyRow(city, "Nördliches Ringgebiet", 433, 19, 20.83, 5.3, 1.91, 1012.3, 67, 540, 13.5, 72);
+        putDummyRow(city, "Braunschweig-Nord", 408, 9, 20.94, 3.0, 1.73, 1013.9, 54, 400, 12.7, 71);
+
+        Log.d(TAG, "initializeDummyData: Finished. Reading store sized for " + readingStore.getDistrictCount() + " districts.");
+    }
+
+    /**
+     * Loads the latest persisted reading of every district and metric into the store on the
+     * database thread, then refreshes the list. On the very first start, the dummy readings are
+     * persisted instead, so the history starts with them. The history's quantile sketches are
+     * loaded as well, for the percentile line of the list.
+     */
+    private void loadPersistedReadings() {
+        readingDatabase = ReadingDatabase.getInstance(this);
+        ReadingDatabase database = readingDatabase;
+        ReadingStore store = readingStore;
+        ReadingDatabase.EXECUTOR.execute(() -> {
+            try {
+                if (database.isEmpty()) {
+                    database.insertSnapshot(store, System.currentTimeMillis());
+                    Log.i(TAG, "loadPersistedReadings: Database was empty. Persisted the dummy readings.");
+                } else {
+                    int loaded = database.loadLatest(store);
+                    Log.i(TAG, "loadPersistedReadings: Loaded " + loaded + " persisted readings.");
+                }
+                database.getSketches();
+                runOnUiThread(() -> {
+                    if (!isDestroyed()) onLiveReadingsChanged();
+                });
+            } catch (RuntimeException e) {
+                Log.e(TAG, "loadPersistedReadings: Failed to read the reading database. Keeping dummy readings.", e);
+            }
+        });
+    }
+
+    /**
+     * Writes one district's dummy readings into the store, if the district is in the catalog.
+     * @param readings The readings of {@link #DUMMY_ROW_KEYS}, in that order.
+     */
+    private void putDummyRow(int cityId, String districtName, double... readings) {
+        int districtId = cityCatalog.findDistrict(cityId, districtName);
+        if (districtId == CityCatalog.NO_ID) {
+            Log.w(TAG, "putDummyRow: District '" + districtName + "' is not in the catalog. Skipping.");
+            return;
+        }
+        double[] row = new double[ReadingStore.METRIC_COUNT];
+        Arrays.fill(row, Double.NaN);
+        for (int i = 0; i < DUMMY_ROW_KEYS.length; i++) {
+            row[ReadingStore.metricIndex(DUMMY_ROW_KEYS[i])] = readings[i];
+        }
+        readingStore.setRow(districtId, row);
     }
 
 
     /**
-     * Initializes the lists of cities and their corresponding districts.
-     * These are used to populate the City and District spinners.
-     * Uses string resources for localization.
+     * Loads the city/district catalog and creates the spinner adapters bound to it.
+     * The adapters add the localized "select" hints themselves, so no name lists are copied.
      */
     private void initializeCityDistrictData() {
-        Log.d(TAG, "initializeCityDistrictData: Starting to populate city and district lists.");
-        // Initialize the list of cities
-        cities = new ArrayList<>();
-        cities.add(getString(R.string.hint_select_city)); // "Please select..." hint
-        cities.add("Braunschweig"); // Currently, only Braunschweig is supported
-
-        // Initialize the map of districts for each city
-        districts = new HashMap<>();
-        // Add a default district list for the "select city" hint
-        districts.put(getString(R.string.hint_select_city), Arrays.asList(getString(R.string.hint_select_district)));
-        // Add districts for Braunschweig
-        districts.put("Braunschweig", Arrays.asList(
-                getString(R.string.hint_select_district), // "Please select..." hint
-                "Innere Stadt", "Westliches Ringgebiet", "Östliches Ringgebiet", "Südliches Ringgebiet",
-                "Weststadt", "Heidberg-Melverode", "Südstadt", "Bebelhof",
-                "Nördliches Ringgebiet", "Braunschweig-Nord"
-        ));
-        Log.d(TAG, "initializeCityDistrictData: Finished. Cities: " + cities.size() + ", District map entries: " + districts.size());
+        Log.d(TAG, "initializeCityDistrictData: Loading city/district catalog.");
+        cityCatalog = CityCatalog.getInstance(this);
+        cityAdapter = CatalogSpinnerAdapter.forCities(this, cityCatalog);
+        districtAdapter = CatalogSpinnerAdapter.forDistricts(this, cityCatalog);
+        Log.d(TAG, "initializeCityDistrictData: Finished. Cities: " + cityCatalog.getCityCount() + ", Districts: " + cityCatalog.getTotalDistrictCount());
+    }
+
+    /**
+     * @return The catalog ID of the selected city, or {@link CityCatalog#NO_ID} if the hint is selected.
+     */
+    private int getSelectedCityId() {
+        return cityAdapter.getIdAtPosition(spinnerCity.getSelectedItemPosition());
+    }
+
+    /**
+     * @return The catalog ID of the selected district, or {@link CityCatalog#NO_ID} if the hint is selected.
+     */
+    private int getSelectedDistrictId() {
+        return districtAdapter.getIdAtPosition(spinnerDistrict.getSelectedItemPosition());
     }
 
     /**
@@ -635,7 +697,7 @@ public class MainActivity extends AppCompatActivity
         // Set a LinearLayoutManager by default (single column)
         recyclerViewValues.setLayoutManager(new LinearLayoutManager(this));
         // Create and set the adapter with an empty list initially
-        valueAdapter = new ValueAdapter(new ArrayList<>());
+        valueAdapter = new ValueAdapter(new ArrayList<>(), readingFormatter, unitSystem);
         recyclerViewValues.setAdapter(valueAdapter);
 
         // Set a click listener for items in the RecyclerView
@@ -644,7 +706,7 @@ public class MainActivity extends AppCompatActivity
             // Retrieve the ValueItem object associated with the clicked position
             ValueItem clickedItem = valueAdapter.getValueItem(position);
             if (clickedItem != null) {
-                Log.d(TAG, "Clicked ValueItem: Display Name='" + clickedItem.getDisplayableName() + "', Data Key='" + clickedItem.getDataKey() + "', Reading='" + clickedItem.getReading() + "'.");
+                Log.d(TAG, "Clicked ValueItem: Display Name='" + clickedItem.getDisplayableName() + "', Data Key='" + clickedItem.getDataKey() + "', Reading='" + (clickedItem.hasNumericReading() ? clickedItem.getValue() : clickedItem.getReading()) + "'.");
                 // Get the screen location of the clicked item view to position the popup
                 int[] location = new int[2];
                 itemView.getLocationOnScreen(location);
@@ -658,26 +720,21 @@ public class MainActivity extends AppCompatActivity
     }
 
     /**
-     * Sets up the City spinner with an ArrayAdapter and an item selection listener.
+     * Sets up the City spinner with the catalog adapter and an item selection listener.
      * When a city is selected, it updates the District spinner and refreshes the data view.
      */
     private void setupCitySpinner() {
         Log.d(TAG, "setupCitySpinner: Starting setup for City spinner (R.id.spinner_city).");
-        // Create an ArrayAdapter using the simple spinner layout and the list of cities
-        ArrayAdapter<String> cityAdapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, cities);
-        // Specify the layout to use when the list of choices appears
-        cityAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
-        // Apply the adapter to the spinner
+        // Apply the catalog-backed adapter to the spinner
         spinnerCity.setAdapter(cityAdapter);
 
         // Set the listener for when an item is selected in the city spinner
         spinnerCity.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
             @Override
             public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
-                String selectedCity = (String) parent.getItemAtPosition(position);
-                Log.i(TAG, "City Spinner: Item selected - '" + selectedCity + "' at position " + position + ".");
+                Log.i(TAG, "City Spinner: Item selected - '" + parent.getItemAtPosition(position) + "' (ID " + id + ") at position " + position + ".");
                 // Update the district spinner based on the selected city
-                updateDistrictSpinner(selectedCity);
+                updateDistrictSpinner(cityAdapter.getIdAtPosition(position));
                 // Handle the change in selection to update the displayed data
                 handleCityOrDistrictChange();
             }
@@ -697,18 +754,16 @@ public class MainActivity extends AppCompatActivity
      */
     private void setupDistrictSpinner() {
         Log.d(TAG, "setupDistrictSpinner: Starting setup for District spinner (R.id.spinner_district).");
-        // Get the initially selected city from the city spinner
-        String initialCity = cities.get(spinnerCity.getSelectedItemPosition());
-        // Populate the district spinner based on this initial city
-        updateDistrictSpinner(initialCity);
+        spinnerDistrict.setAdapter(districtAdapter);
+        // Populate the district spinner based on the initially selected city
+        updateDistrictSpinner(getSelectedCityId());
 
         // Set the listener for when an item is selected in the district spinner
         spinnerDistrict.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
             @Override
             public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
                 // When a district is selected, handle the change to update the displayed data
-                String selectedDistrict = (String) parent.getItemAtPosition(position);
-                Log.i(TAG, "District Spinner: Item selected - '" + selectedDistrict + "' at position " + position + ".");
+                Log.i(TAG, "District Spinner: Item selected - '" + parent.getItemAtPosition(position) + "' (ID " + id + ") at position " + position + ".");
                 handleCityOrDistrictChange();
             }
             @Override
@@ -720,29 +775,17 @@ public class MainActivity extends AppCompatActivity
     }
 
     /**
-     * Updates the District spinner's content based on the selected city.
-     * @param selectedCity The city for which to display districts.
+     * Points the District spinner at the districts of the selected city.
+     * The adapter is reused; only its city offset changes.
+     * @param cityId The catalog ID of the selected city, or {@link CityCatalog#NO_ID} for the hint.
      */
-    private void updateDistrictSpinner(String selectedCity) {
-        Log.d(TAG, "updateDistrictSpinner: Updating district spinner for city '" + selectedCity + "'.");
-        // Get the list of districts for the selected city
-        List<String> districtList = districts.get(selectedCity);
-
-        // If no districts are found for the selected city (e.g., for the "select city" hint),
-        // use a default list containing only the "select district" hint.
-        if (districtList == null) {
-            Log.w(TAG, "updateDistrictSpinner: No districts found for city '" + selectedCity + "'. Using default hint list.");
-            districtList = new ArrayList<>(Arrays.asList(getString(R.string.hint_select_district)));
-        }
-
-        // Create an ArrayAdapter for the district spinner
-        ArrayAdapter<String> districtAdapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, districtList);
-        districtAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
-        // Apply the adapter to the district spinner
-        spinnerDistrict.setAdapter(districtAdapter);
-        // Set the selection to the first item (usually the "select district" hint)
+    private void updateDistrictSpinner(int cityId) {
+        Log.d(TAG, "updateDistrictSpinner: Updating district spinner for city ID " + cityId + ".");
+        // For the "select city" hint the adapter only shows the "select district" hint.
+        districtAdapter.setCity(cityId);
+        // Set the selection to the first item (the "select district" hint)
         spinnerDistrict.setSelection(0);
-        Log.d(TAG, "updateDistrictSpinner: Adapter set for district spinner. List size: " + districtList.size() + ". First item: '" + (districtList.isEmpty() ? "EMPTY" : districtList.get(0)) + "'.");
+        Log.d(TAG, "updateDistrictSpinner: District adapter now shows " + districtAdapter.getCount() + " entries (including hint).");
     }
 
     /**
@@ -800,37 +843,18 @@ public class MainActivity extends AppCompatActivity
     private void updateMainView() {
         Log.i(TAG, "updateMainView: Updating main content area (list view or placeholder).");
 
-        // Get selected city from the spinner
-        String selectedCity = cities.get(spinnerCity.getSelectedItemPosition());
-        String selectedDistrict = null;
-
-        // Get the list of districts for the currently selected city
-        List<String> currentDistrictList = districts.get(selectedCity);
-
-        // Determine the selected district name, handling potential out-of-bounds or null list
-        if (currentDistrictList != null && spinnerDistrict.getSelectedItemPosition() >= 0 &&
-                spinnerDistrict.getSelectedItemPosition() < currentDistrictList.size()) {
-            selectedDistrict = currentDistrictList.get(spinnerDistrict.getSelectedItemPosition());
-        } else if (currentDistrictList != null && !currentDistrictList.isEmpty()){
-            // Fallback: if position is invalid, default to the first district in the list (often the hint)
-            selectedDistrict = currentDistrictList.get(0);
-            Log.w(TAG, "updateMainView: District spinner position invalid or list changed. Defaulting to first item: '" + selectedDistrict + "'.");
-        } else {
-            // This case means there's no district list for the selected city, which is problematic.
-            Log.e(TAG, "updateMainView: currentDistrictList is null or empty for city: '" + selectedCity + "'. Showing placeholder.");
-            showPlaceholderMessageForList(); // Show placeholder as data cannot be determined
-            return;
-        }
-
-        Log.d(TAG, "updateMainView: Current selections - City='" + selectedCity + "', District='" + selectedDistrict + "'.");
+        // Get selected city and district IDs; the hint rows map to NO_ID
+        int cityId = getSelectedCityId();
+        int districtId = getSelectedDistrictId();
+        Log.d(TAG, "updateMainView: Current selections - City ID=" + cityId + ", District ID=" + districtId + ".");
 
         // Check if the "select city" hint is currently chosen
-        if (getString(R.string.hint_select_city).equals(selectedCity)) {
+        if (cityId == CityCatalog.NO_ID) {
             Log.d(TAG, "updateMainView: No city properly selected (hint is shown). Displaying placeholder message for the list.");
             showPlaceholderMessageForList(); // Show placeholder message
         } else {
             // A proper city is selected, proceed to show the list view
-            Log.d(TAG, "updateMainView: City '" + selectedCity + "' selected. Preparing to show list for district '" + selectedDistrict + "'.");
+            Log.d(TAG, "updateMainView: City '" + cityCatalog.getCityName(cityId) + "' selected. Preparing to show list for district ID " + districtId + ".");
             // Hide the placeholder message
             if (txtPlaceholderMessage != null) txtPlaceholderMessage.setVisibility(View.GONE);
             // Show the list view container
@@ -847,7 +871,7 @@ public class MainActivity extends AppCompatActivity
                 }
             }
             // Update the list view with data for the selected city and district
-            updateListViewWithCalculatedData(selectedCity, selectedDistrict);
+            updateListViewWithCalculatedData(cityId, districtId);
         }
     }
 
@@ -886,11 +910,14 @@ public class MainActivity extends AppCompatActivity
 
     /**
      * Updates the RecyclerView (list view) with calculated/dummy data for the given city and district.
-     * @param city The selected city name.
-     * @param district The selected district name.
+     * Readings come from the in-memory {@link ReadingStore}, not from a database query: the store
+     * holds the latest reading of every pair (seeded from the database in loadPersistedReadings and
+     * written together with it), so building the list is plain array access on the main thread.
+     * @param cityId The catalog ID of the selected city, or {@link CityCatalog#NO_ID}.
+     * @param districtId The catalog ID of the selected district, or {@link CityCatalog#NO_ID} for the hint.
      */
-    private void updateListViewWithCalculatedData(String city, String district) {
-        Log.i(TAG, "updateListViewWithCalculatedData: Updating list for City='" + city + "', District='" + district + "'.");
+    private void updateListViewWithCalculatedData(int cityId, int districtId) {
+        Log.i(TAG, "updateListViewWithCalculatedData: Updating list for City ID=" + cityId + ", District ID=" + districtId + ".");
         List<ValueItem> dataForList = new ArrayList<>(); // List to hold ValueItem objects for the adapter
 
         if (valueAdapter == null) {
@@ -898,50 +925,48 @@ public class MainActivity extends AppCompatActivity
             return;
         }
 
+        // Feed the readings that changed since the last update to the detector, whatever is selected;
+        // O(1) per changed reading and free when nothing changed
+        if (anomalyDetector.observe(readingStore)) {
+            Log.d(TAG, "updateListViewWithCalculatedData: Anomaly flags changed.");
+        }
+
         // If the "select city" hint is chosen, show an empty list.
-        if (getString(R.string.hint_select_city).equals(city)) {
+        if (cityId == CityCatalog.NO_ID) {
             Log.d(TAG, "updateListViewWithCalculatedData: 'Select city' hint is active. Showing empty list.");
             valueAdapter.updateData(dataForList); // Pass empty list to adapter
             return;
         }
 
-        // Retrieve data for the selected city from the dummyData map
-        Map<String, Map<String, String>> cityData = dummyData.get(city);
-        Log.d(TAG, "updateListViewWithCalculatedData: Fetched cityData for '" + city + "'. Found: " + (cityData != null ? "yes (contains " + cityData.size() + " district entries)" : "no"));
-
-        Map<String, String> districtSpecificReadings = null;
-        if (cityData != null) {
-            // Check if the "select district" hint is chosen for the district
-            if (district != null && district.equals(getString(R.string.hint_select_district))) {
-                // If hint is selected, use the data associated with the hint key in dummyData
-                districtSpecificReadings = cityData.get(getString(R.string.hint_select_district));
-                Log.d(TAG, "updateListViewWithCalculatedData: 'Select district' hint is active. Using hint-specific data.");
-            } else if (district != null && cityData.containsKey(district)) {
-                // If a specific district is selected, get its data
-                districtSpecificReadings = cityData.get(district);
-                Log.d(TAG, "updateListViewWithCalculatedData: Specific district '" + district + "' selected. Using its data.");
-            } else {
-                // Fallback: if district is null or not found, use data for the hint (or could be an error state)
-                districtSpecificReadings = cityData.get(getString(R.string.hint_select_district));
-                Log.w(TAG, "updateListViewWithCalculatedData: District '" + district + "' not found or null. Fallback to hint data.");
-            }
+        // While the "select district" hint is active, show the city-wide aggregate of each metric
+        if (districtId == CityCatalog.NO_ID) {
+            Log.d(TAG, "updateListViewWithCalculatedData: 'Select district' hint is active. Using city-wide aggregates.");
+            addCityAggregateItems(cityId, dataForList);
+            valueAdapter.updateData(dataForList);
+            return;
         }
 
-        // If no readings found for the district (even after fallback), use an empty map to avoid NullPointerExceptions
-        if (districtSpecificReadings == null) {
-            Log.w(TAG, "updateListViewWithCalculatedData: No data found for City='" + city + "', District='" + district + "'. Using empty readings map.");
-            districtSpecificReadings = new HashMap<>(); // Prevent NPE
-        }
+        // Otherwise the district's own row in the reading store
+        int row = districtId;
+        Log.d(TAG, "updateListViewWithCalculatedData: District '" + cityCatalog.getDistrictName(districtId) + "' selected. Using row " + row + ".");
 
-        // Iterate through all known data keys (CO2, PM2.5, etc.) to create ValueItem objects
+        // Iterate through all known data keys (CO2, PM2.5, etc.) to create ValueItem objects.
+        // Missing rows or readings are formatted as "N/A" by the store.
+        QuantileSketches sketches = readingDatabase != null ? readingDatabase.getSketchesIfLoaded() : null;
+        // The composite AQI comes first, then one row per metric
+        dataForList.add(buildAqiItem(row));
         for (String dataKey : ALL_VALUE_DATA_KEYS) {
-            // Get the reading for the current dataKey, or "N/A" if not found
-            String reading = districtSpecificReadings.getOrDefault(dataKey, "N/A");
+            int metric = ReadingStore.metricIndex(dataKey);
+            // The raw value; the adapter converts and formats it in the user's units when the row is bound
+            double value = readingStore.get(row, metric);
             // Get the displayable (potentially localized) name for the dataKey
             String displayName = getDisplayableNameForKey(dataKey);
+            String summary = sketches != null ? buildPercentileSummary(sketches, cityId, row, metric) : null;
+            boolean anomalous = anomalyDetector.isAnomalous(row, metric);
+            if (anomalous) Log.d(TAG, "updateListViewWithCalculatedData: Reading of '" + dataKey + "' flagged as anomalous: " + value + " " + ReadingStore.unit(metric) + ".");
             // Create a new ValueItem and add it to the list
-            dataForList.add(new ValueItem(displayName, reading, dataKey));
-            Log.v(TAG, "updateListViewWithCalculatedData: Added to list: Key='" + dataKey + "', DisplayName='" + displayName + "', Reading='" + reading + "'.");
+            dataForList.add(new ValueItem(displayName, metric, value, dataKey, summary, anomalous));
+            Log.v(TAG, "updateListViewWithCalculatedData: Added to list: Key='" + dataKey + "', DisplayName='" + displayName + "', Value=" + value + ".");
         }
 
         // Update the RecyclerView's adapter with the new list of data
@@ -949,6 +974,193 @@ public class MainActivity extends AppCompatActivity
         Log.d(TAG, "updateListViewWithCalculatedData: List updated with " + dataForList.size() + " items.");
     }
 
+    /**
+     * Describes where a district stands for a metric: p50/p90/p99 of its own history and the share
+     * of the city's recorded readings at or below its current one.
+     * @return The summary, or null while the district has too little history.
+     */
+    private String buildPercentileSummary(QuantileSketches sketches, int cityId, int row, int metric) {
+        if (sketches.count(row, metric) < PERCENTILE_MIN_HISTORY) return null;
+        String p50 = readingFormatter.formatNumber(unitSystem, metric, sketches.quantile(row, metric, 0.5));
+        String p90 = readingFormatter.formatNumber(unitSystem, metric, sketches.quantile(row, metric, 0.9));
+        String p99 = readingFormatter.formatNumber(unitSystem, metric, sketches.quantile(row, metric, 0.99));
+        double cityShare = sketches.cityCdf(cityCatalog, cityId, metric, readingStore.get(row, metric));
+        if (Double.isNaN(cityShare)) return getString(R.string.percentile_summary_history, p50, p90, p99);
+        return getString(R.string.percentile_summary, p50, p90, p99, Math.round(cityShare * 100));
+    }
+
+    /**
+     * Adds one item per metric with the mean across the city's districts as the reading and
+     * median and range as the summary. Metrics no district has a reading for fall back to the
+     * city's overview row (e.g. a city-wide sensor from a feed).
+     */
+    private void addCityAggregateItems(int cityId, List<ValueItem> dataForList) {
+        int overviewRow = readingStore.overviewRow(cityId);
+        dataForList.add(buildCityAqiItem(cityId));
+        for (String dataKey : ALL_VALUE_DATA_KEYS) {
+            int metric = ReadingStore.metricIndex(dataKey);
+            CityAggregates.Stats stats = cityAggregates.get(cityId, metric);
+            String reading;
+            String summary = null;
+            if (stats.count > 0) {
+                reading = getString(R.string.city_aggregate_mean, readingFormatter.format(unitSystem, metric, stats.mean));
+                summary = getString(R.string.city_aggregate_summary, readingFormatter.formatNumber(unitSystem, metric, stats.median),
+                        readingFormatter.formatNumber(unitSystem, metric, stats.min), readingFormatter.formatNumber(unitSystem, metric, stats.max), stats.count);
+            } else {
+                reading = readingFormatter.format(unitSystem, metric, readingStore.get(overviewRow, metric));
+            }
+            dataForList.add(new ValueItem(getDisplayableNameForKey(dataKey), reading, dataKey, summary));
+            Log.v(TAG, "addCityAggregateItems: Key='" + dataKey + "', Reading='" + reading + "', Summary='" + summary + "'.");
+        }
+    }
+
+    /**
+     * Builds the AQI row of a district (or overview row): the composite index as the reading,
+     * its category and dominant pollutant as the summary.
+     */
+    private ValueItem buildAqiItem(int row) {
+        int aqi = airQualityIndex.get(row);
+        if (aqi == AirQualityIndex.NO_INDEX) {
+            return new ValueItem(getDisplayableNameForKey(KEY_AQI), "N/A", KEY_AQI);
+        }
+        String pollutant = getDisplayableNameForKey(ReadingStore.METRIC_KEYS[airQualityIndex.getDominantMetric(row)]);
+        String summary = getString(R.string.aqi_summary, getAqiCategoryName(aqi), pollutant);
+        return new ValueItem(getDisplayableNameForKey(KEY_AQI), String.valueOf(aqi), KEY_AQI, summary);
+    }
+
+    /**
+     * Builds the AQI row of a city: the index of its worst district, named in the summary.
+     * Falls back to the city's overview row if no district has an index.
+     */
+    private ValueItem buildCityAqiItem(int cityId) {
+        int[] ranked = airQualityIndex.rankDistricts(cityId);
+        if (ranked.length == 0) {
+            return buildAqiItem(readingStore.overviewRow(cityId));
+        }
+        int worst = ranked[0];
+        int aqi = airQualityIndex.get(worst);
+        String summary = getString(R.string.aqi_city_summary, getAqiCategoryName(aqi), cityCatalog.getDistrictName(worst));
+        return new ValueItem(getDisplayableNameForKey(KEY_AQI), String.valueOf(aqi), KEY_AQI, summary);
+    }
+
+    private String getAqiCategoryName(int aqi) {
+        return getResources().getStringArray(R.array.aqi_categories)[AirQualityIndex.category(aqi)];
+    }
+
+    /**
+     * Shows the districts of the selected city with their AQI, worst first. The order can be
+     * switched to best first or by name; tapping a district selects it in the District spinner.
+     */
+    private void showWorstDistrictsDialog() {
+        int cityId = getSelectedCityId();
+        if (cityId == CityCatalog.NO_ID) {
+            Log.d(TAG, "showWorstDistrictsDialog: No city selected. Not showing the dialog.");
+            Toast.makeText(this, R.string.placeholder_select_city_for_list, Toast.LENGTH_SHORT).show();
+            return;
+        }
+        Log.d(TAG, "showWorstDistrictsDialog: Ranking districts of '" + cityCatalog.getCityName(cityId) + "'.");
+
+        View dialogView = LayoutInflater.from(this).inflate(R.layout.dialog_worst_districts, null);
+        RadioGroup sortGroup = dialogView.findViewById(R.id.rg_district_sort);
+        ListView listView = dialogView.findViewById(R.id.list_ranked_districts);
+        listView.setEmptyView(dialogView.findViewById(R.id.tv_ranked_districts_empty));
+
+        // Ranked worst first by the index; the other orders are derived from it
+        int[] ranked = airQualityIndex.rankDistricts(cityId);
+        int[] shown = new int[ranked.length];
+        List<String> entries = new ArrayList<>(ranked.length);
+        ArrayAdapter<String> listAdapter = new ArrayAdapter<>(this, android.R.layout.simple_list_item_1, entries);
+        listView.setAdapter(listAdapter);
+
+        Runnable fillList = () -> {
+            int checkedId = sortGroup.getCheckedRadioButtonId();
+            if (checkedId == R.id.rb_sort_by_name) {
+                Integer[] byName = new Integer[ranked.length];
+                for (int i = 0; i < ranked.length; i++) byName[i] = ranked[i];
+                Collator collator = Collator.getInstance();
+                Arrays.sort(byName, (a, b) -> collator.compare(cityCatalog.getDistrictName(a), cityCatalog.getDistrictName(b)));
+                for (int i = 0; i < ranked.length; i++) shown[i] = byName[i];
+            } else {
+                boolean bestFirst = checkedId == R.id.rb_sort_best_first;
+                for (int i = 0; i < ranked.length; i++) shown[i] = ranked[bestFirst ? ranked.length - 1 - i : i];
+            }
+            entries.clear();
+            for (int districtId : shown) {
+                int aqi = airQualityIndex.get(districtId);
+                entries.add(getString(R.string.worst_districts_entry, aqi, cityCatalog.getDistrictName(districtId), getAqiCategoryName(aqi)));
+            }
+            listAdapter.notifyDataSetChanged();
+            Log.d(TAG, "showWorstDistrictsDialog: Listed " + shown.length + " districts (sort button ID " + checkedId + ").");
+        };
+        fillList.run();
+        sortGroup.setOnCheckedChangeListener((group, checkedId) -> fillList.run());
+
+        AlertDialog dialog = new MaterialAlertDialogBuilder(this)
+                .setTitle(getString(R.string.dialog_title_worst_districts, cityCatalog.getCityName(cityId)))
+                .setView(dialogView)
+                .setNegativeButton(getString(R.string.dialog_close), (d, which) -> d.dismiss())
+                .create();
+
+        listView.setOnItemClickListener((parent, view, position, id) -> {
+            int districtId = shown[position];
+            Log.i(TAG, "showWorstDistrictsDialog: District '" + cityCatalog.getDistrictName(districtId) + "' tapped. Selecting it.");
+            // Position 0 of the District spinner is the hint
+            spinnerDistrict.setSelection(districtId - cityCatalog.getFirstDistrictId(cityId) + 1);
+            dialog.dismiss();
+        });
+        dialog.show();
+    }
+
+    /**
+     * Shows a dialog with one checkbox per unit choice (°F, inHg, mass concentrations). On OK the
+     * choice is saved and the list is shown in the new units; no activity restart is needed.
+     */
+    private void showUnitSelectionDialog() {
+        final int[] optionFlags = { UnitSystem.FAHRENHEIT, UnitSystem.INCHES_OF_MERCURY, UnitSystem.MASS_CONCENTRATION };
+        String[] options = {
+                getString(R.string.unit_option_fahrenheit),
+                getString(R.string.unit_option_inches_of_mercury),
+                getString(R.string.unit_option_mass_concentration)
+        };
+        final boolean[] checked = new boolean[optionFlags.length];
+        for (int i = 0; i < optionFlags.length; i++) checked[i] = (unitSystem.getFlags() & optionFlags[i]) != 0;
+        Log.d(TAG, "showUnitSelectionDialog: Current unit system flags " + unitSystem.getFlags() + ".");
+
+        new MaterialAlertDialogBuilder(this)
+                .setTitle(R.string.dialog_title_units)
+                .setMultiChoiceItems(options, checked, (dialog, which, isChecked) -> checked[which] = isChecked)
+                .setPositiveButton(android.R.string.ok, (dialog, which) -> {
+                    int flags = 0;
+                    for (int i = 0; i < optionFlags.length; i++) {
+                        if (checked[i]) flags |= optionFlags[i];
+                    }
+                    setUnitSystem(UnitSystem.of(flags));
+                    dialog.dismiss();
+                })
+                .setNegativeButton(getString(R.string.dialog_cancel), (dialog, which) -> {
+                    Log.d(TAG, "showUnitSelectionDialog: Unit selection dialog cancelled by user.");
+                    dialog.dismiss();
+                })
+                .show();
+    }
+
+    /**
+     * Persists the preferred units and shows the list in them. Numeric readings are only rebound;
+     * the list is rebuilt for the preformatted aggregates and summaries.
+     */
+    private void setUnitSystem(UnitSystem newUnitSystem) {
+        if (newUnitSystem == unitSystem) {
+            Log.d(TAG, "setUnitSystem: Units unchanged (flags " + unitSystem.getFlags() + "). No action needed.");
+            return;
+        }
+        Log.i(TAG, "setUnitSystem: Changing unit system flags from " + unitSystem.getFlags() + " to " + newUnitSystem.getFlags() + ".");
+        unitSystem = newUnitSystem;
+        PreferenceManager.getDefaultSharedPreferences(this).edit().putInt(PREF_UNIT_FLAGS, unitSystem.getFlags()).apply();
+        if (valueAdapter != null) valueAdapter.setUnitSystem(unitSystem);
+        int cityId = getSelectedCityId();
+        if (cityId != CityCatalog.NO_ID) updateListViewWithCalculatedData(cityId, getSelectedDistrictId());
+    }
+
     /**
      * Returns a displayable (potentially localized) name for a given data key.
      * @param dataKey The internal data key (e.g., KEY_CO2).
@@ -968,6 +1180,7 @@ public class MainActivity extends AppCompatActivity
             case KEY_LX: return "lx"; // Illuminance
             case KEY_TD: return "Td"; // Dew point
             case KEY_ABS_HUMIDITY: return getString(R.string.value_absolute_humidity); // Localized string
+            case KEY_AQI: return getString(R.string.value_aqi); // Localized abbreviation
             default:
                 Log.w(TAG, "getDisplayableNameForKey: Unknown dataKey '" + dataKey + "'. Returning key itself as display name.");
                 return dataKey; // Fallback to the key itself if no mapping exists
@@ -1020,6 +1233,7 @@ public class MainActivity extends AppCompatActivity
         resourceNameMap.put(KEY_LX, "explanation_lx_short");
         resourceNameMap.put(KEY_TD, "explanation_td_short");
         resourceNameMap.put(KEY_ABS_HUMIDITY, "explanation_absolute_humidity_short");
+        resourceNameMap.put(KEY_AQI, "explanation_aqi_short");
 
         // Get the resource name from the map
         String resourceName = resourceNameMap.get(dataKey);
@@ -1045,7 +1259,7 @@ public class MainActivity extends AppCompatActivity
 
     // Standard lifecycle logging methods
     @Override protected void onStart() { super.onStart(); Log.d(TAG, "onStart: Activity starting."); }
-    @Override protected void onPause() { super.onPause(); Log.d(TAG, "onPause: Activity paused."); }
-    @Override protected void onStop() { super.onStop(); Log.d(TAG, "onStop: Activity stopped."); }
-    @Override protected void onDestroy() { super.onDestroy(); Log.d(TAG, "onDestroy: Activity being destroyed."); }
+    @Override protected void onPause() { liveReadingScheduler.stop(); super.onPause(); Log.d(TAG, "onPause: Activity paused, live refresh stopped."); }
+    @Override protected void onStop() { liveReadingScheduler.stop(); super.onStop(); Log.d(TAG, "onStop: Activity stopped."); }
+    @Override protected void onDestroy() { liveReadingScheduler.shutdown(); super.onDestroy(); Log.d(TAG, "onDestroy: Activity being destroyed."); }
 }
\ No newline at end of file
@@ -0,0 +1,230 @@
+package com.stadtiq;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Mergeable quantile sketch of a stream of values (a merging t-digest). Values are summarized by
+ * at most about {@link #COMPRESSION} weighted centroids: small ones near the tails, large ones
+ * around the median, so extreme quantiles such as p99 stay accurate while the sketch keeps a
+ * fixed size however many values it has seen. Sketches of several districts merge into the sketch
+ * of their union, e.g. a city. New values are buffered and folded into the centroids in batches.
+ * Not thread-safe.
+ */
+public final class QuantileSketch {
+
+    // Size/accuracy trade-off: the number of centroids stays below about this value
+    static final int COMPRESSION = 100;
+    private static final int BUFFER_SIZE = 5 * COMPRESSION;
+    private static final int FORMAT_VERSION = 1;
+
+    // Centroids sorted by mean
+    private double[] means = new double[0];
+    private double[] weights = new double[0];
+    private int centroidCount;
+    private double totalWeight;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    // Values not yet merged into the centroids
+    private final double[] buffer = new double[BUFFER_SIZE];
+    private int bufferCount;
+
+    public void add(double value) {
+        if (Double.isNaN(value)) return;
+        if (bufferCount == BUFFER_SIZE) compress();
+        buffer[bufferCount++] = value;
+        if (value < min) min = value;
+        if (value > max) max = value;
+    }
+
+    /**
+     * Adds all values summarized by {@code other}; {@code other} is not modified.
+     */
+    public void merge(QuantileSketch other) {
+        if (other.count() == 0) return;
+        compress();
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        if (other.centroidCount > 0) collapse(other.means, other.weights, other.centroidCount);
+        if (other.bufferCount > 0) {
+            // Fold in a sorted copy of other's pending values rather than compressing other
+            double[] pending = Arrays.copyOf(other.buffer, other.bufferCount);
+            Arrays.sort(pending);
+            collapse(pending, null, pending.length);
+        }
+    }
+
+    /**
+     * Returns the number of values seen.
+     */
+    public long count() {
+        return Math.round(totalWeight) + bufferCount;
+    }
+
+    /**
+     * Returns the estimated value below which a share {@code q} (0..1) of the values lie,
+     * or NaN if the sketch is empty.
+     */
+    public double quantile(double q) {
+        compress();
+        if (centroidCount == 0) return Double.NaN;
+        if (q <= 0) return min;
+        if (q >= 1) return max;
+        double index = q * totalWeight;
+        // Below the first centroid's center: interpolate from the minimum
+        double firstCenter = weights[0] / 2;
+        if (index < firstCenter) return min + (means[0] - min) * (index / firstCenter);
+        double cumulative = firstCenter;
+        for (int i = 0; i < centroidCount - 1; i++) {
+            double step = (weights[i] + weights[i + 1]) / 2;
+            if (index < cumulative + step) {
+                return means[i] + (means[i + 1] - means[i]) * ((index - cumulative) / step);
+            }
+            cumulative += step;
+        }
+        // Above the last centroid's center: interpolate to the maximum
+        double lastHalf = weights[centroidCount - 1] / 2;
+        double fraction = Math.min(1, (index - cumulative) / lastHalf);
+        return means[centroidCount - 1] + (max - means[centroidCount - 1]) * fraction;
+    }
+
+    /**
+     * Returns the estimated share (0..1) of values at or below {@code value}, or NaN if the sketch is empty.
+     */
+    public double cdf(double value) {
+        compress();
+        if (centroidCount == 0 || Double.isNaN(value)) return Double.NaN;
+        if (value < min) return 0;
+        if (value >= max) return 1;
+        if (centroidCount == 1) return (value - min) / (max - min);
+        if (value < means[0]) return (weights[0] / 2) * (value - min) / (means[0] - min) / totalWeight;
+        double cumulative = weights[0] / 2;
+        for (int i = 0; i < centroidCount - 1; i++) {
+            if (value < means[i + 1]) {
+                double span = means[i + 1] - means[i];
+                double fraction = span > 0 ? (value - means[i]) / span : 0.5;
+                return (cumulative + fraction * (weights[i] + weights[i + 1]) / 2) / totalWeight;
+            }
+            cumulative += (weights[i] + weights[i + 1]) / 2;
+        }
+        double lastHalf = weights[centroidCount - 1] / 2;
+        double fraction = (value - means[centroidCount - 1]) / (max - means[centroidCount - 1]);
+        return (cumulative + fraction * lastHalf) / totalWeight;
+    }
+
+    /**
+     * Serializes the sketch, e.g. to persist it next to the readings it summarizes.
+     */
+    public byte[] toBytes() {
+        compress();
+        ByteBuffer out = ByteBuffer.allocate(4 + 8 + 8 + 4 + centroidCount * 16);
+        out.putInt(FORMAT_VERSION).putDouble(min).putDouble(max).putInt(centroidCount);
+        for (int i = 0; i < centroidCount; i++) out.putDouble(means[i]).putDouble(weights[i]);
+        return out.array();
+    }
+
+    /**
+     * Restores a sketch written by {@link #toBytes()}.
+     * @throws IllegalArgumentException If the data is not a serialized sketch.
+     */
+    public static QuantileSketch fromBytes(byte[] data) {
+        ByteBuffer in = ByteBuffer.wrap(data);
+        if (data.length < 24 || in.getInt() != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Not a serialized quantile sketch");
+        }
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.min = in.getDouble();
+        sketch.max = in.getDouble();
+        int count = in.getInt();
+        if (count < 0 || in.remaining() != count * 16) throw new IllegalArgumentException("Truncated quantile sketch");
+        sketch.means = new double[count];
+        sketch.weights = new double[count];
+        for (int i = 0; i < count; i++) {
+            sketch.means[i] = in.getDouble();
+            sketch.weights[i] = in.getDouble();
+            sketch.totalWeight += sketch.weights[i];
+        }
+        sketch.centroidCount = count;
+        return sketch;
+    }
+
+    // Folds the buffered values into the centroids
+    private void compress() {
+        if (bufferCount == 0) return;
+        Arrays.sort(buffer, 0, bufferCount);
+        int count = bufferCount;
+        bufferCount = 0;
+        collapse(buffer, null, count);
+    }
+
+    /**
+     * Merges the centroids with {@code count} more, sorted by mean ({@code addedWeights} null for
+     * single values), and combines neighbours as long as the combined centroid still spans at most
+     * one unit of the scale function k(q) = COMPRESSION / (2 pi) * asin(2q - 1), which allows large
+     * centroids around the median and small ones at the tails.
+     */
+    private void collapse(double[] addedMeans, double[] addedWeights, int count) {
+        double total = totalWeight;
+        if (addedWeights == null) total += count;
+        else for (int i = 0; i < count; i++) total += addedWeights[i];
+
+        double[] outMeans = new double[Math.min(centroidCount + count, 2 * COMPRESSION)];
+        double[] outWeights = new double[outMeans.length];
+        int out = 0;
+        double weightSoFar = 0;
+        double currentMean = 0, currentWeight = 0;
+        double qLimit = qOfK(kOfQ(0) + 1);
+        // Two-way merge of the existing and the added centroids, both sorted by mean
+        for (int i = 0, j = 0; i < centroidCount || j < count; ) {
+            double mean, weight;
+            if (j == count || (i < centroidCount && means[i] <= addedMeans[j])) {
+                mean = means[i];
+                weight = weights[i++];
+            } else {
+                mean = addedMeans[j];
+                weight = addedWeights != null ? addedWeights[j] : 1;
+                j++;
+            }
+            if (currentWeight == 0) {
+                currentMean = mean;
+                currentWeight = weight;
+            } else if ((weightSoFar + currentWeight + weight) / total <= qLimit) {
+                currentWeight += weight;
+                currentMean += (mean - currentMean) * weight / currentWeight;
+            } else {
+                if (out == outMeans.length) {
+                    outMeans = Arrays.copyOf(outMeans, out * 2);
+                    outWeights = Arrays.copyOf(outWeights, out * 2);
+                }
+                outMeans[out] = currentMean;
+                outWeights[out++] = currentWeight;
+                weightSoFar += currentWeight;
+                qLimit = qOfK(kOfQ(weightSoFar / total) + 1);
+                currentMean = mean;
+                currentWeight = weight;
+            }
+        }
+        if (out == outMeans.length) {
+            outMeans = Arrays.copyOf(outMeans, out + 1);
+            outWeights = Arrays.copyOf(outWeights, out + 1);
+        }
+        outMeans[out] = currentMean;
+        outWeights[out++] = currentWeight;
+
+        means = outMeans;
+        weights = outWeights;
+        centroidCount = out;
+        totalWeight = total;
+    }
+
+    private static double kOfQ(double q) {
+        return COMPRESSION / (2 * Math.PI) * Math.asin(2 * q - 1);
+    }
+
+    private static double qOfK(double k) {
+        double scaled = k * 2 * Math.PI / COMPRESSION;
+        if (scaled >= Math.PI / 2) return 1;
+        return (Math.sin(scaled) + 1) / 2;
+    }
+}
@@ -0,0 +1,107 @@
+package com.stadtiq;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One {@link QuantileSketch} per (district, metric) pair of the persisted history, kept up to date
+ * by the {@link ReadingDatabase} as readings are inserted. Percentiles of a district's own history
+ * are read from its sketch; the distribution of a whole city is the merge of its districts'
+ * sketches, merged once per (city, metric) and then kept up to date by adding new readings to it as
+ * well. All methods are thread-safe and cheap enough for the main thread.
+ */
+public final class QuantileSketches {
+
+    private static final int M = ReadingStore.METRIC_COUNT;
+
+    // Keyed by row * METRIC_COUNT + metric, rows as in the ReadingStore
+    private final Map<Integer, QuantileSketch> sketches = new HashMap<>();
+    // Merged city sketches, keyed by city * METRIC_COUNT + metric; new readings are added to them too
+    private final Map<Integer, QuantileSketch> citySketches = new HashMap<>();
+    // City key of every (district, metric) key merged into a cached city sketch
+    private final Map<Integer, Integer> cityKeys = new HashMap<>();
+
+    static int key(int row, int metric) {
+        return row * M + metric;
+    }
+
+    synchronized void put(int row, int metric, QuantileSketch sketch) {
+        int key = key(row, metric);
+        sketches.put(key, sketch);
+        // A replaced district sketch cannot be taken out of the merge; re-merge its city on next use
+        Integer cityKey = cityKeys.get(key);
+        if (cityKey != null) citySketches.remove(cityKey);
+    }
+
+    /**
+     * Adds a value to the sketch of a (district, metric) pair.
+     */
+    synchronized void add(int row, int metric, double value) {
+        int key = key(row, metric);
+        QuantileSketch sketch = sketches.get(key);
+        if (sketch == null) {
+            sketch = new QuantileSketch();
+            sketches.put(key, sketch);
+        }
+        sketch.add(value);
+        Integer cityKey = cityKeys.get(key);
+        QuantileSketch city = cityKey != null ? citySketches.get(cityKey) : null;
+        if (city != null) city.add(value);
+    }
+
+    synchronized byte[] serialize(int key) {
+        QuantileSketch sketch = sketches.get(key);
+        return sketch != null ? sketch.toBytes() : null;
+    }
+
+    /**
+     * Returns the number of readings in the history of a (district, metric) pair.
+     */
+    public synchronized long count(int row, int metric) {
+        QuantileSketch sketch = sketches.get(key(row, metric));
+        return sketch != null ? sketch.count() : 0;
+    }
+
+    /**
+     * Returns the estimated {@code q} quantile (0..1) of a (district, metric) pair's history,
+     * or NaN if it has none.
+     */
+    public synchronized double quantile(int row, int metric, double q) {
+        QuantileSketch sketch = sketches.get(key(row, metric));
+        return sketch != null ? sketch.quantile(q) : Double.NaN;
+    }
+
+    /**
+     * Returns the estimated share (0..1) of all readings of a metric across the districts of a
+     * city that are at or below {@code value}, or NaN if the city has no history of the metric.
+     */
+    public synchronized double cityCdf(CityCatalog catalog, int cityId, int metric, double value) {
+        QuantileSketch city = citySketch(catalog, cityId, metric);
+        return city != null ? city.cdf(value) : Double.NaN;
+    }
+
+    /**
+     * Returns the estimated {@code q} quantile (0..1) of all readings of a metric across the
+     * districts of a city, or NaN if the city has no history of the metric.
+     */
+    public synchronized double cityQuantile(CityCatalog catalog, int cityId, int metric, double q) {
+        QuantileSketch city = citySketch(catalog, cityId, metric);
+        return city != null ? city.quantile(q) : Double.NaN;
+    }
+
+    private QuantileSketch citySketch(CityCatalog catalog, int cityId, int metric) {
+        int cityKey = key(cityId, metric);
+        QuantileSketch merged = citySketches.get(cityKey);
+        if (merged != null) return merged.count() > 0 ? merged : null;
+        merged = new QuantileSketch();
+        int first = catalog.getFirstDistrictId(cityId);
+        for (int d = first; d < first + catalog.getDistrictCount(cityId); d++) {
+            int key = key(d, metric);
+            QuantileSketch district = sketches.get(key);
+            if (district != null) merged.merge(district);
+            cityKeys.put(key, cityKey);
+        }
+        citySketches.put(cityKey, merged);
+        return merged.count() > 0 ? merged : null;
+    }
+}
@@ -0,0 +1,454 @@
+package com.stadtiq;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Persistent history of every ingested reading, in a local SQLite database:
+ * <pre>
+ *   readings(district, metric, timestamp, value)   PRIMARY KEY (district, metric, timestamp)
+ *   rollups(tier, district, metric, bucket_start, min_value, max_value, sum_value, count)
+ *                                                  PRIMARY KEY (tier, district, metric, bucket_start)
+ *   sketches(district, metric, sketch)             PRIMARY KEY (district, metric)
+ * </pre>
+ * {@code district} is a {@link ReadingStore} row (a catalog district ID or a city overview row)
+ * and {@code metric} a metric ID. The table is a {@code WITHOUT ROWID} table clustered on its
+ * composite key, so the range of one (district, metric) pair is a single contiguous index scan.
+ * The {@link HistoryRollups} tiers and the {@link QuantileSketch} of every pair (serialized in
+ * {@code sketches}, served from memory through {@link #getSketches()}) are updated in the same
+ * transaction as the readings they cover.
+ * The database runs in WAL mode: readers (graph, exports) never block the ingestion writer.
+ * <p>
+ * The database is the durable record and the source of history; it is not queried for the
+ * current readings shown in the list. Those are served from the in-memory {@link ReadingStore},
+ * which every {@link ReadingSource} writes in step with {@link #insertBatch} and which is seeded
+ * once per process from {@link #loadLatest(ReadingStore)}, so the list, AQI, anomaly flags and
+ * aggregates read all rows synchronously without a query per update.
+ * All methods do disk I/O; call them on {@link #EXECUTOR} or another background thread.
+ */
+public final class ReadingDatabase extends SQLiteOpenHelper {
+
+    private static final String TAG = "ReadingDatabase";
+    private static final String DATABASE_NAME = "readings.db";
+    // Version 2 added the rollup tiers, version 3 the quantile sketches
+    private static final int DATABASE_VERSION = 3;
+
+    private static final String TABLE_READINGS = "readings";
+    private static final String SQL_CREATE_READINGS = "CREATE TABLE " + TABLE_READINGS + " ("
+            + "district INTEGER NOT NULL, "
+            + "metric INTEGER NOT NULL, "
+            + "timestamp INTEGER NOT NULL, "
+            + "value REAL NOT NULL, "
+            + "PRIMARY KEY (district, metric, timestamp)) WITHOUT ROWID";
+    // A replayed reading (same district, metric and timestamp) is ignored, so rollups never count it twice
+    private static final String SQL_INSERT_READING = "INSERT OR IGNORE INTO " + TABLE_READINGS
+            + " (district, metric, timestamp, value) VALUES (?, ?, ?, ?)";
+
+    private static final String TABLE_ROLLUPS = "rollups";
+    private static final String SQL_CREATE_ROLLUPS = "CREATE TABLE " + TABLE_ROLLUPS + " ("
+            + "tier INTEGER NOT NULL, "
+            + "district INTEGER NOT NULL, "
+            + "metric INTEGER NOT NULL, "
+            + "bucket_start INTEGER NOT NULL, "
+            + "min_value REAL NOT NULL, "
+            + "max_value REAL NOT NULL, "
+            + "sum_value REAL NOT NULL, "
+            + "count INTEGER NOT NULL, "
+            + "PRIMARY KEY (tier, district, metric, bucket_start)) WITHOUT ROWID";
+    // No UPSERT before SQLite 3.24 (API 30): update the bucket, insert it if it does not exist yet
+    private static final String SQL_MERGE_ROLLUP = "UPDATE " + TABLE_ROLLUPS + " SET "
+            + "min_value = MIN(min_value, ?), max_value = MAX(max_value, ?), sum_value = sum_value + ?, count = count + ? "
+            + "WHERE tier = ? AND district = ? AND metric = ? AND bucket_start = ?";
+    private static final String SQL_INSERT_ROLLUP = "INSERT INTO " + TABLE_ROLLUPS
+            + " (tier, district, metric, bucket_start, min_value, max_value, sum_value, count) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String SQL_ROLLUP_RANGE = "SELECT bucket_start, min_value, max_value, sum_value / count FROM "
+            + TABLE_ROLLUPS + " WHERE tier = ? AND district = ? AND metric = ? AND bucket_start >= ? AND bucket_start <= ?"
+            + " ORDER BY bucket_start";
+
+    private static final String TABLE_SKETCHES = "sketches";
+    private static final String SQL_CREATE_SKETCHES = "CREATE TABLE " + TABLE_SKETCHES + " ("
+            + "district INTEGER NOT NULL, "
+            + "metric INTEGER NOT NULL, "
+            + "sketch BLOB NOT NULL, "
+            + "PRIMARY KEY (district, metric)) WITHOUT ROWID";
+    private static final String SQL_REPLACE_SKETCH = "INSERT OR REPLACE INTO " + TABLE_SKETCHES
+            + " (district, metric, sketch) VALUES (?, ?, ?)";
+    // Bucket start expressions matching HistoryRollups.bucketStart(), used to build the tiers from existing readings
+    private static final String[] SQL_BUCKET_START = {
+            "(timestamp / 3600000) * 3600000",
+            "(timestamp / 86400000) * 86400000",
+            "CAST(strftime('%s', timestamp / 1000, 'unixepoch', 'start of month') AS INTEGER) * 1000"
+    };
+    // SQLite returns the bare columns of the row holding MAX(timestamp), i.e. the latest value per pair
+    private static final String SQL_LATEST_READINGS = "SELECT district, metric, value, MAX(timestamp) FROM "
+            + TABLE_READINGS + " GROUP BY district, metric";
+    private static final String SQL_RANGE = "SELECT timestamp, value FROM " + TABLE_READINGS
+            + " WHERE district = ? AND metric = ? AND timestamp >= ? AND timestamp <= ? ORDER BY timestamp";
+    // Keyset page on the primary key: continues after the last timestamp of the previous page
+    private static final String SQL_RANGE_PAGE = "SELECT timestamp, value FROM " + TABLE_READINGS
+            + " WHERE district = ? AND metric = ? AND timestamp > ? AND timestamp <= ? ORDER BY timestamp LIMIT ?";
+
+    /**
+     * Background thread for database work started from the UI.
+     */
+    public static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ReadingDatabase");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    private static ReadingDatabase instance;
+
+    /**
+     * The buckets of one rollup tier of a (district, metric) pair within a time range, oldest first.
+     */
+    public static final class RollupRange {
+        public final long[] bucketStarts;
+        public final double[] min;
+        public final double[] max;
+        public final double[] avg;
+        public final int count;
+
+        RollupRange(long[] bucketStarts, double[] min, double[] max, double[] avg, int count) {
+            this.bucketStarts = bucketStarts;
+            this.min = min;
+            this.max = max;
+            this.avg = avg;
+            this.count = count;
+        }
+    }
+
+    /**
+     * The samples of one (district, metric) pair within a time range, oldest first.
+     */
+    public static final class Range {
+        public final long[] timestamps;
+        public final double[] values;
+        public final int count;
+
+        Range(long[] timestamps, double[] values, int count) {
+            this.timestamps = timestamps;
+            this.values = values;
+            this.count = count;
+        }
+    }
+
+    public static synchronized ReadingDatabase getInstance(Context context) {
+        if (instance == null) {
+            instance = new ReadingDatabase(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private final HistoryRollups.BatchAccumulator rollupAccumulator = new HistoryRollups.BatchAccumulator();
+    // Loaded on first use; the keys of the sketches a batch touched are collected in touchedSketches
+    private volatile QuantileSketches sketches;
+    private final Set<Integer> touchedSketches = new HashSet<>();
+
+    private ReadingDatabase(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        Log.i(TAG, "onCreate: Creating tables '" + TABLE_READINGS + "', '" + TABLE_ROLLUPS + "' and '" + TABLE_SKETCHES + "'.");
+        db.execSQL(SQL_CREATE_READINGS);
+        db.execSQL(SQL_CREATE_ROLLUPS);
+        db.execSQL(SQL_CREATE_SKETCHES);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            Log.i(TAG, "onUpgrade: Building rollup tiers from existing readings.");
+            db.execSQL(SQL_CREATE_ROLLUPS);
+            for (int tier = 0; tier < HistoryRollups.TIER_COUNT; tier++) {
+                String bucketStart = SQL_BUCKET_START[tier];
+                db.execSQL("INSERT INTO " + TABLE_ROLLUPS + " SELECT " + tier + ", district, metric, " + bucketStart
+                        + ", MIN(value), MAX(value), SUM(value), COUNT(*) FROM " + TABLE_READINGS
+                        + " GROUP BY district, metric, " + bucketStart);
+            }
+        }
+        if (oldVersion < 3) {
+            Log.i(TAG, "onUpgrade: Building quantile sketches from existing readings.");
+            db.execSQL(SQL_CREATE_SKETCHES);
+            buildSketches(db);
+        }
+    }
+
+    // Streams all readings in key order, one (district, metric) pair after the other, into their sketches
+    private static void buildSketches(SQLiteDatabase db) {
+        try (Cursor cursor = db.rawQuery("SELECT district, metric, value FROM " + TABLE_READINGS
+                + " ORDER BY district, metric", null);
+             SQLiteStatement replace = db.compileStatement(SQL_REPLACE_SKETCH)) {
+            QuantileSketch sketch = null;
+            int row = -1, metric = -1;
+            while (cursor.moveToNext()) {
+                if (sketch == null || cursor.getInt(0) != row || cursor.getInt(1) != metric) {
+                    if (sketch != null) writeSketch(replace, row, metric, sketch);
+                    row = cursor.getInt(0);
+                    metric = cursor.getInt(1);
+                    sketch = new QuantileSketch();
+                }
+                sketch.add(cursor.getDouble(2));
+            }
+            if (sketch != null) writeSketch(replace, row, metric, sketch);
+        }
+    }
+
+    private static void writeSketch(SQLiteStatement replace, int row, int metric, QuantileSketch sketch) {
+        replace.bindLong(1, row);
+        replace.bindLong(2, metric);
+        replace.bindBlob(3, sketch.toBytes());
+        replace.executeInsert();
+    }
+
+    /**
+     * Returns the quantile sketches of all (district, metric) pairs, reading them from the
+     * database on the first call. Later calls are cheap and may be made from any thread.
+     */
+    public QuantileSketches getSketches() {
+        QuantileSketches loaded = sketches;
+        if (loaded != null) return loaded;
+        synchronized (this) {
+            if (sketches != null) return sketches;
+            loaded = new QuantileSketches();
+            int count = 0;
+            try (Cursor cursor = getReadableDatabase().rawQuery("SELECT district, metric, sketch FROM " + TABLE_SKETCHES, null)) {
+                while (cursor.moveToNext()) {
+                    try {
+                        loaded.put(cursor.getInt(0), cursor.getInt(1), QuantileSketch.fromBytes(cursor.getBlob(2)));
+                        count++;
+                    } catch (IllegalArgumentException e) {
+                        Log.w(TAG, "getSketches: Skipping unreadable sketch of district " + cursor.getInt(0) + ", metric " + cursor.getInt(1), e);
+                    }
+                }
+            }
+            Log.i(TAG, "getSketches: Loaded " + count + " quantile sketches.");
+            sketches = loaded;
+            return loaded;
+        }
+    }
+
+    /**
+     * Returns the sketches if {@link #getSketches()} has loaded them already, otherwise null.
+     * Never touches the disk, so it is safe on the main thread.
+     */
+    public QuantileSketches getSketchesIfLoaded() {
+        return sketches;
+    }
+
+    /**
+     * Inserts {@code count} readings and merges them into the rollup tiers and quantile sketches, in
+     * one transaction with compiled statements. A reading with the same (district, metric, timestamp)
+     * as an existing one is ignored.
+     */
+    public synchronized void insertBatch(int[] rows, int[] metrics, long[] timestamps, double[] values, int count) {
+        if (count == 0) return;
+        QuantileSketches sketches = getSketches();
+        SQLiteDatabase db = getWritableDatabase();
+        boolean committed = false;
+        db.beginTransactionNonExclusive();
+        try (SQLiteStatement insert = db.compileStatement(SQL_INSERT_READING);
+             SQLiteStatement mergeRollup = db.compileStatement(SQL_MERGE_ROLLUP);
+             SQLiteStatement insertRollup = db.compileStatement(SQL_INSERT_ROLLUP);
+             SQLiteStatement replaceSketch = db.compileStatement(SQL_REPLACE_SKETCH)) {
+            for (int i = 0; i < count; i++) {
+                insert.bindLong(1, rows[i]);
+                insert.bindLong(2, metrics[i]);
+                insert.bindLong(3, timestamps[i]);
+                insert.bindDouble(4, values[i]);
+                if (insert.executeUpdateDelete() > 0) {
+                    rollupAccumulator.add(rows[i], metrics[i], timestamps[i], values[i]);
+                    sketches.add(rows[i], metrics[i], values[i]);
+                    touchedSketches.add(QuantileSketches.key(rows[i], metrics[i]));
+                }
+            }
+            // Each touched sketch is written once per batch
+            for (int key : touchedSketches) {
+                replaceSketch.bindLong(1, key / ReadingStore.METRIC_COUNT);
+                replaceSketch.bindLong(2, key % ReadingStore.METRIC_COUNT);
+                replaceSketch.bindBlob(3, sketches.serialize(key));
+                replaceSketch.executeInsert();
+            }
+            for (HistoryRollups.Aggregate a : rollupAccumulator.aggregates()) {
+                mergeRollup.bindDouble(1, a.min);
+                mergeRollup.bindDouble(2, a.max);
+                mergeRollup.bindDouble(3, a.sum);
+                mergeRollup.bindLong(4, a.count);
+                mergeRollup.bindLong(5, a.tier);
+                mergeRollup.bindLong(6, a.row);
+                mergeRollup.bindLong(7, a.metric);
+                mergeRollup.bindLong(8, a.bucketStart);
+                if (mergeRollup.executeUpdateDelete() == 0) {
+                    insertRollup.bindLong(1, a.tier);
+                    insertRollup.bindLong(2, a.row);
+                    insertRollup.bindLong(3, a.metric);
+                    insertRollup.bindLong(4, a.bucketStart);
+                    insertRollup.bindDouble(5, a.min);
+                    insertRollup.bindDouble(6, a.max);
+                    insertRollup.bindDouble(7, a.sum);
+                    insertRollup.bindLong(8, a.count);
+                    insertRollup.executeInsert();
+                }
+            }
+            db.setTransactionSuccessful();
+            committed = true;
+        } finally {
+            rollupAccumulator.clear();
+            touchedSketches.clear();
+            db.endTransaction();
+            // The in-memory sketches already hold the rolled-back readings; reload them from disk
+            if (!committed) this.sketches = null;
+        }
+    }
+
+    /**
+     * Writes every non-missing reading of {@code store} with the given timestamp, e.g. to persist
+     * a snapshot of the current readings.
+     */
+    public void insertSnapshot(ReadingStore store, long timestampMillis) {
+        int rowCount = store.getRowCount();
+        int capacity = rowCount * ReadingStore.METRIC_COUNT;
+        int[] rows = new int[capacity];
+        int[] metrics = new int[capacity];
+        long[] timestamps = new long[capacity];
+        double[] values = new double[capacity];
+        double[] row = new double[ReadingStore.METRIC_COUNT];
+        int count = 0;
+        for (int r = 0; r < rowCount; r++) {
+            store.getRow(r, row);
+            for (int m = 0; m < ReadingStore.METRIC_COUNT; m++) {
+                if (Double.isNaN(row[m])) continue;
+                rows[count] = r;
+                metrics[count] = m;
+                timestamps[count] = timestampMillis;
+                values[count] = row[m];
+                count++;
+            }
+        }
+        insertBatch(rows, metrics, timestamps, values, count);
+    }
+
+    /**
+     * Writes the latest persisted reading of every (district, metric) pair into the store.
+     * Pairs without history keep their current value.
+     * @return The number of readings written.
+     */
+    public int loadLatest(ReadingStore store) {
+        int rowCount = store.getRowCount();
+        int[] rows = new int[rowCount * ReadingStore.METRIC_COUNT];
+        int[] metrics = new int[rows.length];
+        double[] values = new double[rows.length];
+        int count = 0;
+        try (Cursor cursor = getReadableDatabase().rawQuery(SQL_LATEST_READINGS, null)) {
+            while (cursor.moveToNext()) {
+                int row = cursor.getInt(0);
+                int metric = cursor.getInt(1);
+                // Rows of a catalog that has since shrunk are ignored
+                if (row < 0 || row >= rowCount || metric < 0 || metric >= ReadingStore.METRIC_COUNT) continue;
+                rows[count] = row;
+                metrics[count] = metric;
+                values[count] = cursor.getDouble(2);
+                count++;
+            }
+        }
+        store.setBatch(rows, metrics, values, count);
+        return count;
+    }
+
+    /**
+     * Returns the samples of a (district, metric) pair with {@code fromMillis <= timestamp <= toMillis}.
+     */
+    public Range queryRange(int row, int metric, long fromMillis, long toMillis) {
+        String[] args = { String.valueOf(row), String.valueOf(metric), String.valueOf(fromMillis), String.valueOf(toMillis) };
+        try (Cursor cursor = getReadableDatabase().rawQuery(SQL_RANGE, args)) {
+            int count = cursor.getCount();
+            long[] timestamps = new long[count];
+            double[] values = new double[count];
+            int i = 0;
+            while (i < count && cursor.moveToNext()) {
+                timestamps[i] = cursor.getLong(0);
+                values[i] = cursor.getDouble(1);
+                i++;
+            }
+            return new Range(timestamps, values, i);
+        }
+    }
+
+    /**
+     * Copies the next readings of a (district, metric) pair with {@code afterMillis < timestamp <= toMillis}
+     * into the arrays, oldest first, at most as many as they hold. Passing the last copied timestamp
+     * as {@code afterMillis} continues with the next page, so a range of any length is read with
+     * fixed-size arrays.
+     * @return The number of readings copied; fewer than the arrays hold once the range is exhausted.
+     */
+    public int readPage(int row, int metric, long afterMillis, long toMillis, long[] timestamps, double[] values) {
+        int limit = Math.min(timestamps.length, values.length);
+        String[] args = { String.valueOf(row), String.valueOf(metric), String.valueOf(afterMillis),
+                String.valueOf(toMillis), String.valueOf(limit) };
+        try (Cursor cursor = getReadableDatabase().rawQuery(SQL_RANGE_PAGE, args)) {
+            int i = 0;
+            while (i < limit && cursor.moveToNext()) {
+                timestamps[i] = cursor.getLong(0);
+                values[i] = cursor.getDouble(1);
+                i++;
+            }
+            return i;
+        }
+    }
+
+    /**
+     * Returns whether a (district, metric) pair has a reading with {@code fromMillis <= timestamp <= toMillis}.
+     */
+    public boolean hasReadings(int row, int metric, long fromMillis, long toMillis) {
+        String[] args = { String.valueOf(row), String.valueOf(metric), String.valueOf(fromMillis), String.valueOf(toMillis) };
+        try (Cursor cursor = getReadableDatabase().rawQuery(SQL_RANGE + " LIMIT 1", args)) {
+            return cursor.moveToNext();
+        }
+    }
+
+    /**
+     * Returns the buckets of a rollup tier of a (district, metric) pair that start within the range.
+     * @param tier One of the {@link HistoryRollups} tiers (not {@link HistoryRollups#TIER_RAW}).
+     */
+    public RollupRange queryRollups(int tier, int row, int metric, long fromMillis, long toMillis) {
+        String[] args = { String.valueOf(tier), String.valueOf(row), String.valueOf(metric),
+                String.valueOf(HistoryRollups.bucketStart(tier, fromMillis)), String.valueOf(toMillis) };
+        try (Cursor cursor = getReadableDatabase().rawQuery(SQL_ROLLUP_RANGE, args)) {
+            int count = cursor.getCount();
+            long[] bucketStarts = new long[count];
+            double[] min = new double[count];
+            double[] max = new double[count];
+            double[] avg = new double[count];
+            int i = 0;
+            while (i < count && cursor.moveToNext()) {
+                bucketStarts[i] = cursor.getLong(0);
+                min[i] = cursor.getDouble(1);
+                max[i] = cursor.getDouble(2);
+                avg[i] = cursor.getDouble(3);
+                i++;
+            }
+            return new RollupRange(bucketStarts, min, max, avg, i);
+        }
+    }
+
+    /**
+     * Returns whether no reading has been persisted yet.
+     */
+    public boolean isEmpty() {
+        try (Cursor cursor = getReadableDatabase().rawQuery("SELECT 1 FROM " + TABLE_READINGS + " LIMIT 1", null)) {
+            return !cursor.moveToNext();
+        }
+    }
+}
@@ -0,0 +1,408 @@
+package com.stadtiq;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Streaming parser for sensor feed payloads: a JSON array of reading objects
+ * <pre>
+ *   [{"city": "Braunschweig", "district": "Weststadt", "metric": "CO₂", "value": 412.5, "timestamp": 1718000000000}, ...]
+ * </pre>
+ * The payload is tokenized straight from a fixed-size char buffer and every complete reading
+ * is handed to a {@link Sink}; no tree of the document is ever built, so memory use is constant
+ * no matter how many readings a payload holds. Names are interned in a small symbol table,
+ * so the handful of distinct city, district and metric names of a feed are allocated once.
+ * <p>
+ * {@code district} may be missing or null (the reading then belongs to the whole city) and
+ * {@code timestamp} is epoch milliseconds; unknown fields are skipped. Readings without a
+ * city, metric or numeric value are dropped. Instances are not thread-safe but may be reused.
+ */
+public final class ReadingFeedParser {
+
+    /**
+     * Receives the parsed readings in payload order.
+     */
+    public interface Sink {
+        /**
+         * @param district The district name, or null for a city-wide reading.
+         * @param timestampMillis Epoch milliseconds, or 0 if the reading has none.
+         */
+        void onReading(String city, String district, String metric, double value, long timestampMillis);
+    }
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int SYMBOL_TABLE_SIZE = 512; // Power of two
+    private static final int MAX_SYMBOL_LENGTH = 64;
+    // Mantissas up to this value convert to double exactly
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private static final int FIELD_OTHER = 0;
+    private static final int FIELD_CITY = 1;
+    private static final int FIELD_DISTRICT = 2;
+    private static final int FIELD_METRIC = 3;
+    private static final int FIELD_VALUE = 4;
+    private static final int FIELD_TIMESTAMP = 5;
+
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    private long bufferOffset; // Payload offset of buffer[0], for error messages
+    private Reader in;
+
+    // The current string or number token
+    private char[] token = new char[64];
+    private int tokenLength;
+
+    private final String[] symbols = new String[SYMBOL_TABLE_SIZE];
+    private int symbolCount;
+
+    private int skippedCount;
+
+    /**
+     * Parses one payload and passes every complete reading to {@code sink}.
+     * @return The number of readings passed to the sink.
+     * @throws IOException If reading fails or the payload is malformed; readings before the error have been delivered.
+     */
+    public int parse(Reader reader, Sink sink) throws IOException {
+        in = reader;
+        pos = 0;
+        limit = 0;
+        bufferOffset = 0;
+        skippedCount = 0;
+        try {
+            expect('[');
+            if (peekNonWhitespace() == ']') {
+                pos++;
+                return 0;
+            }
+            int count = 0;
+            while (true) {
+                if (parseReading(sink)) count++;
+                else skippedCount++;
+                int c = nextNonWhitespace();
+                if (c == ']') return count;
+                if (c != ',') throw syntaxError("Expected ',' or ']'");
+            }
+        } finally {
+            in = null;
+        }
+    }
+
+    /**
+     * Returns the number of objects of the last payload that were not readings (missing city, metric or value).
+     */
+    public int getSkippedCount() {
+        return skippedCount;
+    }
+
+    private boolean parseReading(Sink sink) throws IOException {
+        expect('{');
+        String city = null, district = null, metric = null;
+        double value = Double.NaN;
+        long timestamp = 0;
+        if (peekNonWhitespace() == '}') {
+            pos++;
+            return false;
+        }
+        while (true) {
+            expect('"');
+            readStringContent();
+            int field = identifyField();
+            expect(':');
+            switch (field) {
+                case FIELD_CITY: city = readSymbolOrNull(); break;
+                case FIELD_DISTRICT: district = readSymbolOrNull(); break;
+                case FIELD_METRIC: metric = readSymbolOrNull(); break;
+                case FIELD_VALUE: value = readNumberOrNull(); break;
+                case FIELD_TIMESTAMP:
+                    double t = readNumberOrNull();
+                    timestamp = Double.isNaN(t) ? 0 : (long) t;
+                    break;
+                default: skipValue(); break;
+            }
+            int c = nextNonWhitespace();
+            if (c == '}') break;
+            if (c != ',') throw syntaxError("Expected ',' or '}'");
+        }
+        if (city == null || metric == null || Double.isNaN(value)) return false;
+        sink.onReading(city, district, metric, value, timestamp);
+        return true;
+    }
+
+    private int identifyField() {
+        if (tokenEquals("city")) return FIELD_CITY;
+        if (tokenEquals("district")) return FIELD_DISTRICT;
+        if (tokenEquals("metric")) return FIELD_METRIC;
+        if (tokenEquals("value")) return FIELD_VALUE;
+        if (tokenEquals("timestamp")) return FIELD_TIMESTAMP;
+        return FIELD_OTHER;
+    }
+
+    private boolean tokenEquals(String s) {
+        if (s.length() != tokenLength) return false;
+        for (int i = 0; i < tokenLength; i++) {
+            if (token[i] != s.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    // --- Values ---
+
+    private String readSymbolOrNull() throws IOException {
+        int c = peekNonWhitespace();
+        if (c == 'n') {
+            expectLiteral("null");
+            return null;
+        }
+        if (c != '"') throw syntaxError("Expected a string");
+        pos++;
+        readStringContent();
+        return intern();
+    }
+
+    /**
+     * Reads a number (or a numeric string) as double; null and other strings yield NaN.
+     */
+    private double readNumberOrNull() throws IOException {
+        int c = peekNonWhitespace();
+        if (c == 'n') {
+            expectLiteral("null");
+            return Double.NaN;
+        }
+        if (c == '"') {
+            pos++;
+            readStringContent();
+        } else if ((c >= '0' && c <= '9') || c == '-') {
+            readNumberToken();
+        } else {
+            skipValue(); // true, false, object or array
+            return Double.NaN;
+        }
+        return parseNumberToken();
+    }
+
+    private void skipValue() throws IOException {
+        int c = peekNonWhitespace();
+        switch (c) {
+            case '"':
+                pos++;
+                readStringContent();
+                return;
+            case '{':
+            case '[':
+                skipContainer();
+                return;
+            case 't': expectLiteral("true"); return;
+            case 'f': expectLiteral("false"); return;
+            case 'n': expectLiteral("null"); return;
+            default:
+                readNumberToken();
+                if (tokenLength == 0) throw syntaxError("Unexpected character");
+        }
+    }
+
+    // Skips a nested object or array, including strings that contain brackets
+    private void skipContainer() throws IOException {
+        int depth = 0;
+        do {
+            int c = read();
+            if (c < 0) throw syntaxError("Unterminated object or array");
+            if (c == '{' || c == '[') depth++;
+            else if (c == '}' || c == ']') depth--;
+            else if (c == '"') readStringContent();
+        } while (depth > 0);
+    }
+
+    // --- Tokens ---
+
+    /**
+     * Reads string characters after the opening quote into {@link #token}, resolving escapes.
+     */
+    private void readStringContent() throws IOException {
+        tokenLength = 0;
+        while (true) {
+            if (pos == limit && !fill()) throw syntaxError("Unterminated string");
+            // Fast path: copy unescaped runs straight from the buffer
+            int start = pos;
+            while (pos < limit) {
+                char c = buffer[pos];
+                if (c == '"' || c == '\\') break;
+                pos++;
+            }
+            appendToToken(buffer, start, pos - start);
+            if (pos == limit) continue;
+            char c = buffer[pos++];
+            if (c == '"') return;
+            appendToToken(readEscape());
+        }
+    }
+
+    private char readEscape() throws IOException {
+        int c = read();
+        switch (c) {
+            case '"': return '"';
+            case '\\': return '\\';
+            case '/': return '/';
+            case 'b': return '\b';
+            case 'f': return '\f';
+            case 'n': return '\n';
+            case 'r': return '\r';
+            case 't': return '\t';
+            case 'u':
+                int code = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit < 0) throw syntaxError("Invalid \\u escape");
+                    code = (code << 4) | digit;
+                }
+                return (char) code;
+            default:
+                throw syntaxError("Invalid escape");
+        }
+    }
+
+    private void readNumberToken() throws IOException {
+        tokenLength = 0;
+        while (true) {
+            if (pos == limit && !fill()) return;
+            char c = buffer[pos];
+            if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+                appendToToken(c);
+                pos++;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Converts {@link #token} to a double. Plain decimals with up to 15 significant digits are
+     * converted without allocating; anything else goes through {@link Double#parseDouble(String)}.
+     * Returns NaN if the token is not a number.
+     */
+    private double parseNumberToken() {
+        int i = 0;
+        boolean negative = false;
+        if (tokenLength > 0 && token[0] == '-') {
+            negative = true;
+            i = 1;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; i < tokenLength; i++) {
+            char c = token[i];
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (fractionDigits >= 0) fractionDigits++;
+            } else if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                break;
+            }
+        }
+        if (i == tokenLength && digits > 0 && digits <= 15 && mantissa < MAX_EXACT_MANTISSA) {
+            double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+            return negative ? -value : value;
+        }
+        try {
+            return Double.parseDouble(new String(token, 0, tokenLength));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private void appendToToken(char c) {
+        if (tokenLength == token.length) growToken(tokenLength + 1);
+        token[tokenLength++] = c;
+    }
+
+    private void appendToToken(char[] src, int offset, int length) {
+        if (length == 0) return;
+        if (tokenLength + length > token.length) growToken(tokenLength + length);
+        System.arraycopy(src, offset, token, tokenLength, length);
+        tokenLength += length;
+    }
+
+    private void growToken(int minCapacity) {
+        char[] grown = new char[Math.max(minCapacity, token.length * 2)];
+        System.arraycopy(token, 0, grown, 0, tokenLength);
+        token = grown;
+    }
+
+    /**
+     * Returns {@link #token} as a String, reusing the instance of an earlier equal token.
+     */
+    private String intern() {
+        if (tokenLength > MAX_SYMBOL_LENGTH) return new String(token, 0, tokenLength);
+        int hash = 0;
+        for (int i = 0; i < tokenLength; i++) hash = 31 * hash + token[i];
+        int mask = SYMBOL_TABLE_SIZE - 1;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (true) {
+            String symbol = symbols[slot];
+            if (symbol == null) {
+                String created = new String(token, 0, tokenLength);
+                // Keep the table at most half full; beyond that, names are simply not cached
+                if (symbolCount < SYMBOL_TABLE_SIZE / 2) {
+                    symbols[slot] = created;
+                    symbolCount++;
+                }
+                return created;
+            }
+            if (symbol.hashCode() == hash && tokenEquals(symbol)) return symbol;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    // --- Buffer ---
+
+    private boolean fill() throws IOException {
+        bufferOffset += limit;
+        pos = 0;
+        limit = 0;
+        int n = in.read(buffer, 0, buffer.length);
+        if (n <= 0) return false;
+        limit = n;
+        return true;
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill()) return -1;
+        return buffer[pos++];
+    }
+
+    private int peekNonWhitespace() throws IOException {
+        while (true) {
+            if (pos == limit && !fill()) return -1;
+            char c = buffer[pos];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return c;
+            pos++;
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        int c = peekNonWhitespace();
+        if (c >= 0) pos++;
+        return c;
+    }
+
+    private void expect(char expected) throws IOException {
+        if (nextNonWhitespace() != expected) throw syntaxError("Expected '" + expected + "'");
+    }
+
+    private void expectLiteral(String literal) throws IOException {
+        for (int i = 0; i < literal.length(); i++) {
+            if (read() != literal.charAt(i)) throw syntaxError("Expected " + literal);
+        }
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException("Malformed sensor feed at offset " + (bufferOffset + pos) + ": " + message);
+    }
+}
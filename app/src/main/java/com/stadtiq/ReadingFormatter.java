@@ -0,0 +1,131 @@
+package com.stadtiq;
+
+import java.text.DecimalFormatSymbols;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Formats readings in a {@link UnitSystem} with the digits, decimal separator and minus sign of
+ * a locale, e.g. "1010,0 hPa" in German. Numbers are written as characters into a caller's
+ * {@code char[]}, so a list row can reuse one buffer for every bind instead of building a String
+ * each time; the String methods are for texts that are assembled once per update anyway.
+ * <p>
+ * Formatters are immutable and cached per locale ({@link #forLocale(Locale)}).
+ */
+public final class ReadingFormatter {
+
+    /** Buffer size that fits every formatted reading with its unit. */
+    public static final int MAX_LENGTH = 48;
+
+    private static final char[] MISSING = { 'N', '/', 'A' };
+    private static final long[] POWERS_OF_TEN = { 1, 10, 100, 1_000, 10_000, 100_000, 1_000_000 };
+    // Larger magnitudes (after scaling by the decimals) do not fit the digit loop's long
+    private static final double MAX_SCALED = 1e17;
+
+    private static final Map<Locale, ReadingFormatter> CACHE = new HashMap<>();
+
+    /**
+     * Returns the formatter for a locale, creating it on first use.
+     */
+    public static synchronized ReadingFormatter forLocale(Locale locale) {
+        ReadingFormatter formatter = CACHE.get(locale);
+        if (formatter == null) {
+            formatter = new ReadingFormatter(DecimalFormatSymbols.getInstance(locale));
+            CACHE.put(locale, formatter);
+        }
+        return formatter;
+    }
+
+    private final char zeroDigit;
+    private final char decimalSeparator;
+    private final char minusSign;
+
+    ReadingFormatter(DecimalFormatSymbols symbols) {
+        this.zeroDigit = symbols.getZeroDigit();
+        this.decimalSeparator = symbols.getDecimalSeparator();
+        this.minusSign = symbols.getMinusSign();
+    }
+
+    /**
+     * Writes a reading, converted to the unit system, with its unit (e.g. "9.5 °C") into
+     * {@code dst}, or "N/A" if it is missing.
+     * @param dst At least {@link #MAX_LENGTH} characters.
+     * @return The number of characters written.
+     */
+    public int format(UnitSystem units, int metric, double value, char[] dst) {
+        int length = formatNumber(units, metric, value, dst);
+        if (Double.isNaN(value)) return length;
+        String unit = units.unit(metric);
+        dst[length++] = ' ';
+        unit.getChars(0, unit.length(), dst, length);
+        return length + unit.length();
+    }
+
+    /**
+     * Writes a reading, converted to the unit system, without its unit into {@code dst}.
+     * @return The number of characters written.
+     */
+    public int formatNumber(UnitSystem units, int metric, double value, char[] dst) {
+        if (Double.isNaN(value)) {
+            System.arraycopy(MISSING, 0, dst, 0, MISSING.length);
+            return MISSING.length;
+        }
+        return writeNumber(units.convert(metric, value), units.minDecimals(metric), units.maxDecimals(metric), dst);
+    }
+
+    /**
+     * Formats a reading with its unit as a String, e.g. an aggregate of several readings.
+     */
+    public String format(UnitSystem units, int metric, double value) {
+        char[] buffer = new char[MAX_LENGTH];
+        return new String(buffer, 0, format(units, metric, value, buffer));
+    }
+
+    /**
+     * Formats a reading without its unit as a String.
+     */
+    public String formatNumber(UnitSystem units, int metric, double value) {
+        char[] buffer = new char[MAX_LENGTH];
+        return new String(buffer, 0, formatNumber(units, metric, value, buffer));
+    }
+
+    // Rounds half up to maxDecimals and drops trailing zeros down to minDecimals
+    private int writeNumber(double value, int minDecimals, int maxDecimals, char[] dst) {
+        double scaled = Math.abs(value) * POWERS_OF_TEN[maxDecimals];
+        if (Double.isInfinite(value) || scaled >= MAX_SCALED) {
+            // Not a plausible reading; spelled out without locale digits
+            String text = Double.toString(value);
+            text.getChars(0, text.length(), dst, 0);
+            return text.length();
+        }
+        long digits = Math.round(scaled);
+        int decimals = maxDecimals;
+        while (decimals > minDecimals && digits % 10 == 0) {
+            digits /= 10;
+            decimals--;
+        }
+        int length = 0;
+        // No sign for values that round to zero
+        if (value < 0 && digits != 0) dst[length++] = minusSign;
+        // Integer digits, then the decimals, each written backwards from the end of its part
+        long integer = digits / POWERS_OF_TEN[decimals];
+        int integerDigits = 1;
+        for (long rest = integer / 10; rest > 0; rest /= 10) integerDigits++;
+        for (int i = length + integerDigits - 1; i >= length; i--) {
+            dst[i] = (char) (zeroDigit + integer % 10);
+            integer /= 10;
+        }
+        length += integerDigits;
+        if (decimals > 0) {
+            dst[length++] = decimalSeparator;
+            long fraction = digits % POWERS_OF_TEN[decimals];
+            for (int i = length + decimals - 1; i >= length; i--) {
+                dst[i] = (char) (zeroDigit + fraction % 10);
+                fraction /= 10;
+            }
+            length += decimals;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,198 @@
+package com.stadtiq;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ingests sensor feed payloads into the {@link ReadingStore}. Readings streamed by a
+ * {@link ReadingFeedParser} are resolved to catalog rows and metric IDs and collected in
+ * primitive arrays, which are written to the store in batches of {@link #BATCH_SIZE} under a
+ * single lock each. If a {@link ReadingDatabase} is given, every batch is also appended to the
+ * persistent history in one transaction. Per reading, the newest timestamp seen is remembered,
+ * so an out-of-order or replayed reading never overwrites a newer one in the store. Readings
+ * without a timestamp are stamped with the time their payload was ingested.
+ * <p>
+ * Only stored metrics are ingested; readings of derived metrics (see {@link DerivedMetrics}) are
+ * rejected. With a database, the derived metrics of every row whose inputs were in a batch are
+ * appended to the history as well, so their history continues.
+ * Not thread-safe; use one instance per feed.
+ */
+public final class ReadingIngestor implements ReadingFeedParser.Sink {
+
+    static final int BATCH_SIZE = 1024;
+
+    private final CityCatalog catalog;
+    private final ReadingStore store;
+    private final ReadingDatabase database;
+    private final ReadingFeedParser parser = new ReadingFeedParser();
+
+    // Pending batch
+    private final int[] batchRows = new int[BATCH_SIZE];
+    private final int[] batchMetrics = new int[BATCH_SIZE];
+    private final double[] batchValues = new double[BATCH_SIZE];
+    private final long[] batchTimestamps = new long[BATCH_SIZE];
+    private int batchSize;
+
+    // Derived readings of the rows touched by the pending batch, and the newest input timestamp per row
+    private static final int[] DERIVED_METRICS = DerivedMetrics.metrics();
+    private final int[] derivedRows = new int[BATCH_SIZE * DERIVED_METRICS.length];
+    private final int[] derivedMetrics = new int[derivedRows.length];
+    private final double[] derivedValues = new double[derivedRows.length];
+    private final long[] derivedTimestamps = new long[derivedRows.length];
+    private final BitSet touchedRows = new BitSet();
+    private final long[] touchedRowTimestamps;
+
+    // Newest timestamp per store cell (row * METRIC_COUNT + metric)
+    private final long[] latestTimestamps;
+
+    // Resolved names; only catalog names are cached, so the maps stay bounded by the catalog size
+    private final Map<String, Integer> cityIds = new HashMap<>();
+    private final List<Map<String, Integer>> districtIdsPerCity;
+
+    // Timestamp given to readings without one: the start of the current payload
+    private long payloadMillis;
+
+    private long acceptedCount;
+    private long rejectedCount;
+    private long staleCount;
+
+    public ReadingIngestor(CityCatalog catalog, ReadingStore store) {
+        this(catalog, store, null);
+    }
+
+    /**
+     * @param database The history to append ingested readings to, or null to only update the store.
+     */
+    public ReadingIngestor(CityCatalog catalog, ReadingStore store, ReadingDatabase database) {
+        this.catalog = catalog;
+        this.store = store;
+        this.database = database;
+        this.latestTimestamps = new long[store.getRowCount() * ReadingStore.METRIC_COUNT];
+        Arrays.fill(latestTimestamps, Long.MIN_VALUE);
+        this.touchedRowTimestamps = new long[store.getRowCount()];
+        this.districtIdsPerCity = new ArrayList<>(catalog.getCityCount());
+        for (int c = 0; c < catalog.getCityCount(); c++) districtIdsPerCity.add(new HashMap<>());
+    }
+
+    /**
+     * Parses a complete payload and writes its readings into the store.
+     * Readings before a syntax error are still written.
+     * @return The number of readings written.
+     */
+    public long ingest(Reader payload) throws IOException {
+        long acceptedBefore = acceptedCount;
+        payloadMillis = System.currentTimeMillis();
+        try {
+            parser.parse(payload, this);
+            rejectedCount += parser.getSkippedCount();
+        } finally {
+            flush();
+        }
+        return acceptedCount - acceptedBefore;
+    }
+
+    @Override
+    public void onReading(String city, String district, String metric, double value, long timestampMillis) {
+        int row = resolveRow(city, district);
+        int metricId = ReadingStore.metricIndex(metric);
+        if (row == CityCatalog.NO_ID || metricId < 0 || ReadingStore.isDerived(metricId)) {
+            rejectedCount++;
+            return;
+        }
+        if (timestampMillis == 0) timestampMillis = payloadMillis;
+        int cell = row * ReadingStore.METRIC_COUNT + metricId;
+        if (timestampMillis < latestTimestamps[cell]) {
+            staleCount++;
+            return;
+        }
+        latestTimestamps[cell] = timestampMillis;
+
+        batchRows[batchSize] = row;
+        batchMetrics[batchSize] = metricId;
+        batchValues[batchSize] = value;
+        batchTimestamps[batchSize] = timestampMillis;
+        if (++batchSize == BATCH_SIZE) flush();
+        acceptedCount++;
+    }
+
+    /**
+     * Writes the pending batch into the store (and the history, if any).
+     */
+    public void flush() {
+        if (batchSize == 0) return;
+        store.setBatch(batchRows, batchMetrics, batchValues, batchSize);
+        if (database != null) {
+            database.insertBatch(batchRows, batchMetrics, batchTimestamps, batchValues, batchSize);
+            insertDerivedReadings();
+        }
+        batchSize = 0;
+    }
+
+    // Appends the derived metrics of the rows whose inputs were in the batch, stamped with the newest input
+    private void insertDerivedReadings() {
+        touchedRows.clear();
+        for (int i = 0; i < batchSize; i++) {
+            if (!DerivedMetrics.isInput(batchMetrics[i])) continue;
+            int row = batchRows[i];
+            if (!touchedRows.get(row) || batchTimestamps[i] > touchedRowTimestamps[row]) {
+                touchedRowTimestamps[row] = batchTimestamps[i];
+            }
+            touchedRows.set(row);
+        }
+        int count = 0;
+        for (int row = touchedRows.nextSetBit(0); row >= 0; row = touchedRows.nextSetBit(row + 1)) {
+            for (int metric : DERIVED_METRICS) {
+                double value = store.get(row, metric);
+                if (Double.isNaN(value)) continue;
+                derivedRows[count] = row;
+                derivedMetrics[count] = metric;
+                derivedValues[count] = value;
+                derivedTimestamps[count] = touchedRowTimestamps[row];
+                count++;
+            }
+        }
+        database.insertBatch(derivedRows, derivedMetrics, derivedTimestamps, derivedValues, count);
+    }
+
+    /** Total readings written into the store. */
+    public long getAcceptedCount() {
+        return acceptedCount;
+    }
+
+    /** Total readings dropped for an unknown city, district or metric, a derived metric, or missing fields. */
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /** Total readings dropped because a newer reading had already been ingested. */
+    public long getStaleCount() {
+        return staleCount;
+    }
+
+    // Returns the district row, the city's overview row for a null district, or NO_ID
+    private int resolveRow(String city, String district) {
+        Integer cityId = cityIds.get(city);
+        if (cityId == null) {
+            int found = catalog.findCity(city);
+            if (found == CityCatalog.NO_ID) return CityCatalog.NO_ID;
+            cityId = found;
+            cityIds.put(city, cityId);
+        }
+        if (district == null) return store.overviewRow(cityId);
+        Map<String, Integer> districtIds = districtIdsPerCity.get(cityId);
+        Integer districtId = districtIds.get(district);
+        if (districtId == null) {
+            int found = catalog.findDistrict(cityId, district);
+            if (found == CityCatalog.NO_ID) return CityCatalog.NO_ID;
+            districtId = found;
+            districtIds.put(district, districtId);
+        }
+        return districtId;
+    }
+}
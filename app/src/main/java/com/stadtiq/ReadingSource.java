@@ -0,0 +1,14 @@
+package com.stadtiq;
+
+/**
+ * Supplies current readings for the {@link ReadingStore}, e.g. a sensor backend or the
+ * {@link SimulatedReadingSource}. Polled by the {@link LiveReadingScheduler} on its background thread.
+ */
+public interface ReadingSource {
+
+    /**
+     * Fetches the latest readings and writes them into {@code store}.
+     * @return True if any reading changed, false if the store is unchanged.
+     */
+    boolean refresh(ReadingStore store) throws Exception;
+}
@@ -0,0 +1,247 @@
+package com.stadtiq;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Typed store for the current environmental readings of every district.
+ * Readings are kept in one dense, row-major district × metric {@code double[]} matrix,
+ * so looking up a district's values is plain array indexing instead of nested string maps.
+ * Rows are addressed by the district IDs of the {@link CityCatalog}; after all districts,
+ * one overview row per city follows (city-wide readings, e.g. from a feed).
+ * Missing readings are stored as NaN. The list, the graph and the exports all read from
+ * the shared instance.
+ * <p>
+ * Dew point and absolute humidity are not stored but derived from temperature, relative humidity
+ * and pressure by {@link DerivedMetrics} when read; writes to them are ignored. Their columns are
+ * filled in by every read method, so readers need not tell them apart.
+ */
+public final class ReadingStore {
+
+    // --- CONSTANT DATA KEYS (Match MainActivity for consistency) ---
+    public static final String KEY_CO2 = "CO₂";
+    public static final String KEY_PM25 = "PM2,5";
+    public static final String KEY_O2 = "O₂";
+    public static final String KEY_SO2 = "SO₂";
+    public static final String KEY_CH4 = "CH₄";
+    public static final String KEY_P = "p";
+    public static final String KEY_LP = "lp";
+    public static final String KEY_LX = "lx";
+    public static final String KEY_TD = "Td";
+    public static final String KEY_ABS_HUMIDITY = "ABS_HUMIDITY_KEY";
+    // Air temperature and relative humidity, the inputs of the derived humidity metrics
+    public static final String KEY_T = "T";
+    public static final String KEY_RH = "RH";
+    // --- END CONSTANT DATA KEYS ---
+
+    // Column order of the matrix. The index of a key in this array is its metric ID.
+    // IDs are persisted, so new metrics are only ever appended.
+    public static final String[] METRIC_KEYS = {
+            KEY_CO2, KEY_PM25, KEY_O2, KEY_SO2, KEY_CH4, KEY_P, KEY_LP, KEY_LX, KEY_TD, KEY_ABS_HUMIDITY,
+            KEY_T, KEY_RH
+    };
+    public static final int METRIC_COUNT = METRIC_KEYS.length;
+
+    // Unit the readings are stored in, indexed by metric ID; UnitSystem converts them for display
+    private static final String[] UNITS = {
+            "ppm", "µg/m³", "%", "ppb", "ppm", "hPa", "dB", "lx", "°C", "g/m³", "°C", "%"
+    };
+
+    private static ReadingStore instance;
+
+    private final int districtCount;
+    private final int cityCount;
+    private final double[] values;
+    // Version of the last write that changed a reading, per reading, per row, and overall
+    private final long[] cellVersions;
+    private final long[] rowVersions;
+    private long version;
+    private final DerivedMetrics derived;
+
+    /**
+     * Returns the process-wide store shared by all activities, sized for the given catalog.
+     */
+    public static synchronized ReadingStore getInstance(CityCatalog catalog) {
+        if (instance == null) {
+            instance = new ReadingStore(catalog.getTotalDistrictCount(), catalog.getCityCount());
+        }
+        return instance;
+    }
+
+    ReadingStore(int districtCount, int cityCount) {
+        this.districtCount = districtCount;
+        this.cityCount = cityCount;
+        this.values = new double[(districtCount + cityCount) * METRIC_COUNT];
+        Arrays.fill(values, Double.NaN);
+        this.cellVersions = new long[values.length];
+        this.rowVersions = new long[districtCount + cityCount];
+        this.derived = new DerivedMetrics(districtCount + cityCount, values, cellVersions);
+    }
+
+    public int getDistrictCount() {
+        return districtCount;
+    }
+
+    /**
+     * Returns the number of rows: all districts followed by one overview row per city.
+     */
+    public int getRowCount() {
+        return districtCount + cityCount;
+    }
+
+    /**
+     * Returns the row of a city's overview readings.
+     * @param cityId A catalog city ID.
+     * @return The row ID, or {@link CityCatalog#NO_ID} for an unknown city.
+     */
+    public int overviewRow(int cityId) {
+        if (cityId < 0 || cityId >= cityCount) return CityCatalog.NO_ID;
+        return districtCount + cityId;
+    }
+
+    /**
+     * Returns the metric ID (matrix column) of a data key, or -1 for unknown keys.
+     */
+    public static int metricIndex(String dataKey) {
+        if (dataKey == null) return -1;
+        switch (dataKey) {
+            case KEY_CO2: return 0;
+            case KEY_PM25: return 1;
+            case KEY_O2: return 2;
+            case KEY_SO2: return 3;
+            case KEY_CH4: return 4;
+            case KEY_P: return 5;
+            case KEY_LP: return 6;
+            case KEY_LX: return 7;
+            case KEY_TD: return 8;
+            case KEY_ABS_HUMIDITY: return 9;
+            case KEY_T: return 10;
+            case KEY_RH: return 11;
+            default: return -1;
+        }
+    }
+
+    /**
+     * Returns whether a metric is derived from other readings rather than stored.
+     */
+    public static boolean isDerived(int metric) {
+        return DerivedMetrics.isDerived(metric);
+    }
+
+    public static String unit(int metric) {
+        return UNITS[metric];
+    }
+
+    public synchronized void set(int row, int metric, double value) {
+        if (write(row * METRIC_COUNT + metric, value, version + 1)) rowVersions[row] = ++version;
+    }
+
+    /**
+     * Writes a full row of readings, in {@link #METRIC_KEYS} order. Derived metrics are skipped.
+     * @param row A district ID or an {@link #overviewRow(int)} ID.
+     */
+    public synchronized void setRow(int row, double... readings) {
+        writeRow(row, readings);
+    }
+
+    /**
+     * Changes the readings of a row in place: the current row (derived metrics included) is
+     * copied into {@code scratch}, passed to {@code update} and written back, all under the
+     * store's lock, so writes of other sources in between cannot be lost.
+     * @param scratch At least {@link #METRIC_COUNT} long.
+     * @return Whether any reading changed.
+     */
+    public synchronized boolean updateRow(int row, double[] scratch, RowUpdate update) {
+        getRow(row, scratch);
+        if (!update.apply(row, scratch)) return false;
+        return writeRow(row, scratch);
+    }
+
+    /**
+     * Modifies one row of readings for {@link #updateRow}; runs under the store's lock.
+     */
+    public interface RowUpdate {
+        /** @return False to leave the row unchanged. */
+        boolean apply(int row, double[] readings);
+    }
+
+    private boolean writeRow(int row, double[] readings) {
+        int base = row * METRIC_COUNT;
+        long rowVersion = version + 1;
+        boolean changed = false;
+        for (int m = 0; m < Math.min(readings.length, METRIC_COUNT); m++) {
+            changed |= write(base + m, readings[m], rowVersion);
+        }
+        if (changed) rowVersions[row] = version = rowVersion;
+        return changed;
+    }
+
+    /**
+     * Writes {@code count} readings under a single lock, e.g. a batch of an ingested feed.
+     * Entry {@code i} sets the reading of row {@code rows[i]}, metric {@code metrics[i]};
+     * later entries for the same reading win.
+     */
+    public synchronized void setBatch(int[] rows, int[] metrics, double[] readings, int count) {
+        long batchVersion = version + 1;
+        for (int i = 0; i < count; i++) {
+            if (write(rows[i] * METRIC_COUNT + metrics[i], readings[i], batchVersion)) rowVersions[rows[i]] = batchVersion;
+        }
+        if (count > 0) version = batchVersion;
+    }
+
+    // Stores a reading and reports whether it differs from the previous one (NaN equals NaN).
+    // Derived metrics are never stored.
+    private boolean write(int index, double value, long newVersion) {
+        if (Double.doubleToLongBits(values[index]) == Double.doubleToLongBits(value)) return false;
+        if (DerivedMetrics.isDerived(index % METRIC_COUNT)) return false;
+        values[index] = value;
+        cellVersions[index] = newVersion;
+        return true;
+    }
+
+    /**
+     * Returns the version of the last change; it grows with every write that changes a reading.
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Copies the rows below {@code rowLimit} that changed after {@code sinceVersion} into {@code dst}
+     * (row-major, at the rows' own offsets) and marks them in {@code changedRows}, in one consistent
+     * step. Rows that did not change are neither copied nor marked.
+     * @return The current version, to pass as {@code sinceVersion} next time.
+     */
+    public synchronized long copyRowsChangedSince(long sinceVersion, int rowLimit, double[] dst, BitSet changedRows) {
+        int limit = Math.min(rowLimit, districtCount + cityCount);
+        for (int row = 0; row < limit; row++) {
+            if (rowVersions[row] > sinceVersion) {
+                System.arraycopy(values, row * METRIC_COUNT, dst, row * METRIC_COUNT, METRIC_COUNT);
+                derived.fillRow(row, dst, row * METRIC_COUNT);
+                changedRows.set(row);
+            }
+        }
+        return version;
+    }
+
+    /**
+     * Copies a full row of readings into {@code dst} (at least {@link #METRIC_COUNT} long).
+     * @param row A district ID or an {@link #overviewRow(int)} ID.
+     */
+    public synchronized void getRow(int row, double[] dst) {
+        System.arraycopy(values, row * METRIC_COUNT, dst, 0, METRIC_COUNT);
+        derived.fillRow(row, dst, 0);
+    }
+
+    /**
+     * @param row A district ID or an {@link #overviewRow(int)} ID.
+     * @return The reading, or NaN if the row or metric has no value.
+     */
+    public synchronized double get(int row, int metric) {
+        if (row < 0 || row >= districtCount + cityCount || metric < 0 || metric >= METRIC_COUNT) {
+            return Double.NaN;
+        }
+        if (DerivedMetrics.isDerived(metric)) return derived.get(row, metric);
+        return values[row * METRIC_COUNT + metric];
+    }
+}
@@ -0,0 +1,120 @@
+package com.stadtiq;
+
+/**
+ * Reduces a uniformly sampled series to roughly the number of points that can be told apart
+ * on screen, while keeping its visual shape (peaks and dips).
+ * Results are interleaved {@code [x0, y0, x1, y1, ...]} arrays where x is the (fractional)
+ * index into the original series, so callers can map them to pixels the same way as raw points.
+ */
+public final class SeriesDecimator {
+
+    public static final int MODE_LTTB = 0;
+    public static final int MODE_MIN_MAX = 1;
+
+    private SeriesDecimator() { }
+
+    /**
+     * Decimates a series for a plot area that is {@code widthPx} pixels wide.
+     * LTTB keeps about one point per pixel; the min/max envelope keeps two points per two pixels.
+     * Series that already fit are returned unchanged (as interleaved pairs).
+     */
+    public static float[] decimate(float[] data, int widthPx, int mode) {
+        int maxPoints = Math.max(3, widthPx);
+        if (data.length <= maxPoints) return identity(data);
+        return mode == MODE_MIN_MAX ? minMaxEnvelope(data, Math.max(1, maxPoints / 2)) : lttb(data, maxPoints);
+    }
+
+    static float[] identity(float[] data) {
+        float[] out = new float[data.length * 2];
+        for (int i = 0; i < data.length; i++) {
+            out[2 * i] = i;
+            out[2 * i + 1] = data[i];
+        }
+        return out;
+    }
+
+    /**
+     * Largest-Triangle-Three-Buckets: keeps the first and last point, and from every bucket in
+     * between the point that forms the largest triangle with the previously kept point and the
+     * average of the next bucket.
+     * @param threshold Number of output points, at least 3.
+     */
+    static float[] lttb(float[] data, int threshold) {
+        int n = data.length;
+        if (threshold >= n || threshold < 3) return identity(data);
+        float[] out = new float[threshold * 2];
+        int outIndex = 0;
+        double bucketSize = (double) (n - 2) / (threshold - 2);
+
+        int a = 0; // Index of the previously selected point
+        out[outIndex++] = 0;
+        out[outIndex++] = data[0];
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            // Average of the next bucket (the last point for the final bucket)
+            int nextStart = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) Math.floor((bucket + 2) * bucketSize) + 1, n);
+            double avgX = 0, avgY = 0;
+            int avgCount = nextEnd - nextStart;
+            if (avgCount <= 0) {
+                avgX = n - 1;
+                avgY = data[n - 1];
+            } else {
+                for (int i = nextStart; i < nextEnd; i++) {
+                    avgX += i;
+                    avgY += data[i];
+                }
+                avgX /= avgCount;
+                avgY /= avgCount;
+            }
+
+            // Point of the current bucket with the largest triangle area
+            int start = (int) Math.floor(bucket * bucketSize) + 1;
+            int end = Math.min((int) Math.floor((bucket + 1) * bucketSize) + 1, n - 1);
+            double ax = a, ay = data[a];
+            double maxArea = -1;
+            int selected = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((ax - avgX) * (data[i] - ay) - (ax - i) * (avgY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    selected = i;
+                }
+            }
+            out[outIndex++] = selected;
+            out[outIndex++] = data[selected];
+            a = selected;
+        }
+
+        out[outIndex++] = n - 1;
+        out[outIndex] = data[n - 1];
+        return out;
+    }
+
+    /**
+     * Min/max envelope: splits the series into buckets and keeps each bucket's minimum and
+     * maximum in their original order, so every spike survives regardless of the bucket size.
+     */
+    static float[] minMaxEnvelope(float[] data, int buckets) {
+        int n = data.length;
+        if (buckets * 2 >= n) return identity(data);
+        float[] out = new float[buckets * 4];
+        int outIndex = 0;
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            int start = (int) ((long) bucket * n / buckets);
+            int end = (int) ((long) (bucket + 1) * n / buckets);
+            int minIndex = start, maxIndex = start;
+            for (int i = start + 1; i < end; i++) {
+                if (data[i] < data[minIndex]) minIndex = i;
+                if (data[i] > data[maxIndex]) maxIndex = i;
+            }
+            int first = Math.min(minIndex, maxIndex);
+            int second = Math.max(minIndex, maxIndex);
+            out[outIndex++] = first;
+            out[outIndex++] = data[first];
+            out[outIndex++] = second;
+            out[outIndex++] = data[second];
+        }
+        return out;
+    }
+}
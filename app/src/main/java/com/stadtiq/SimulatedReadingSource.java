@@ -0,0 +1,94 @@
+package com.stadtiq;
+
+import java.util.Random;
+
+/**
+ * Local stand-in for a live backend: every refresh moves each reading a small random step,
+ * pulled back towards the value it had on the first refresh, so readings drift plausibly
+ * around the initial dummy data instead of wandering off. Derived metrics follow their inputs.
+ * Each row is stepped inside {@link ReadingStore#updateRow}, so readings other sources write
+ * concurrently are never overwritten with stale values. With a database, every refresh is
+ * appended to the history (stored and derived readings of the changed rows, one timestamp per
+ * refresh), so history, rollups and percentiles fill as with a real feed.
+ */
+public final class SimulatedReadingSource implements ReadingSource {
+
+    // Random step per refresh, relative to the baseline value
+    private static final double STEP_FRACTION = 0.01;
+    // Share of the distance to the baseline recovered per refresh
+    private static final double MEAN_REVERSION = 0.2;
+
+    private final Random random;
+    private final ReadingDatabase database;
+    private double[][] baselines;
+    private final double[] row = new double[ReadingStore.METRIC_COUNT];
+    // Readings of one refresh to persist, sized for every reading of the store on first use
+    private int[] batchRows;
+    private int[] batchMetrics;
+    private long[] batchTimestamps;
+    private double[] batchValues;
+
+    public SimulatedReadingSource(long seed) {
+        this(seed, null);
+    }
+
+    /**
+     * @param database The history to append simulated readings to, or null to only update the store.
+     */
+    public SimulatedReadingSource(long seed, ReadingDatabase database) {
+        this.random = new Random(seed);
+        this.database = database;
+    }
+
+    @Override
+    public boolean refresh(ReadingStore store) {
+        int rowCount = store.getRowCount();
+        if (baselines == null) {
+            baselines = new double[rowCount][ReadingStore.METRIC_COUNT];
+            for (int r = 0; r < rowCount; r++) store.getRow(r, baselines[r]);
+        }
+        if (database != null && batchRows == null) {
+            int capacity = rowCount * ReadingStore.METRIC_COUNT;
+            batchRows = new int[capacity];
+            batchMetrics = new int[capacity];
+            batchTimestamps = new long[capacity];
+            batchValues = new double[capacity];
+        }
+        long now = System.currentTimeMillis();
+        int batchSize = 0;
+        boolean changed = false;
+        for (int r = 0; r < rowCount; r++) {
+            if (!store.updateRow(r, row, this::step)) continue;
+            changed = true;
+            if (database == null) continue;
+            // Read back, so derived metrics are recorded with the inputs they were computed from
+            store.getRow(r, row);
+            for (int m = 0; m < ReadingStore.METRIC_COUNT; m++) {
+                if (Double.isNaN(row[m])) continue;
+                batchRows[batchSize] = r;
+                batchMetrics[batchSize] = m;
+                batchTimestamps[batchSize] = now;
+                batchValues[batchSize] = row[m];
+                batchSize++;
+            }
+        }
+        // On the scheduler's thread, like ReadingIngestor.flush
+        if (batchSize > 0) database.insertBatch(batchRows, batchMetrics, batchTimestamps, batchValues, batchSize);
+        return changed;
+    }
+
+    // Moves every stored reading of a row one step; false if the row has nothing to simulate
+    private boolean step(int r, double[] readings) {
+        double[] baseline = baselines[r];
+        boolean rowChanged = false;
+        for (int m = 0; m < ReadingStore.METRIC_COUNT; m++) {
+            if (Double.isNaN(baseline[m]) || Double.isNaN(readings[m])) continue; // No data for this reading
+            if (ReadingStore.isDerived(m)) continue; // Computed from the other readings
+            double step = random.nextGaussian() * STEP_FRACTION * Math.abs(baseline[m]);
+            double next = readings[m] + MEAN_REVERSION * (baseline[m] - readings[m]) + step;
+            readings[m] = Math.max(0, next);
+            rowChanged = true;
+        }
+        return rowChanged;
+    }
+}
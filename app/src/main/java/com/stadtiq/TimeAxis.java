@@ -0,0 +1,233 @@
+package com.stadtiq;
+
+import android.text.format.DateFormat;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TimeZone;
+
+/**
+ * Tick positions and labels of the graph's time axis. For a time range, the axis picks the
+ * finest "nice" step (e.g. 6 hours, 1 day, 1 week, 3 months) whose ticks still leave room for
+ * their labels at the given width, aligns the ticks to local calendar boundaries (midnight, the
+ * first of a month, January 1st) and formats them with a locale-appropriate pattern for that step.
+ * <p>
+ * Computing an axis involves calendar arithmetic and date formatting, so results are cached
+ * process-wide per (range, width, label spacing, locale, time zone): redraws, relayouts at the
+ * same size and exports of the same graph reuse them.
+ */
+public final class TimeAxis {
+
+    private static final long MINUTE = 60_000L;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+
+    // Nice steps, finest first: calendar field, amount, nominal length and label skeleton
+    private static final int[] STEP_FIELDS = {
+            Calendar.MINUTE, Calendar.MINUTE, Calendar.MINUTE, Calendar.MINUTE,
+            Calendar.HOUR_OF_DAY, Calendar.HOUR_OF_DAY, Calendar.HOUR_OF_DAY, Calendar.HOUR_OF_DAY, Calendar.HOUR_OF_DAY,
+            Calendar.DAY_OF_MONTH, Calendar.DAY_OF_MONTH, Calendar.DAY_OF_MONTH,
+            Calendar.MONTH, Calendar.MONTH, Calendar.MONTH, Calendar.MONTH,
+            Calendar.YEAR, Calendar.YEAR, Calendar.YEAR, Calendar.YEAR
+    };
+    private static final int[] STEP_AMOUNTS = {
+            5, 10, 15, 30,
+            1, 2, 3, 6, 12,
+            1, 2, 7,
+            1, 2, 3, 6,
+            1, 2, 5, 10
+    };
+    private static final String SKELETON_TIME = "Hm";
+    private static final String SKELETON_DAY = "dMMM";
+    private static final String SKELETON_MONTH = "MMMyyyy";
+    private static final String SKELETON_YEAR = "yyyy";
+
+    private static final int MAX_CACHED_AXES = 16;
+    private static final Map<Key, TimeAxis> CACHE = new LinkedHashMap<Key, TimeAxis>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, TimeAxis> eldest) {
+            return size() > MAX_CACHED_AXES;
+        }
+    };
+
+    /** Tick times (epoch millis), ascending and within the range. */
+    public final long[] ticks;
+    /** Label of each tick. */
+    public final String[] labels;
+    /** Start and end of the range the axis was computed for. */
+    public final long startMillis, endMillis;
+
+    private TimeAxis(long[] ticks, String[] labels, long startMillis, long endMillis) {
+        this.ticks = ticks;
+        this.labels = labels;
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
+    }
+
+    /**
+     * Returns the axis for {@code [startMillis, endMillis]} drawn {@code widthPx} wide, with
+     * labels at least {@code minLabelSpacingPx} apart, in the default locale and time zone.
+     */
+    public static TimeAxis get(long startMillis, long endMillis, int widthPx, int minLabelSpacingPx) {
+        Locale locale = Locale.getDefault();
+        TimeZone timeZone = TimeZone.getDefault();
+        Key key = new Key(startMillis, endMillis, widthPx, minLabelSpacingPx, locale, timeZone.getID());
+        synchronized (CACHE) {
+            TimeAxis cached = CACHE.get(key);
+            if (cached != null) return cached;
+        }
+        TimeAxis axis = compute(startMillis, endMillis, widthPx, minLabelSpacingPx, locale, timeZone);
+        synchronized (CACHE) {
+            CACHE.put(key, axis);
+        }
+        return axis;
+    }
+
+    /**
+     * Returns the x position of {@code timeMillis} on an axis drawn from {@code left}, {@code width} wide.
+     */
+    public float toX(long timeMillis, float left, float width) {
+        if (endMillis <= startMillis) return left + width / 2f;
+        return left + (float) ((double) (timeMillis - startMillis) / (endMillis - startMillis)) * width;
+    }
+
+    private static TimeAxis compute(long startMillis, long endMillis, int widthPx, int minLabelSpacingPx,
+                                    Locale locale, TimeZone timeZone) {
+        long span = endMillis - startMillis;
+        if (span <= 0 || widthPx <= 0) {
+            // A single instant: one label in the middle
+            String label = createFormat(SKELETON_DAY, locale, timeZone).format(new Date(startMillis));
+            return new TimeAxis(new long[] { startMillis }, new String[] { label }, startMillis, endMillis);
+        }
+        int maxTicks = Math.max(2, widthPx / Math.max(1, minLabelSpacingPx));
+        int step = STEP_FIELDS.length - 1;
+        for (int i = 0; i < STEP_FIELDS.length; i++) {
+            if (span / nominalLength(i) < maxTicks) {
+                step = i;
+                break;
+            }
+        }
+        int field = STEP_FIELDS[step];
+        int amount = STEP_AMOUNTS[step];
+
+        Calendar calendar = Calendar.getInstance(timeZone, locale);
+        calendar.setTimeInMillis(startMillis);
+        alignDown(calendar, field, amount);
+        // Multi-year steps can produce one tick per amount years in the worst case; size generously
+        long[] ticks = new long[maxTicks + 2];
+        int count = 0;
+        while (count < ticks.length) {
+            long tick = calendar.getTimeInMillis();
+            if (tick > endMillis) break;
+            if (tick >= startMillis) ticks[count++] = tick;
+            calendar.add(field, amount);
+        }
+
+        SimpleDateFormat format = createFormat(skeletonFor(field), locale, timeZone);
+        // Sub-day steps show the date at midnight so the day is not lost
+        SimpleDateFormat dayFormat = field == Calendar.MINUTE || field == Calendar.HOUR_OF_DAY
+                ? createFormat(SKELETON_DAY, locale, timeZone) : null;
+        String[] labels = new String[count];
+        Date date = new Date();
+        for (int i = 0; i < count; i++) {
+            date.setTime(ticks[i]);
+            calendar.setTimeInMillis(ticks[i]);
+            boolean midnight = calendar.get(Calendar.HOUR_OF_DAY) == 0 && calendar.get(Calendar.MINUTE) == 0;
+            labels[i] = (dayFormat != null && midnight ? dayFormat : format).format(date);
+        }
+        long[] trimmed = new long[count];
+        System.arraycopy(ticks, 0, trimmed, 0, count);
+        return new TimeAxis(trimmed, labels, startMillis, endMillis);
+    }
+
+    private static long nominalLength(int step) {
+        int amount = STEP_AMOUNTS[step];
+        switch (STEP_FIELDS[step]) {
+            case Calendar.MINUTE: return amount * MINUTE;
+            case Calendar.HOUR_OF_DAY: return amount * HOUR;
+            case Calendar.DAY_OF_MONTH: return amount * DAY;
+            case Calendar.MONTH: return amount * 30 * DAY;
+            default: return amount * 365 * DAY;
+        }
+    }
+
+    // Moves the calendar back to the previous step boundary (e.g. 00:00, 06:00, 12:00 for 6-hour steps)
+    private static void alignDown(Calendar calendar, int field, int amount) {
+        calendar.set(Calendar.MILLISECOND, 0);
+        calendar.set(Calendar.SECOND, 0);
+        if (field == Calendar.MINUTE) {
+            calendar.set(Calendar.MINUTE, calendar.get(Calendar.MINUTE) / amount * amount);
+            return;
+        }
+        calendar.set(Calendar.MINUTE, 0);
+        if (field == Calendar.HOUR_OF_DAY) {
+            calendar.set(Calendar.HOUR_OF_DAY, calendar.get(Calendar.HOUR_OF_DAY) / amount * amount);
+            return;
+        }
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        if (field == Calendar.DAY_OF_MONTH) {
+            // Weekly steps start on the locale's first day of the week
+            if (amount == 7) {
+                while (calendar.get(Calendar.DAY_OF_WEEK) != calendar.getFirstDayOfWeek()) calendar.add(Calendar.DAY_OF_MONTH, -1);
+            }
+            return;
+        }
+        calendar.set(Calendar.DAY_OF_MONTH, 1);
+        if (field == Calendar.MONTH) {
+            calendar.set(Calendar.MONTH, calendar.get(Calendar.MONTH) / amount * amount);
+            return;
+        }
+        calendar.set(Calendar.MONTH, Calendar.JANUARY);
+        calendar.set(Calendar.YEAR, calendar.get(Calendar.YEAR) / amount * amount);
+    }
+
+    private static String skeletonFor(int field) {
+        switch (field) {
+            case Calendar.MINUTE:
+            case Calendar.HOUR_OF_DAY: return SKELETON_TIME;
+            case Calendar.DAY_OF_MONTH: return SKELETON_DAY;
+            case Calendar.MONTH: return SKELETON_MONTH;
+            default: return SKELETON_YEAR;
+        }
+    }
+
+    private static SimpleDateFormat createFormat(String skeleton, Locale locale, TimeZone timeZone) {
+        SimpleDateFormat format = new SimpleDateFormat(DateFormat.getBestDateTimePattern(locale, skeleton), locale);
+        format.setTimeZone(timeZone);
+        return format;
+    }
+
+    private static final class Key {
+        final long startMillis, endMillis;
+        final int widthPx, minLabelSpacingPx;
+        final Locale locale;
+        final String timeZoneId;
+
+        Key(long startMillis, long endMillis, int widthPx, int minLabelSpacingPx, Locale locale, String timeZoneId) {
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+            this.widthPx = widthPx;
+            this.minLabelSpacingPx = minLabelSpacingPx;
+            this.locale = locale;
+            this.timeZoneId = timeZoneId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return startMillis == k.startMillis && endMillis == k.endMillis && widthPx == k.widthPx
+                    && minLabelSpacingPx == k.minLabelSpacingPx && locale.equals(k.locale) && timeZoneId.equals(k.timeZoneId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(startMillis, endMillis, widthPx, minLabelSpacingPx, locale, timeZoneId);
+        }
+    }
+}
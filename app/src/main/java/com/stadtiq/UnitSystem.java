@@ -0,0 +1,111 @@
+package com.stadtiq;
+
+/**
+ * The units readings are shown in. Readings are stored in the units of {@link ReadingStore#unit(int)};
+ * a unit system maps every metric to a display unit as {@code shown = stored * scale + offset},
+ * with the number of decimals to show. The user picks it with {@link #FAHRENHEIT},
+ * {@link #INCHES_OF_MERCURY} and {@link #MASS_CONCENTRATION} flags.
+ * <p>
+ * The coefficients of all flag combinations are computed once, so converting a reading is one
+ * array lookup and a multiply-add.
+ */
+public final class UnitSystem {
+
+    /** Temperatures (T, Td) in °F instead of °C. */
+    public static final int FAHRENHEIT = 1;
+    /** Pressure in inches of mercury instead of hPa. */
+    public static final int INCHES_OF_MERCURY = 1 << 1;
+    /** Gases as mass per volume: CO₂ and CH₄ in mg/m³, SO₂ in µg/m³ (PM2,5 already is). */
+    public static final int MASS_CONCENTRATION = 1 << 2;
+    public static final int ALL_FLAGS = FAHRENHEIT | INCHES_OF_MERCURY | MASS_CONCENTRATION;
+
+    private static final int M = ReadingStore.METRIC_COUNT;
+
+    // Decimals shown in the stored units, per metric ID: at least MIN, at most MAX
+    private static final int[] MIN_DECIMALS = { 0, 0, 1, 1, 1, 1, 0, 0, 1, 1, 1, 0 };
+    private static final int[] MAX_DECIMALS = { 0, 0, 2, 1, 2, 1, 0, 0, 1, 2, 1, 0 };
+
+    // Molar volume of an ideal gas at 25 °C and 1013.25 hPa (L/mol), for ppm → mg/m³ and ppb → µg/m³
+    private static final double MOLAR_VOLUME = 24.45;
+    private static final double MOLAR_MASS_CO2 = 44.01;
+    private static final double MOLAR_MASS_SO2 = 64.066;
+    private static final double MOLAR_MASS_CH4 = 16.043;
+    private static final double INHG_PER_HPA = 1 / 33.8638866667;
+
+    private static final UnitSystem[] SYSTEMS = new UnitSystem[ALL_FLAGS + 1];
+
+    static {
+        for (int flags = 0; flags <= ALL_FLAGS; flags++) SYSTEMS[flags] = new UnitSystem(flags);
+    }
+
+    /**
+     * Returns the unit system for a combination of flags; unknown bits are ignored.
+     */
+    public static UnitSystem of(int flags) {
+        return SYSTEMS[flags & ALL_FLAGS];
+    }
+
+    private final int flags;
+    private final double[] scale = new double[M];
+    private final double[] offset = new double[M];
+    private final String[] units = new String[M];
+    private final int[] minDecimals = new int[M];
+    private final int[] maxDecimals = new int[M];
+
+    private UnitSystem(int flags) {
+        this.flags = flags;
+        for (int m = 0; m < M; m++) {
+            scale[m] = 1;
+            units[m] = ReadingStore.unit(m);
+            minDecimals[m] = MIN_DECIMALS[m];
+            maxDecimals[m] = MAX_DECIMALS[m];
+        }
+        if ((flags & FAHRENHEIT) != 0) {
+            set(ReadingStore.KEY_T, 1.8, 32, "°F", 1, 1);
+            set(ReadingStore.KEY_TD, 1.8, 32, "°F", 1, 1);
+        }
+        if ((flags & INCHES_OF_MERCURY) != 0) {
+            set(ReadingStore.KEY_P, INHG_PER_HPA, 0, "inHg", 2, 2);
+        }
+        if ((flags & MASS_CONCENTRATION) != 0) {
+            set(ReadingStore.KEY_CO2, MOLAR_MASS_CO2 / MOLAR_VOLUME, 0, "mg/m³", 0, 0);
+            set(ReadingStore.KEY_CH4, MOLAR_MASS_CH4 / MOLAR_VOLUME, 0, "mg/m³", 2, 2);
+            set(ReadingStore.KEY_SO2, MOLAR_MASS_SO2 / MOLAR_VOLUME, 0, "µg/m³", 1, 1);
+        }
+    }
+
+    private void set(String dataKey, double scale, double offset, String unit, int minDecimals, int maxDecimals) {
+        int metric = ReadingStore.metricIndex(dataKey);
+        this.scale[metric] = scale;
+        this.offset[metric] = offset;
+        this.units[metric] = unit;
+        this.minDecimals[metric] = minDecimals;
+        this.maxDecimals[metric] = maxDecimals;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    /**
+     * Converts a reading from its stored unit into this system's unit. NaN stays NaN.
+     */
+    public double convert(int metric, double value) {
+        return value * scale[metric] + offset[metric];
+    }
+
+    /**
+     * Returns the unit a metric is shown in, e.g. "°F".
+     */
+    public String unit(int metric) {
+        return units[metric];
+    }
+
+    public int minDecimals(int metric) {
+        return minDecimals[metric];
+    }
+
+    public int maxDecimals(int metric) {
+        return maxDecimals[metric];
+    }
+}
@@ -1,21 +1,84 @@
 package com.stadtiq;
 
+import android.graphics.Typeface;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
+/**
+ * Shows the readings of the selected district. New lists are diffed against the current one on a
+ * background thread ({@link AsyncListDiffer}); rows are identified by their data key, and a row
+ * whose only change is its reading (and summary) is rebound with {@link #PAYLOAD_READING}, so only
+ * those texts are updated. Readings flagged as anomalous are shown bold in the error color.
+ * <p>
+ * Numeric readings are converted to the user's {@link UnitSystem} and formatted when bound, into
+ * a char buffer owned by the view holder, so binding does not build a String per row. Switching
+ * units rebinds just the readings ({@link #setUnitSystem(UnitSystem)}).
+ */
 public class ValueAdapter extends RecyclerView.Adapter<ValueViewHolder> {
 
-    private List<ValueItem> valueList;
+    // Partial bind: only the reading and summary of the row changed
+    static final Object PAYLOAD_READING = new Object();
+
+    private static final DiffUtil.ItemCallback<ValueItem> DIFF_CALLBACK = new DiffUtil.ItemCallback<ValueItem>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull ValueItem oldItem, @NonNull ValueItem newItem) {
+            return Objects.equals(oldItem.getDataKey(), newItem.getDataKey());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull ValueItem oldItem, @NonNull ValueItem newItem) {
+            return Objects.equals(oldItem.getDisplayableName(), newItem.getDisplayableName())
+                    && Objects.equals(oldItem.getReading(), newItem.getReading())
+                    && oldItem.getMetric() == newItem.getMetric()
+                    && Double.doubleToLongBits(oldItem.getValue()) == Double.doubleToLongBits(newItem.getValue())
+                    && Objects.equals(oldItem.getSummary(), newItem.getSummary())
+                    && oldItem.isAnomalous() == newItem.isAnomalous();
+        }
+
+        @Nullable
+        @Override
+        public Object getChangePayload(@NonNull ValueItem oldItem, @NonNull ValueItem newItem) {
+            // A changed name (e.g. after a language switch) needs a full rebind
+            return Objects.equals(oldItem.getDisplayableName(), newItem.getDisplayableName()) ? PAYLOAD_READING : null;
+        }
+    };
+
+    private final AsyncListDiffer<ValueItem> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+    // Stable item IDs, assigned per data key on first sight (only accessed on the main thread)
+    private final Map<String, Long> stableIds = new HashMap<>();
     private ValueViewHolder.OnItemClickListener listener;
+    private final ReadingFormatter formatter;
+    private UnitSystem unitSystem;
+
+    public ValueAdapter(List<ValueItem> valueList, ReadingFormatter formatter, UnitSystem unitSystem) {
+        this.formatter = formatter;
+        this.unitSystem = unitSystem;
+        setHasStableIds(true);
+        updateData(valueList);
+    }
 
-    public ValueAdapter(List<ValueItem> valueList) {
-        this.valueList = valueList;
+    /**
+     * Shows numeric readings in other units; the rows' readings are rebound, nothing else.
+     */
+    public void setUnitSystem(UnitSystem unitSystem) {
+        if (unitSystem == this.unitSystem) return;
+        this.unitSystem = unitSystem;
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_READING);
     }
 
     public void setOnItemClickListener(ValueViewHolder.OnItemClickListener listener) {
@@ -32,28 +95,74 @@ public class ValueAdapter extends RecyclerView.Adapter<ValueViewHolder> {
 
     @Override
     public void onBindViewHolder(@NonNull ValueViewHolder holder, int position) {
-        ValueItem currentItem = valueList.get(position);
-        // Corrected lines:
+        ValueItem currentItem = differ.getCurrentList().get(position);
         if (currentItem != null) {
-            holder.valueName.setText(currentItem.getDisplayableName()); // Use getter
-            holder.valueReading.setText(currentItem.getReading());     // Use getter
+            holder.valueName.setText(currentItem.getDisplayableName());
+            bindReading(holder, currentItem);
+        }
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ValueViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        // Only PAYLOAD_READING is ever dispatched
+        ValueItem currentItem = differ.getCurrentList().get(position);
+        if (currentItem != null) {
+            bindReading(holder, currentItem);
+        }
+    }
+
+    private void bindReading(ValueViewHolder holder, ValueItem item) {
+        if (item.hasNumericReading()) {
+            int length = formatter.format(unitSystem, item.getMetric(), item.getValue(), holder.readingChars);
+            holder.valueReading.setText(holder.readingChars, 0, length);
+        } else {
+            holder.valueReading.setText(item.getReading());
+        }
+        String summary = item.getSummary();
+        holder.valueSummary.setVisibility(TextUtils.isEmpty(summary) ? View.GONE : View.VISIBLE);
+        holder.valueSummary.setText(summary);
+        if (item.isAnomalous()) {
+            holder.valueReading.setTextColor(ContextCompat.getColor(holder.itemView.getContext(), R.color.colorError));
+            holder.valueReading.setTypeface(null, Typeface.BOLD);
+        } else {
+            holder.valueReading.setTextColor(holder.defaultReadingColors);
+            holder.valueReading.setTypeface(null, Typeface.NORMAL);
+        }
+    }
+
+    @Override
+    public long getItemId(int position) {
+        String dataKey = differ.getCurrentList().get(position).getDataKey();
+        Long id = stableIds.get(dataKey);
+        if (id == null) {
+            id = (long) stableIds.size();
+            stableIds.put(dataKey, id);
         }
+        return id;
     }
 
     @Override
     public int getItemCount() {
-        return valueList != null ? valueList.size() : 0; // Added null check for safety
+        return differ.getCurrentList().size();
     }
 
+    /**
+     * Replaces the shown list. The diff runs in the background; rows are updated once it is done.
+     */
     public void updateData(List<ValueItem> newList) {
-        this.valueList = newList;
-        notifyDataSetChanged(); // Consider using DiffUtil for better performance in complex lists
+        // The differ keeps a reference, so callers may reuse or modify their list afterwards
+        differ.submitList(newList != null ? new ArrayList<>(newList) : null);
     }
 
     public ValueItem getValueItem(int position) {
-        if (valueList != null && position >= 0 && position < valueList.size()) {
+        List<ValueItem> valueList = differ.getCurrentList();
+        if (position >= 0 && position < valueList.size()) {
             return valueList.get(position);
         }
         return null;
     }
-}
\ No newline at end of file
+}
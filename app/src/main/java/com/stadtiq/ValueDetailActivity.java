@@ -52,6 +52,7 @@ public class ValueDetailActivity extends AppCompatActivity {
     private static final String KEY_LX = "lx";
     private static final String KEY_TD = "Td";
     private static final String KEY_ABS_HUMIDITY = "ABS_HUMIDITY_KEY";
+    private static final String KEY_AQI = "AQI";
     // --- END CONSTANT DATA KEYS ---
 
 
@@ -187,6 +188,7 @@ public class ValueDetailActivity extends AppCompatActivity {
         resourceNameMap.put(KEY_LX, "explanation_lx_long");
         resourceNameMap.put(KEY_TD, "explanation_td_long");
         resourceNameMap.put(KEY_ABS_HUMIDITY, "explanation_absolute_humidity_long");
+        resourceNameMap.put(KEY_AQI, "explanation_aqi_long");
 
         // Get the target resource name for the current dataKey
         String targetResourceName = resourceNameMap.get(dataKey);
@@ -236,6 +238,7 @@ public class ValueDetailActivity extends AppCompatActivity {
             case KEY_LX: return "lx";
             case KEY_TD: return "Td";
             case KEY_ABS_HUMIDITY: return getString(R.string.value_absolute_humidity); // Localized
+            case KEY_AQI: return getString(R.string.value_aqi); // Localized
             default:
                 Log.w(TAG, "getDisplayableNameForKey: Unknown dataKey '" + dataKey + "'. Returning key itself.");
                 return dataKey; // Fallback
@@ -2,16 +2,44 @@ package com.stadtiq;
 
 public class ValueItem {
     String displayableName; // Localized name for UI
-    String reading;
+    String reading;         // Preformatted reading; null if the row carries a numeric one
+    int metric = -1;        // Metric of the numeric reading, formatted by the adapter when bound
+    double value = Double.NaN;
     String dataKey;         // Non-localized, constant key for data and logic
+    String summary;         // Optional second line, e.g. the spread of a city-wide aggregate
+    boolean anomalous;      // Reading flagged by the AnomalyDetector
 
     public ValueItem(String displayableName, String reading, String dataKey) {
+        this(displayableName, reading, dataKey, null);
+    }
+
+    public ValueItem(String displayableName, String reading, String dataKey, String summary) {
+        this(displayableName, reading, dataKey, summary, false);
+    }
+
+    public ValueItem(String displayableName, String reading, String dataKey, String summary, boolean anomalous) {
         this.displayableName = displayableName;
         this.reading = reading;
         this.dataKey = dataKey;
+        this.summary = summary;
+        this.anomalous = anomalous;
+    }
+
+    /**
+     * A row whose reading is a store value in stored units; it is converted and formatted on bind.
+     */
+    public ValueItem(String displayableName, int metric, double value, String dataKey, String summary, boolean anomalous) {
+        this(displayableName, null, dataKey, summary, anomalous);
+        this.metric = metric;
+        this.value = value;
     }
 
     public String getDisplayableName() { return displayableName; }
     public String getReading() { return reading; }
+    public boolean hasNumericReading() { return metric >= 0; }
+    public int getMetric() { return metric; }
+    public double getValue() { return value; }
     public String getDataKey() { return dataKey; }
+    public String getSummary() { return summary; }
+    public boolean isAnomalous() { return anomalous; }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.stadtiq;
 
+import android.content.res.ColorStateList;
 import android.view.View;
 import android.widget.TextView;
 
@@ -10,6 +11,11 @@ public class ValueViewHolder extends RecyclerView.ViewHolder {
 
     TextView valueName;
     TextView valueReading;
+    TextView valueSummary;
+    // Theme color of the reading, restored when a row stops being flagged
+    final ColorStateList defaultReadingColors;
+    // Characters shown by valueReading for numeric readings; rewritten only right before setText
+    final char[] readingChars = new char[ReadingFormatter.MAX_LENGTH];
 
     public interface OnItemClickListener {
         void onItemClick(View itemView, int position); // Modified to pass itemView
@@ -19,6 +25,8 @@ public class ValueViewHolder extends RecyclerView.ViewHolder {
         super(itemView);
         valueName = itemView.findViewById(R.id.text_value_name);
         valueReading = itemView.findViewById(R.id.text_value_reading);
+        valueSummary = itemView.findViewById(R.id.text_value_summary);
+        defaultReadingColors = valueReading.getTextColors();
 
         itemView.setOnClickListener(v -> {
             if (listener != null) {
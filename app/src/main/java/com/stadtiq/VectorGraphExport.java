@@ -0,0 +1,79 @@
+package com.stadtiq;
+
+import android.graphics.pdf.PdfDocument;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Vector export formats of the history graph. Both write straight from the datasets through a
+ * {@link GraphRenderer}, decimated to the output size; no bitmap is allocated.
+ */
+public final class VectorGraphExport {
+
+    public static final String FORMAT_SVG = "svg";
+    public static final String FORMAT_PDF = "pdf";
+
+    // SVG user units (1 unit = 1 CSS px at 96 dpi)
+    static final int SVG_WIDTH = 960;
+    static final int SVG_HEIGHT = 600;
+    // A4 landscape in PostScript points (1/72 inch)
+    static final int PDF_PAGE_WIDTH = 842;
+    static final int PDF_PAGE_HEIGHT = 595;
+
+    private static final int WRITER_BUFFER_SIZE = 16 * 1024;
+
+    private VectorGraphExport() { }
+
+    public static String getMimeType(String format) {
+        return FORMAT_PDF.equals(format) ? "application/pdf" : "image/svg+xml";
+    }
+
+    public static String getFileExtension(String format) {
+        return FORMAT_PDF.equals(format) ? ".pdf" : ".svg";
+    }
+
+    /**
+     * Returns export content for {@code format}.
+     * @param renderer A renderer the export may use exclusively (see {@link GraphRenderer#withDensity(float)}),
+     *                 created with density 1 so sizes are in output units.
+     */
+    public static GraphExportJob.Content create(String format, GraphRenderer renderer, boolean includeLegend) {
+        return FORMAT_PDF.equals(format) ? pdf(renderer, includeLegend) : svg(renderer, includeLegend);
+    }
+
+    /**
+     * SVG streamed through a buffered UTF-8 writer.
+     */
+    public static GraphExportJob.Content svg(GraphRenderer renderer, boolean includeLegend) {
+        return out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITER_BUFFER_SIZE);
+            renderer.writeSvg(writer, SVG_WIDTH, SVG_HEIGHT, includeLegend);
+            writer.flush(); // The job closes the underlying stream
+        };
+    }
+
+    /**
+     * A one-page A4 landscape PDF; the legend (if included) takes space from the graph area.
+     */
+    public static GraphExportJob.Content pdf(GraphRenderer renderer, boolean includeLegend) {
+        return out -> {
+            PdfDocument document = new PdfDocument();
+            try {
+                PdfDocument.Page page = document.startPage(
+                        new PdfDocument.PageInfo.Builder(PDF_PAGE_WIDTH, PDF_PAGE_HEIGHT, 1).create());
+                int legendHeight = includeLegend ? renderer.getLegendHeight() : 0;
+                renderer.render(page.getCanvas(), PDF_PAGE_WIDTH, PDF_PAGE_HEIGHT - legendHeight, legendHeight > 0);
+                document.finishPage(page);
+                document.writeTo(out);
+            } catch (IllegalStateException e) {
+                throw new IOException("Failed to write PDF", e);
+            } finally {
+                document.close();
+            }
+        };
+    }
+}
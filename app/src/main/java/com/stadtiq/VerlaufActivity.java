@@ -2,7 +2,6 @@ package com.stadtiq;
 
 import android.Manifest;
 import android.app.AlertDialog;
-import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
@@ -12,18 +11,13 @@ import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.Paint;
-import android.graphics.Path;
 import android.graphics.Rect;
-import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Environment;
 import android.preference.PreferenceManager;
 import android.provider.MediaStore;
-import android.text.Layout;
-import android.text.StaticLayout;
-import android.text.TextPaint;
+import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.util.TypedValue;
@@ -33,11 +27,11 @@ import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.AdapterView;
-import android.widget.ArrayAdapter;
 import android.widget.CheckBox;
 import android.widget.FrameLayout;
 import android.widget.HorizontalScrollView;
 import android.widget.LinearLayout;
+import android.widget.ProgressBar;
 import android.widget.RadioButton;
 import android.widget.RadioGroup;
 import android.widget.SeekBar;
@@ -46,6 +40,7 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
 import androidx.appcompat.app.ActionBarDrawerToggle;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
@@ -59,19 +54,17 @@ import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 import com.google.android.material.navigation.NavigationView;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 
 public class VerlaufActivity extends AppCompatActivity
@@ -100,11 +93,16 @@ public class VerlaufActivity extends AppCompatActivity
 
     // Mappings for graph appearance and data generation
     private Map<String, Integer> valueColors = new LinkedHashMap<>(); // Maps data keys to colors for graph lines
-    private Map<String, float[]> baseGraphDataPatterns = new HashMap<>(); // Base patterns for generating graph data
+    private HistorySegmentStore historyStore; // Memory-mapped history segments per (metric, district)
+    private ReadingDatabase readingDatabase; // Persisted readings of ingested sensor feeds
+    private ReadingStore readingStore; // Only used to resolve the overview row of a city
+    // Builds graph datasets off the main thread; drops results of outdated selections
+    private final GraphDataPipeline<List<GraphRenderer.Dataset>> graphPipeline = new GraphDataPipeline<>();
 
     // Data for spinners and time period selection
-    private List<String> cities;
-    private Map<String, List<String>> districts;
+    private CityCatalog cityCatalog;
+    private CatalogSpinnerAdapter cityAdapter;
+    private CatalogSpinnerAdapter districtAdapter;
     private List<String> timePeriods; // Represents months: "1", "3", "6", "9", "12"
     private TextView selectedTimeOption = null; // Currently selected time period TextView
 
@@ -112,17 +110,27 @@ public class VerlaufActivity extends AppCompatActivity
     private static final String PREF_LANG_CODE = "pref_language_code";
     // Constants for graph data generation
     private static final int APPROX_DAYS_IN_MONTH = 30; // Used for calculating data points
+    // Graph size used for exports while the on-screen graph has not been measured yet
+    private static final int EXPORT_DEFAULT_WIDTH_DP = 640;
+    private static final int EXPORT_DEFAULT_HEIGHT_DP = 400;
     private static final int MAX_DAYS_FOR_FULL_YEAR_GRAPH = 365; // Max data points for a "year"
     // Tracks the language code to detect changes on resume/restart
     public String lastKnownLangCode = null;
 
     // Permission request code for storage
     private static final int REQUEST_STORAGE_PERMISSION = 101;
+    private static final int REQUEST_STORAGE_PERMISSION_CSV = 102;
+    private static final int REQUEST_STORAGE_PERMISSION_BATCH = 103;
 
     // To store export options temporarily if permission needs to be requested
     private Bitmap.CompressFormat pendingExportFormat = Bitmap.CompressFormat.PNG;
     private int pendingExportQuality = 90;
     private boolean pendingExportIncludeLegend = true;
+    private String pendingExportVectorFormat; // VectorGraphExport format, or null for PNG/JPEG
+    // Reuses export bitmaps across consecutive exports
+    private final BitmapPool graphBitmapPool = new BitmapPool(2);
+    private GraphExportJob currentExportJob;
+    private BatchGraphExport currentBatchExport;
 
 
     // --- CONSTANT DATA KEYS (Match MainActivity for consistency) ---
@@ -232,7 +240,9 @@ public class VerlaufActivity extends AppCompatActivity
 
         initializeValueColors();
         initializeCityDistrictData();
-        initializeBaseGraphDataPatterns();
+        historyStore = HistorySegmentStore.getInstance(this); // Segments are mapped lazily per selection
+        readingDatabase = ReadingDatabase.getInstance(this); // Opened lazily on the first graph query
+        readingStore = ReadingStore.getInstance(cityCatalog);
         initializeTimePeriods();
         setupValueOptionTextViews();
         Log.d(TAG, "onCreate: Data and ValueOption TextViews initialized.");
@@ -295,7 +305,15 @@ public class VerlaufActivity extends AppCompatActivity
         if (exportItem != null) {
             exportItem.setVisible(true);
         }
-        Log.d(TAG, "onCreateOptionsMenu: Menu inflated. Export graph item set to visible.");
+        MenuItem exportDataItem = menu.findItem(R.id.action_export_data);
+        if (exportDataItem != null) {
+            exportDataItem.setVisible(true);
+        }
+        MenuItem exportAllItem = menu.findItem(R.id.action_export_all_graphs);
+        if (exportAllItem != null) {
+            exportAllItem.setVisible(true);
+        }
+        Log.d(TAG, "onCreateOptionsMenu: Menu inflated. Export graph, data and batch items set to visible.");
         return true;
     }
 
@@ -311,6 +329,14 @@ public class VerlaufActivity extends AppCompatActivity
             Log.d(TAG, "onOptionsItemSelected: Export graph action selected.");
             exportGraphWithOptions(); // Call the method that shows the options dialog
             return true;
+        } else if (itemId == R.id.action_export_data) {
+            Log.d(TAG, "onOptionsItemSelected: Export data action selected.");
+            exportHistoryDataAsCsv();
+            return true;
+        } else if (itemId == R.id.action_export_all_graphs) {
+            Log.d(TAG, "onOptionsItemSelected: Export all graphs action selected.");
+            confirmBatchGraphExport();
+            return true;
         }
         return super.onOptionsItemSelected(item);
     }
@@ -413,18 +439,18 @@ public class VerlaufActivity extends AppCompatActivity
 
     private void initializeCityDistrictData() {
         Log.d(TAG, "initializeCityDistrictData: Starting.");
-        cities = new ArrayList<>();
-        cities.add(getString(R.string.hint_select_city));
-        cities.add("Braunschweig");
-        districts = new HashMap<>();
-        districts.put(getString(R.string.hint_select_city), Arrays.asList(getString(R.string.hint_select_district)));
-        districts.put("Braunschweig", Arrays.asList(
-                getString(R.string.hint_select_district),
-                "Innere Stadt", "Westliches Ringgebiet", "Östliches Ringgebiet", "Südliches Ringgebiet",
-                "Weststadt", "Heidberg-Melverode", "Südstadt", "Bebelhof",
-                "Nördliches Ringgebiet", "Braunschweig-Nord"
-        ));
-        Log.d(TAG, "initializeCityDistrictData: Finished.");
+        cityCatalog = CityCatalog.getInstance(this);
+        cityAdapter = CatalogSpinnerAdapter.forCities(this, cityCatalog);
+        districtAdapter = CatalogSpinnerAdapter.forDistricts(this, cityCatalog);
+        Log.d(TAG, "initializeCityDistrictData: Finished. Cities: " + cityCatalog.getCityCount() + ", Districts: " + cityCatalog.getTotalDistrictCount());
+    }
+
+    private int getSelectedCityId() {
+        return cityAdapter.getIdAtPosition(spinnerCity.getSelectedItemPosition());
+    }
+
+    private int getSelectedDistrictId() {
+        return districtAdapter.getIdAtPosition(spinnerDistrict.getSelectedItemPosition());
     }
 
     private void initializeTimePeriods() {
@@ -448,57 +474,50 @@ public class VerlaufActivity extends AppCompatActivity
         Log.d(TAG, "initializeValueColors: Finished setting up " + valueColors.size() + " value colors.");
     }
 
-    private void initializeBaseGraphDataPatterns() {
-        Log.d(TAG, "initializeBaseGraphDataPatterns: Creating base patterns for graph data.");
-        baseGraphDataPatterns.clear();
-        Random localRandom = new Random();
-        List<String> allDistrictsForPatterns = districts.get("Braunschweig");
-        if (allDistrictsForPatterns == null) {
-            Log.e(TAG, "initializeBaseGraphDataPatterns: 'Braunschweig' districts not found!");
-            allDistrictsForPatterns = new ArrayList<>(Arrays.asList(getString(R.string.hint_select_district), "default_district_fallback"));
+    /**
+     * Returns the history segment of a (metric, district) pair, creating it on first request.
+     * Until real history is shipped, a missing segment is filled once with a synthetic,
+     * deterministic one-year pattern. Mapped segments are kept in the process-wide LRU of
+     * {@link HistorySegmentStore}, so they survive activity recreation and only the pairs
+     * the user actually selects are ever generated.
+     * @return The segment, or null if it could neither be mapped nor written.
+     */
+    private HistorySegmentStore.Segment getOrCreateHistorySegment(int metric, int districtId, String dataKey) {
+        String seedName = districtId != CityCatalog.NO_ID ? cityCatalog.getDistrictName(districtId) : "default_district";
+        try {
+            // Called from the graph pipeline, CSV export and batch export threads at once; the store
+            // generates a missing segment only once.
+            return historyStore.openOrCreate(metric, districtId, TimeUnit.DAYS.toMillis(1), () -> {
+                Log.d(TAG, "getOrCreateHistorySegment: Generating pattern for '" + dataKey + "', district '" + seedName + "'.");
+                return synthesizeHistoryPattern(dataKey, seedName);
+            });
+        } catch (IOException e) {
+            Log.e(TAG, "getOrCreateHistorySegment: Failed to map or write segment for '" + dataKey + "', district " + districtId, e);
+            return null;
         }
-        for (String dataKey : ALL_VALUE_DATA_KEYS_FOR_GRAPH) {
-            for (String districtName : allDistrictsForPatterns) {
-                if (districtName.equals(getString(R.string.hint_select_district))) continue;
-                String patternKey = dataKey + "_" + districtName;
-                localRandom.setSeed(dataKey.hashCode() ^ districtName.hashCode());
-                float[] pattern = new float[MAX_DAYS_FOR_FULL_YEAR_GRAPH];
-                float trendFactor = (localRandom.nextFloat() - 0.5f) * 0.002f;
-                float baseValue = 0.3f + localRandom.nextFloat() * 0.4f;
-                for (int i = 0; i < pattern.length; i++) {
-                    float noise = (localRandom.nextFloat() - 0.5f) * 0.2f;
-                    pattern[i] = Math.max(0.05f, Math.min(0.95f, baseValue + trendFactor * i + noise));
-                }
-                baseGraphDataPatterns.put(patternKey, pattern);
-            }
-            String defaultPatternKey = dataKey + "_default_district";
-            if (!baseGraphDataPatterns.containsKey(defaultPatternKey)) {
-                localRandom.setSeed(dataKey.hashCode() ^ "default_district".hashCode());
-                float[] defaultPattern = new float[MAX_DAYS_FOR_FULL_YEAR_GRAPH];
-                float trendFactorDef = (localRandom.nextFloat() - 0.5f) * 0.002f;
-                float baseValueDef = 0.3f + localRandom.nextFloat() * 0.4f;
-                for (int i = 0; i < defaultPattern.length; i++) {
-                    float noiseDef = (localRandom.nextFloat() - 0.5f) * 0.2f;
-                    defaultPattern[i] = Math.max(0.05f, Math.min(0.95f, baseValueDef + trendFactorDef * i + noiseDef));
-                }
-                baseGraphDataPatterns.put(defaultPatternKey, defaultPattern);
-            }
+    }
+
+    private static float[] synthesizeHistoryPattern(String dataKey, String seedName) {
+        Random localRandom = new Random(dataKey.hashCode() ^ seedName.hashCode());
+        float[] pattern = new float[MAX_DAYS_FOR_FULL_YEAR_GRAPH];
+        float trendFactor = (localRandom.nextFloat() - 0.5f) * 0.002f;
+        float baseValue = 0.3f + localRandom.nextFloat() * 0.4f;
+        for (int i = 0; i < pattern.length; i++) {
+            float noise = (localRandom.nextFloat() - 0.5f) * 0.2f;
+            pattern[i] = Math.max(0.05f, Math.min(0.95f, baseValue + trendFactor * i + noise));
         }
-        Log.d(TAG, "initializeBaseGraphDataPatterns: Generated " + baseGraphDataPatterns.size() + " patterns.");
+        return pattern;
     }
 
 
     private void setupCitySpinner() {
         Log.d(TAG, "setupCitySpinner: Starting.");
-        ArrayAdapter<String> cityAdapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, cities);
-        cityAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
         spinnerCity.setAdapter(cityAdapter);
         spinnerCity.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
             @Override
             public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
-                String selectedCity = (String) parent.getItemAtPosition(position);
-                Log.i(TAG, "City Spinner: Item selected - '" + selectedCity + "'.");
-                updateDistrictSpinner(selectedCity);
+                Log.i(TAG, "City Spinner: Item selected - '" + parent.getItemAtPosition(position) + "' (ID " + id + ").");
+                updateDistrictSpinner(cityAdapter.getIdAtPosition(position));
                 handleSelectionChange();
             }
             @Override public void onNothingSelected(AdapterView<?> parent) { }
@@ -508,8 +527,8 @@ public class VerlaufActivity extends AppCompatActivity
 
     private void setupDistrictSpinner() {
         Log.d(TAG, "setupDistrictSpinner: Starting.");
-        String initialCity = cities.get(spinnerCity.getSelectedItemPosition());
-        updateDistrictSpinner(initialCity);
+        spinnerDistrict.setAdapter(districtAdapter);
+        updateDistrictSpinner(getSelectedCityId());
         spinnerDistrict.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
             @Override
             public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
@@ -520,17 +539,11 @@ public class VerlaufActivity extends AppCompatActivity
         Log.d(TAG, "setupDistrictSpinner: Finished.");
     }
 
-    private void updateDistrictSpinner(String selectedCity) {
-        Log.d(TAG, "updateDistrictSpinner: Updating for city '" + selectedCity + "'.");
-        List<String> districtList = districts.get(selectedCity);
-        if (districtList == null) {
-            districtList = new ArrayList<>(Arrays.asList(getString(R.string.hint_select_district)));
-        }
-        ArrayAdapter<String> districtAdapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, districtList);
-        districtAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
-        spinnerDistrict.setAdapter(districtAdapter);
+    private void updateDistrictSpinner(int cityId) {
+        Log.d(TAG, "updateDistrictSpinner: Updating for city ID " + cityId + ".");
+        districtAdapter.setCity(cityId);
         spinnerDistrict.setSelection(0);
-        Log.d(TAG, "updateDistrictSpinner: Adapter set. List size: " + districtList.size());
+        Log.d(TAG, "updateDistrictSpinner: Adapter now shows " + districtAdapter.getCount() + " entries.");
     }
 
     private void setupTimeOptionClicks() {
@@ -660,28 +673,19 @@ public class VerlaufActivity extends AppCompatActivity
 
     private void handleSelectionChange() {
         Log.i(TAG, "handleSelectionChange: Evaluating selections.");
-        String selectedCity = cities.get(spinnerCity.getSelectedItemPosition());
-        String selectedDistrictForDisplay = null;
-        String districtKeyForDataPattern = "default_district";
-        List<String> currentDistrictsList = districts.get(selectedCity);
-        if (currentDistrictsList != null && spinnerDistrict.getSelectedItemPosition() >= 0 &&
-                spinnerDistrict.getSelectedItemPosition() < currentDistrictsList.size()){
-            selectedDistrictForDisplay = currentDistrictsList.get(spinnerDistrict.getSelectedItemPosition());
-            if (!selectedDistrictForDisplay.equals(getString(R.string.hint_select_district))) {
-                districtKeyForDataPattern = selectedDistrictForDisplay;
-            }
-        } else if (currentDistrictsList != null && !currentDistrictsList.isEmpty()){
-            selectedDistrictForDisplay = currentDistrictsList.get(0);
-        }
+        int cityId = getSelectedCityId();
+        int districtId = getSelectedDistrictId();
+        String selectedCity = cityId != CityCatalog.NO_ID ? cityCatalog.getCityName(cityId) : null;
+        String selectedDistrictForDisplay = districtId != CityCatalog.NO_ID ? cityCatalog.getDistrictName(districtId) : null;
 
-        boolean isCityProperlySelectedForData = !getString(R.string.hint_select_city).equals(selectedCity);
+        boolean isCityProperlySelectedForData = cityId != CityCatalog.NO_ID;
         boolean isTimeSelectedForData = selectedTimeOption != null;
         boolean atLeastOneValueSelectedForData = !selectedGraphDataKeys.isEmpty();
 
         Log.d(TAG, "handleSelectionChange: CityProper=" + isCityProperlySelectedForData +
                 ", TimeSelected=" + (isTimeSelectedForData ? selectedTimeOption.getText().toString() : "null") +
                 ", ValuesSelectedCount=" + selectedGraphDataKeys.size() +
-                ", DistrictForDisplay='" + selectedDistrictForDisplay + "', DistrictForDataPattern='" + districtKeyForDataPattern + "'");
+                ", DistrictForDisplay='" + selectedDistrictForDisplay + "', DistrictId=" + districtId);
 
         if (simpleGraphView == null || txtGraphPlaceholderMessage == null) return;
 
@@ -690,33 +694,39 @@ public class VerlaufActivity extends AppCompatActivity
         simpleGraphView.setVisibility(View.VISIBLE);
 
         if (isCityProperlySelectedForData && isTimeSelectedForData && atLeastOneValueSelectedForData) {
-            Log.d(TAG, "handleSelectionChange: Conditions met. Displaying graph with data.");
+            Log.d(TAG, "handleSelectionChange: Conditions met. Building graph data in background.");
+            // Snapshot the selection on the main thread; the task must not touch views.
             String timePeriodText = selectedTimeOption.getText().toString();
-            List<SimpleGraphView.DatasetForGraph> datasetsToDisplay = new ArrayList<>();
-            for (String dataKey : selectedGraphDataKeys) {
-                float[] dataPoints = simpleGraphView.getDeterministicDataPoints(
-                        dataKey, districtKeyForDataPattern, timePeriodText, APPROX_DAYS_IN_MONTH);
-                Paint linePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-                linePaint.setStrokeWidth(simpleGraphView.dpToPx(2f));
-                linePaint.setStyle(Paint.Style.STROKE);
-                linePaint.setColor(valueColors.getOrDefault(dataKey, Color.GRAY));
-                datasetsToDisplay.add(simpleGraphView.new DatasetForGraph(dataPoints, linePaint, getDisplayableNameForKey_GraphValueOptions(dataKey)));
+            List<String> dataKeys = new ArrayList<>(selectedGraphDataKeys);
+            List<String> labels = new ArrayList<>(dataKeys.size());
+            List<Integer> colors = new ArrayList<>(dataKeys.size());
+            for (String dataKey : dataKeys) {
+                labels.add(getDisplayableNameForKey_GraphValueOptions(dataKey));
+                colors.add(valueColors.getOrDefault(dataKey, Color.GRAY));
             }
-            simpleGraphView.updateData(selectedCity, selectedDistrictForDisplay, datasetsToDisplay, timePeriodText);
+            graphPipeline.submit(request -> {
+                List<GraphRenderer.Dataset> datasetsToDisplay = new ArrayList<>(dataKeys.size());
+                for (int i = 0; i < dataKeys.size(); i++) {
+                    if (request.isStale()) return null; // A newer selection superseded this one
+                    String dataKey = dataKeys.get(i);
+                    HistorySeries series = simpleGraphView.getHistorySeries(
+                            dataKey, cityId, districtId, timePeriodText, APPROX_DAYS_IN_MONTH);
+                    datasetsToDisplay.add(new GraphRenderer.Dataset(series, colors.get(i), labels.get(i)));
+                }
+                return datasetsToDisplay;
+            }, datasets -> simpleGraphView.updateData(selectedCity, selectedDistrictForDisplay, datasets, timePeriodText));
         } else {
             Log.d(TAG, "handleSelectionChange: Conditions not met. Displaying empty graph structure.");
+            graphPipeline.cancel(); // Results of an earlier selection must not replace the empty graph
             String timePeriodForEmptyGraph = isTimeSelectedForData ? selectedTimeOption.getText().toString() : null;
-            String cityForEmptyGraph = (selectedCity != null && !getString(R.string.hint_select_city).equals(selectedCity)) ? selectedCity : null;
-            String districtForEmptyGraph = (selectedDistrictForDisplay != null && !getString(R.string.hint_select_district).equals(selectedDistrictForDisplay)) ?
-                    selectedDistrictForDisplay : null;
-            simpleGraphView.updateData(cityForEmptyGraph, districtForEmptyGraph, new ArrayList<>(), timePeriodForEmptyGraph);
+            simpleGraphView.updateData(selectedCity, selectedDistrictForDisplay, new ArrayList<>(), timePeriodForEmptyGraph);
         }
     }
 
     private void exportGraphWithOptions() {
-        if (simpleGraphView == null || simpleGraphView.getWidth() == 0 || simpleGraphView.getHeight() == 0) {
+        if (simpleGraphView == null) {
             Toast.makeText(this, "Graph is not available for export.", Toast.LENGTH_SHORT).show();
-            Log.w(TAG, "exportGraphWithOptions: SimpleGraphView is null or not measured.");
+            Log.w(TAG, "exportGraphWithOptions: SimpleGraphView is null.");
             return;
         }
 
@@ -725,6 +735,8 @@ public class VerlaufActivity extends AppCompatActivity
 
         RadioGroup rgFormat = dialogView.findViewById(R.id.rg_export_format);
         RadioButton rbPng = dialogView.findViewById(R.id.rb_format_png);
+        RadioButton rbSvg = dialogView.findViewById(R.id.rb_format_svg);
+        RadioButton rbPdf = dialogView.findViewById(R.id.rb_format_pdf);
         LinearLayout layoutJpegQuality = dialogView.findViewById(R.id.layout_jpeg_quality);
         SeekBar seekBarQuality = dialogView.findViewById(R.id.seekbar_jpeg_quality);
         TextView tvQualityValue = dialogView.findViewById(R.id.tv_jpeg_quality_value);
@@ -755,10 +767,13 @@ public class VerlaufActivity extends AppCompatActivity
                 .setView(dialogView)
                 .setPositiveButton(getString(R.string.export_button), (dialog, which) -> {
                     pendingExportFormat = rbPng.isChecked() ? Bitmap.CompressFormat.PNG : Bitmap.CompressFormat.JPEG;
+                    if (rbSvg.isChecked()) pendingExportVectorFormat = VectorGraphExport.FORMAT_SVG;
+                    else if (rbPdf.isChecked()) pendingExportVectorFormat = VectorGraphExport.FORMAT_PDF;
+                    else pendingExportVectorFormat = null;
                     pendingExportQuality = seekBarQuality.getProgress() + 1;
                     pendingExportIncludeLegend = cbIncludeLegend.isChecked();
 
-                    Log.d(TAG, "Export options: Format=" + pendingExportFormat + ", Quality=" + pendingExportQuality + ", IncludeLegend=" + pendingExportIncludeLegend);
+                    Log.d(TAG, "Export options: Format=" + (pendingExportVectorFormat != null ? pendingExportVectorFormat : pendingExportFormat) + ", Quality=" + pendingExportQuality + ", IncludeLegend=" + pendingExportIncludeLegend);
 
                     if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
                         saveGraphToMediaStore(pendingExportFormat, pendingExportQuality, pendingExportIncludeLegend);
@@ -775,139 +790,338 @@ public class VerlaufActivity extends AppCompatActivity
     }
 
 
+    /**
+     * Renders the current graph into a pooled bitmap through a {@link GraphRenderer}.
+     * The bitmap matches the on-screen graph if it has been measured; otherwise the default
+     * export size is used, so exporting does not depend on the view being laid out.
+     */
     private Bitmap getGraphBitmap(boolean includeLegend) {
-        if (simpleGraphView == null || simpleGraphView.getWidth() == 0 || simpleGraphView.getHeight() == 0) {
-            Log.e(TAG, "getGraphBitmap: GraphView is not ready or has no dimensions.");
+        if (simpleGraphView == null) {
+            Log.e(TAG, "getGraphBitmap: GraphView is not available.");
             return null;
         }
+        float density = getResources().getDisplayMetrics().density;
+        int width = simpleGraphView.getWidth();
+        int height = simpleGraphView.getHeight();
+        if (width == 0 || height == 0) {
+            width = (int) (EXPORT_DEFAULT_WIDTH_DP * density);
+            height = (int) (EXPORT_DEFAULT_HEIGHT_DP * density);
+        }
+        return renderGraphBitmap(width, height, density, includeLegend);
+    }
 
-        int legendHeight = 0;
-        TextPaint legendTextPaint = null;
-        float legendItemHeight = 0;
-        float legendPadding = simpleGraphView.dpToPx(10f);
-        float legendColorBoxSize = simpleGraphView.dpToPx(15f);
-        float legendTextOffset = simpleGraphView.dpToPx(5f);
-        float legendTextMarginBottom = simpleGraphView.dpToPx(4f);
-
-
-        if (includeLegend && simpleGraphView.datasetsToDraw != null && !simpleGraphView.datasetsToDraw.isEmpty()) {
-            legendTextPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
-            legendTextPaint.setTextSize(simpleGraphView.dpToPx(12f));
-            TypedValue legendTextColorVal = new TypedValue();
-            getTheme().resolveAttribute(android.R.attr.textColorPrimary, legendTextColorVal, true);
-            legendTextPaint.setColor(legendTextColorVal.resourceId != 0 ? ContextCompat.getColor(this, legendTextColorVal.resourceId) : legendTextColorVal.data);
-
-            Paint.FontMetrics fm = legendTextPaint.getFontMetrics();
-            legendItemHeight = (fm.descent - fm.ascent) + legendTextMarginBottom;
-            legendHeight = (int) (simpleGraphView.datasetsToDraw.size() * legendItemHeight + 2 * legendPadding - legendTextMarginBottom);
-            if (legendHeight < 0) legendHeight = 0;
+    /**
+     * Renders the current graph at an arbitrary resolution and density (e.g. 3840x2160 at 4x for a 4K export).
+     * @param height Height of the graph area; the legend is added below it.
+     */
+    private Bitmap renderGraphBitmap(int width, int height, float density, boolean includeLegend) {
+        GraphRenderer exportRenderer = simpleGraphView.getRenderer().withDensity(density);
+        int legendHeight = includeLegend ? exportRenderer.getLegendHeight() : 0;
+        Bitmap bitmap = graphBitmapPool.acquire(width, height + legendHeight);
+        exportRenderer.render(new Canvas(bitmap), width, height, legendHeight > 0);
+        Log.d(TAG, "renderGraphBitmap: Bitmap created " + width + "x" + (height + legendHeight) + " @" + density + "x. Include legend: " + includeLegend);
+        return bitmap;
+    }
+
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private void saveGraphToMediaStore(Bitmap.CompressFormat format, int quality, boolean includeLegend) {
+        String vectorFormat = pendingExportVectorFormat;
+        String fileName = buildGraphExportFileName(format, vectorFormat);
+        GraphExportJob.Destination destination = vectorFormat != null
+                ? GraphExportJob.MediaStoreDestination.forDownload(getContentResolver(), fileName, VectorGraphExport.getMimeType(vectorFormat))
+                : GraphExportJob.MediaStoreDestination.forImage(getContentResolver(), fileName,
+                        (format == Bitmap.CompressFormat.PNG) ? "image/png" : "image/jpeg");
+        startGraphExport(format, quality, includeLegend, vectorFormat, destination);
+    }
+
+    private void saveGraphToLegacyStorage(Bitmap.CompressFormat format, int quality, boolean includeLegend) {
+        String vectorFormat = pendingExportVectorFormat;
+        String fileName = buildGraphExportFileName(format, vectorFormat);
+        File baseDir = Environment.getExternalStoragePublicDirectory(
+                vectorFormat != null ? Environment.DIRECTORY_DOWNLOADS : Environment.DIRECTORY_PICTURES);
+        File stadtIQDir = new File(baseDir, "StadtIQ");
+        startGraphExport(format, quality, includeLegend, vectorFormat,
+                new GraphExportJob.FileDestination(this, new File(stadtIQDir, fileName)));
+    }
+
+    private String buildGraphExportFileName(Bitmap.CompressFormat format, String vectorFormat) {
+        String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
+        String fileExtension;
+        if (vectorFormat != null) fileExtension = VectorGraphExport.getFileExtension(vectorFormat);
+        else fileExtension = (format == Bitmap.CompressFormat.PNG) ? ".png" : ".jpg";
+        return "StadtIQ_Graph_" + timeStamp + fileExtension;
+    }
+
+    /**
+     * Prepares the export content and hands encoding and writing to a background {@link GraphExportJob}.
+     * Raster formats are rendered on the UI thread into a pooled bitmap; vector formats are
+     * written entirely on the export thread from a copy of the graph renderer.
+     * @param vectorFormat {@link VectorGraphExport#FORMAT_SVG}/{@link VectorGraphExport#FORMAT_PDF}, or null for PNG/JPEG.
+     */
+    private void startGraphExport(Bitmap.CompressFormat format, int quality, boolean includeLegend,
+                                  String vectorFormat, GraphExportJob.Destination destination) {
+        if (isExportRunning()) return;
+        GraphExportJob.Content content;
+        String successMessage;
+        if (vectorFormat != null) {
+            // Density 1: the vector renderer works directly in output units (SVG px, PDF points).
+            content = VectorGraphExport.create(vectorFormat, simpleGraphView.getRenderer().withDensity(1f), includeLegend);
+            successMessage = getString(R.string.graph_export_success_downloads);
+            Log.d(TAG, "startGraphExport: Starting vector export, Format=" + vectorFormat);
+        } else {
+            Bitmap bitmap = getGraphBitmap(includeLegend);
+            if (bitmap == null) {
+                Toast.makeText(this, getString(R.string.graph_export_failed) + " (Bitmap error)", Toast.LENGTH_LONG).show();
+                return;
+            }
+            content = GraphExportJob.bitmapContent(bitmap, format, quality, graphBitmapPool);
+            successMessage = getString(R.string.graph_export_success);
+            Log.d(TAG, "startGraphExport: Starting export, Format=" + format + ", Quality=" + quality);
         }
+        runExportJob(getString(R.string.menu_export_graph), content, destination, successMessage);
+    }
 
-        int totalBitmapHeight = simpleGraphView.getHeight() + legendHeight;
-        Bitmap bitmap = Bitmap.createBitmap(simpleGraphView.getWidth(), totalBitmapHeight, Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(bitmap);
+    private boolean isExportRunning() {
+        if ((currentExportJob != null && currentExportJob.isRunning())
+                || (currentBatchExport != null && currentBatchExport.isRunning())) {
+            Toast.makeText(this, getString(R.string.graph_export_already_running), Toast.LENGTH_SHORT).show();
+            Log.w(TAG, "isExportRunning: An export is already running.");
+            return true;
+        }
+        return false;
+    }
 
-        TypedValue bgValue = new TypedValue();
-        this.getTheme().resolveAttribute(android.R.attr.colorBackground, bgValue, true);
-        canvas.drawColor(bgValue.resourceId != 0 ? ContextCompat.getColor(this, bgValue.resourceId) : bgValue.data);
+    /**
+     * Starts an export job and shows a cancellable progress dialog until it ends.
+     */
+    private void runExportJob(String title, GraphExportJob.Content content, GraphExportJob.Destination destination, String successMessage) {
+        LinearLayout progressLayout = new LinearLayout(this);
+        progressLayout.setOrientation(LinearLayout.VERTICAL);
+        int padding = (int) simpleGraphView.dpToPx(24f);
+        progressLayout.setPadding(padding, padding / 2, padding, 0);
+        ProgressBar progressBar = new ProgressBar(this, null, android.R.attr.progressBarStyleHorizontal);
+        progressBar.setIndeterminate(true);
+        TextView progressText = new TextView(this);
+        progressText.setText(getString(R.string.export_in_progress));
+        progressLayout.addView(progressBar);
+        progressLayout.addView(progressText);
+
+        AlertDialog progressDialog = new MaterialAlertDialogBuilder(this)
+                .setTitle(title)
+                .setView(progressLayout)
+                .setCancelable(false)
+                .setNegativeButton(android.R.string.cancel, (dialog, which) -> {
+                    Log.d(TAG, "runExportJob: Export cancelled by user.");
+                    if (currentExportJob != null) currentExportJob.cancel();
+                })
+                .create();
+        progressDialog.show();
 
-        simpleGraphView.draw(canvas);
+        currentExportJob = GraphExportJob.start(content, destination, new GraphExportJob.Listener() {
+            @Override
+            public void onProgress(long bytesWritten) {
+                if (isFinishing() || isDestroyed()) return;
+                progressText.setText(getString(R.string.graph_export_progress, bytesWritten / 1024));
+            }
 
-        if (includeLegend && legendHeight > 0 && legendTextPaint != null) {
-            Log.d(TAG, "Drawing legend. Calculated Height: " + legendHeight);
-            float currentY = simpleGraphView.getHeight() + legendPadding;
-            float startX = legendPadding;
+            @Override
+            public void onSuccess(String location) {
+                // The job outlives the activity if it is destroyed mid-export; its window is gone then
+                if (isFinishing() || isDestroyed()) return;
+                progressDialog.dismiss();
+                String message = successMessage;
+                if (location != null) message += ": " + location;
+                Toast.makeText(VerlaufActivity.this, message, Toast.LENGTH_LONG).show();
+            }
 
-            for (SimpleGraphView.DatasetForGraph dataset : simpleGraphView.datasetsToDraw) {
-                if (dataset.label != null && dataset.linePaint != null) {
-                    Paint boxPaint = new Paint(dataset.linePaint);
-                    boxPaint.setStyle(Paint.Style.FILL);
-                    canvas.drawRect(startX, currentY, startX + legendColorBoxSize, currentY + legendColorBoxSize, boxPaint);
+            @Override
+            public void onFailure(IOException e) {
+                if (isFinishing() || isDestroyed()) return;
+                progressDialog.dismiss();
+                Toast.makeText(VerlaufActivity.this, getString(R.string.graph_export_failed) + ": " + e.getMessage(), Toast.LENGTH_LONG).show();
+            }
 
-                    float textBaselineY = currentY + (legendColorBoxSize / 2f) - (legendTextPaint.descent() + legendTextPaint.ascent()) / 2f;
-                    canvas.drawText(dataset.label, startX + legendColorBoxSize + legendTextOffset, textBaselineY, legendTextPaint);
-                    currentY += legendItemHeight;
-                }
+            @Override
+            public void onCancelled() {
+                if (isFinishing() || isDestroyed()) return;
+                progressDialog.dismiss();
+                Toast.makeText(VerlaufActivity.this, getString(R.string.graph_export_cancelled), Toast.LENGTH_SHORT).show();
             }
-        }
-        Log.d(TAG, "getGraphBitmap: Bitmap created. Include legend: " + includeLegend);
-        return bitmap;
+        });
     }
 
-    private void saveGraphToMediaStore(Bitmap.CompressFormat format, int quality, boolean includeLegend) {
-        Bitmap bitmap = getGraphBitmap(includeLegend);
-        if (bitmap == null) {
-            Toast.makeText(this, getString(R.string.graph_export_failed) + " (Bitmap error)", Toast.LENGTH_LONG).show();
+    /**
+     * Exports the recorded readings of the selected values for the current city, district and time
+     * period as CSV into Download/StadtIQ. Series are streamed in chunks on the export thread.
+     */
+    private void exportHistoryDataAsCsv() {
+        int cityId = getSelectedCityId();
+        if (cityId == CityCatalog.NO_ID || selectedTimeOption == null || selectedGraphDataKeys.isEmpty()) {
+            Toast.makeText(this, getString(R.string.placeholder_select_time_and_value), Toast.LENGTH_SHORT).show();
+            Log.w(TAG, "exportHistoryDataAsCsv: Selection incomplete, nothing to export.");
+            return;
+        }
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q
+                && ContextCompat.checkSelfPermission(this, Manifest.permission.WRITE_EXTERNAL_STORAGE) != PackageManager.PERMISSION_GRANTED) {
+            ActivityCompat.requestPermissions(this, new String[]{Manifest.permission.WRITE_EXTERNAL_STORAGE}, REQUEST_STORAGE_PERMISSION_CSV);
             return;
         }
+        if (isExportRunning()) return;
+
+        int districtId = getSelectedDistrictId();
+        String cityName = cityCatalog.getCityName(cityId);
+        String districtName = districtId != CityCatalog.NO_ID ? cityCatalog.getDistrictName(districtId) : null;
+        List<CsvHistoryExport.Series> series = new ArrayList<>(selectedGraphDataKeys.size());
+        for (String dataKey : selectedGraphDataKeys) {
+            series.add(new CsvHistoryExport.Series(dataKey, districtId, cityName, districtName));
+        }
+        String timePeriodText = selectedTimeOption.getText().toString();
+
         String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
-        String fileExtension = (format == Bitmap.CompressFormat.PNG) ? ".png" : ".jpg";
-        String mimeType = (format == Bitmap.CompressFormat.PNG) ? "image/png" : "image/jpeg";
-        String fileName = "StadtIQ_Graph_" + timeStamp + fileExtension;
-        ContentValues values = new ContentValues();
-        values.put(MediaStore.Images.Media.DISPLAY_NAME, fileName);
-        values.put(MediaStore.Images.Media.MIME_TYPE, mimeType);
-        values.put(MediaStore.Images.Media.RELATIVE_PATH, Environment.DIRECTORY_PICTURES + File.separator + "StadtIQ");
-        Uri uri = null;
-        try {
-            uri = getContentResolver().insert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, values);
-            if (uri != null) {
-                try (OutputStream outputStream = getContentResolver().openOutputStream(uri)) {
-                    if (outputStream != null) {
-                        bitmap.compress(format, quality, outputStream);
-                        Toast.makeText(this, getString(R.string.graph_export_success), Toast.LENGTH_LONG).show();
-                        Log.i(TAG, "saveGraphToMediaStore: Graph saved as " + format + " to " + uri.toString());
-                    } else {
-                        throw new IOException("Failed to get output stream for MediaStore URI.");
-                    }
-                }
-            } else {
-                throw new IOException("Failed to create new MediaStore record.");
-            }
-        } catch (IOException e) {
-            Log.e(TAG, "saveGraphToMediaStore: Error saving graph", e);
-            Toast.makeText(this, getString(R.string.graph_export_failed) + ": " + e.getMessage(), Toast.LENGTH_LONG).show();
-            if (uri != null) {
-                getContentResolver().delete(uri, null, null);
-            }
-        } finally {
-            bitmap.recycle();
+        String fileName = "StadtIQ_Data_" + timeStamp + ".csv";
+        GraphExportJob.Destination destination;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            destination = GraphExportJob.MediaStoreDestination.forDownload(getContentResolver(), fileName, CsvHistoryExport.MIME_TYPE);
+        } else {
+            File stadtIQDir = new File(Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS), "StadtIQ");
+            destination = new GraphExportJob.FileDestination(this, new File(stadtIQDir, fileName));
         }
+        Log.d(TAG, "exportHistoryDataAsCsv: Exporting " + series.size() + " series, period " + timePeriodText + ", district " + districtId);
+        long toMillis = System.currentTimeMillis();
+        long periodMillis = TimeUnit.DAYS.toMillis(simpleGraphView.getDaysForTimePeriod(timePeriodText, APPROX_DAYS_IN_MONTH));
+        int row = districtId != CityCatalog.NO_ID ? districtId : readingStore.overviewRow(cityId);
+        ReadingDatabase database = readingDatabase;
+        // Same sources as the graph, but the recorded readings instead of its normalized rollup points:
+        // persisted readings where a pair has some in the period, its history segment otherwise
+        CsvHistoryExport.SeriesSource source = s -> {
+            if (row != CityCatalog.NO_ID && database.hasReadings(row, s.metric, toMillis - periodMillis, toMillis)) {
+                return CsvHistoryExport.databaseReader(database, row, s.metric, toMillis - periodMillis, toMillis);
+            }
+            HistorySegmentStore.Segment segment = getOrCreateHistorySegment(s.metric, s.districtId, s.dataKey);
+            return segment != null && segment.size() > 0 ? CsvHistoryExport.segmentReader(segment, periodMillis) : null;
+        };
+        runExportJob(getString(R.string.menu_export_data), CsvHistoryExport.create(source, series),
+                destination, getString(R.string.data_export_success));
     }
 
-    private void saveGraphToLegacyStorage(Bitmap.CompressFormat format, int quality, boolean includeLegend) {
-        Bitmap bitmap = getGraphBitmap(includeLegend);
-        if (bitmap == null) {
-            Toast.makeText(this, getString(R.string.graph_export_failed) + " (Bitmap error)", Toast.LENGTH_LONG).show();
+    /**
+     * Asks before exporting the graph of every catalog district × value, since a batch writes many files.
+     */
+    private void confirmBatchGraphExport() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q
+                && ContextCompat.checkSelfPermission(this, Manifest.permission.WRITE_EXTERNAL_STORAGE) != PackageManager.PERMISSION_GRANTED) {
+            ActivityCompat.requestPermissions(this, new String[]{Manifest.permission.WRITE_EXTERNAL_STORAGE}, REQUEST_STORAGE_PERMISSION_BATCH);
             return;
         }
+        if (isExportRunning()) return;
+        int districtCount = cityCatalog.getTotalDistrictCount();
+        int valueCount = ALL_VALUE_DATA_KEYS_FOR_GRAPH.size();
+        StringBuilder cityNames = new StringBuilder();
+        for (int cityId = 0; cityId < cityCatalog.getCityCount(); cityId++) {
+            if (cityNames.length() > 0) cityNames.append(", ");
+            cityNames.append(cityCatalog.getCityName(cityId));
+        }
+        new MaterialAlertDialogBuilder(this)
+                .setTitle(getString(R.string.menu_export_all_graphs))
+                .setMessage(getString(R.string.batch_export_confirm, districtCount * valueCount, districtCount, valueCount, cityNames))
+                .setPositiveButton(getString(R.string.export_button), (dialog, which) -> startBatchGraphExport())
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+    }
+
+    /**
+     * Exports one PNG per catalog district and value into a new Pictures/StadtIQ/Report_&lt;timestamp&gt; folder.
+     * Graphs cover the selected time period (the full year if none is selected) and are rendered at the
+     * default export size on a {@link BatchGraphExport} worker pool.
+     */
+    private void startBatchGraphExport() {
+        List<BatchGraphExport.Item> items = new ArrayList<>();
+        for (int cityId = 0; cityId < cityCatalog.getCityCount(); cityId++) {
+            String cityName = cityCatalog.getCityName(cityId);
+            for (int i = 0; i < cityCatalog.getDistrictCount(cityId); i++) {
+                int districtId = cityCatalog.getDistrictId(cityId, i);
+                String districtName = cityCatalog.getDistrictName(districtId);
+                for (String dataKey : ALL_VALUE_DATA_KEYS_FOR_GRAPH) {
+                    items.add(new BatchGraphExport.Item(districtId, dataKey, cityName, districtName,
+                            getDisplayableNameForKey_GraphValueOptions(dataKey), valueColors.getOrDefault(dataKey, Color.GRAY)));
+                }
+            }
+        }
+        String timePeriodText = selectedTimeOption != null
+                ? selectedTimeOption.getText().toString() : getString(R.string.time_option_all);
         String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
-        String fileExtension = (format == Bitmap.CompressFormat.PNG) ? ".png" : ".jpg";
-        String fileName = "StadtIQ_Graph_" + timeStamp + fileExtension;
-        File picturesDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_PICTURES);
-        File stadtIQDir = new File(picturesDir, "StadtIQ");
-        if (!stadtIQDir.exists() && !stadtIQDir.mkdirs()) {
-            Log.e(TAG, "saveGraphToLegacyStorage: Failed to create directory: " + stadtIQDir.getAbsolutePath());
-            Toast.makeText(this, getString(R.string.graph_export_failed) + " (Dir error)", Toast.LENGTH_LONG).show();
-            bitmap.recycle();
-            return;
+        String folderName = "Report_" + timeStamp;
+        File legacyDir = new File(new File(Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_PICTURES), "StadtIQ"), folderName);
+        String relativePath = Environment.DIRECTORY_PICTURES + File.separator + "StadtIQ" + File.separator + folderName;
+
+        LinearLayout progressLayout = new LinearLayout(this);
+        progressLayout.setOrientation(LinearLayout.VERTICAL);
+        int padding = (int) simpleGraphView.dpToPx(24f);
+        progressLayout.setPadding(padding, padding / 2, padding, 0);
+        ProgressBar progressBar = new ProgressBar(this, null, android.R.attr.progressBarStyleHorizontal);
+        progressBar.setMax(items.size());
+        TextView progressText = new TextView(this);
+        progressText.setText(getString(R.string.batch_export_progress, 0, items.size()));
+        progressLayout.addView(progressBar);
+        progressLayout.addView(progressText);
+
+        AlertDialog progressDialog = new MaterialAlertDialogBuilder(this)
+                .setTitle(getString(R.string.menu_export_all_graphs))
+                .setView(progressLayout)
+                .setCancelable(false)
+                .setNegativeButton(android.R.string.cancel, (dialog, which) -> {
+                    Log.d(TAG, "startBatchGraphExport: Batch export cancelled by user.");
+                    if (currentBatchExport != null) currentBatchExport.cancel();
+                })
+                .create();
+        progressDialog.show();
+
+        float density = getResources().getDisplayMetrics().density;
+        Log.d(TAG, "startBatchGraphExport: Exporting " + items.size() + " graphs, period " + timePeriodText + " to " + relativePath);
+        currentBatchExport = BatchGraphExport.start(items, GraphRenderer.Style.fromTheme(this), density,
+                (int) (EXPORT_DEFAULT_WIDTH_DP * density), (int) (EXPORT_DEFAULT_HEIGHT_DP * density), timePeriodText,
+                item -> simpleGraphView.getHistorySeries(item.dataKey,
+                        cityCatalog.getCityOfDistrict(item.districtId), item.districtId, timePeriodText, APPROX_DAYS_IN_MONTH),
+                (item, fileName) -> {
+                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                        return new GraphExportJob.MediaStoreDestination(getContentResolver(),
+                                MediaStore.Images.Media.EXTERNAL_CONTENT_URI, relativePath, fileName, "image/png");
+                    }
+                    return new GraphExportJob.FileDestination(this, new File(legacyDir, fileName));
+                },
+                new BatchGraphExport.Listener() {
+                    @Override
+                    public void onProgress(int completed, int total) {
+                        if (isFinishing() || isDestroyed()) return;
+                        progressBar.setProgress(completed);
+                        progressText.setText(getString(R.string.batch_export_progress, completed, total));
+                    }
+
+                    @Override
+                    public void onFinished(BatchGraphExport.Summary summary) {
+                        if (isFinishing() || isDestroyed()) return;
+                        progressDialog.dismiss();
+                        showBatchExportSummary(summary, relativePath);
+                    }
+                });
+    }
+
+    private void showBatchExportSummary(BatchGraphExport.Summary summary, String relativePath) {
+        StringBuilder message = new StringBuilder();
+        if (summary.cancelled) {
+            message.append(getString(R.string.batch_export_summary_cancelled, summary.succeeded, summary.total));
+        } else {
+            message.append(getString(R.string.batch_export_summary, summary.succeeded, summary.total, summary.elapsedMillis / 1000f));
         }
-        File imageFile = new File(stadtIQDir, fileName);
-        try (FileOutputStream outputStream = new FileOutputStream(imageFile)) {
-            bitmap.compress(format, quality, outputStream);
-            outputStream.flush();
-            Toast.makeText(this, getString(R.string.graph_export_success) + ": " + imageFile.getAbsolutePath(), Toast.LENGTH_LONG).show();
-            Log.i(TAG, "saveGraphToLegacyStorage: Graph saved as " + format + " to " + imageFile.getAbsolutePath());
-            Intent mediaScanIntent = new Intent(Intent.ACTION_MEDIA_SCANNER_SCAN_FILE);
-            Uri contentUri = Uri.fromFile(imageFile);
-            mediaScanIntent.setData(contentUri);
-            this.sendBroadcast(mediaScanIntent);
-        } catch (IOException e) {
-            Log.e(TAG, "saveGraphToLegacyStorage: Error saving graph", e);
-            Toast.makeText(this, getString(R.string.graph_export_failed) + ": " + e.getMessage(), Toast.LENGTH_LONG).show();
-        } finally {
-            bitmap.recycle();
+        if (summary.succeeded > 0) message.append("\n").append(relativePath);
+        if (summary.failed > 0) {
+            message.append("\n\n").append(getString(R.string.batch_export_summary_failed, TextUtils.join(", ", summary.failedItems)));
         }
+        new MaterialAlertDialogBuilder(this)
+                .setTitle(getString(R.string.batch_export_summary_title))
+                .setMessage(message)
+                .setPositiveButton(android.R.string.ok, null)
+                .show();
     }
 
     @Override
@@ -927,240 +1141,186 @@ public class VerlaufActivity extends AppCompatActivity
                 Log.w(TAG, "onRequestPermissionsResult: WRITE_EXTERNAL_STORAGE permission denied.");
                 Toast.makeText(this, getString(R.string.permission_needed_for_storage), Toast.LENGTH_LONG).show();
             }
+        } else if (requestCode == REQUEST_STORAGE_PERMISSION_CSV) {
+            if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
+                Log.d(TAG, "onRequestPermissionsResult: WRITE_EXTERNAL_STORAGE permission granted for data export.");
+                exportHistoryDataAsCsv();
+            } else {
+                Log.w(TAG, "onRequestPermissionsResult: WRITE_EXTERNAL_STORAGE permission denied for data export.");
+                Toast.makeText(this, getString(R.string.permission_needed_for_storage), Toast.LENGTH_LONG).show();
+            }
+        } else if (requestCode == REQUEST_STORAGE_PERMISSION_BATCH) {
+            if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
+                Log.d(TAG, "onRequestPermissionsResult: WRITE_EXTERNAL_STORAGE permission granted for batch export.");
+                confirmBatchGraphExport();
+            } else {
+                Log.w(TAG, "onRequestPermissionsResult: WRITE_EXTERNAL_STORAGE permission denied for batch export.");
+                Toast.makeText(this, getString(R.string.permission_needed_for_storage), Toast.LENGTH_LONG).show();
+            }
         }
     }
 
 
     // Inner class SimpleGraphView
     public class SimpleGraphView extends View {
-        private Paint axisPaint, textPaint, gridPaint, dataPointPaintDefault, titleTextPaint;
-        private TextPaint emptyMessagePaint;
-        private List<DatasetForGraph> datasetsToDraw;
-        private String city, districtForTitle, viewTimePeriod;
-        private String emptyGraphMessage = "Select City, Time, and Value(s)";
-
-        public class DatasetForGraph {
-            float[] points; Paint linePaint; Paint pointPaint; String label;
-            public DatasetForGraph(float[] points, Paint linePaint, String label) {
-                this.points = points; this.linePaint = linePaint; this.label = label;
-                this.pointPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-                this.pointPaint.setStyle(Paint.Style.FILL);
-                this.pointPaint.setColor(this.linePaint != null ? this.linePaint.getColor() : ContextCompat.getColor(getContext(), R.color.colorPrimaryVariant));
-            }
-        }
+        // Draws the graph; the view only forwards data, size changes and invalidation.
+        private GraphRenderer renderer;
+        // Current width, read by the graph pipeline thread to pick the rollup tier of history queries
+        private volatile int plotWidthPx;
 
         public SimpleGraphView(Context context) { super(context); init(); }
         public SimpleGraphView(Context context, AttributeSet attrs) { super(context, attrs); init(); }
 
-        private int getColorFromAttr(int attrResId, int defaultColorResId) {
-            TypedValue typedValue = new TypedValue();
-            getContext().getTheme().resolveAttribute(attrResId, typedValue, true);
-            if (typedValue.resourceId != 0) {
-                return ContextCompat.getColor(getContext(), typedValue.resourceId);
-            } else if (typedValue.type >= TypedValue.TYPE_FIRST_COLOR_INT && typedValue.type <= TypedValue.TYPE_LAST_COLOR_INT) {
-                return typedValue.data;
-            }
-            Log.w(GRAPH_VIEW_TAG, "Failed to resolve attribute. Using default: " + getResources().getResourceEntryName(defaultColorResId));
-            return ContextCompat.getColor(getContext(), defaultColorResId);
-        }
-
         private void init() {
             Log.d(GRAPH_VIEW_TAG, "init: Initializing (" + this.hashCode() + ").");
-            datasetsToDraw = new ArrayList<>();
-            int axisColor = getColorFromAttr(R.attr.graphAxisColor, R.color.graph_axis);
-            int gridColor = getColorFromAttr(R.attr.graphGridColor, R.color.graph_grid);
-            int labelTextColor = getColorFromAttr(R.attr.graphTextColor, R.color.graph_text);
-            int titleTextColor = getColorFromAttr(android.R.attr.textColorPrimary, R.color.textColorPrimary);
-            int defaultPointColor = getColorFromAttr(com.google.android.material.R.attr.colorPrimaryVariant, R.color.colorPrimaryVariant);
-
-            axisPaint = new Paint(Paint.ANTI_ALIAS_FLAG); axisPaint.setColor(axisColor); axisPaint.setStrokeWidth(dpToPx(1.5f));
-            gridPaint = new Paint(Paint.ANTI_ALIAS_FLAG); gridPaint.setColor(gridColor); gridPaint.setStrokeWidth(dpToPx(0.5f)); gridPaint.setStyle(Paint.Style.STROKE);
-            textPaint = new Paint(Paint.ANTI_ALIAS_FLAG); textPaint.setColor(labelTextColor); textPaint.setTextSize(dpToPx(10f)); textPaint.setTextAlign(Paint.Align.CENTER);
-            titleTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG); titleTextPaint.setColor(titleTextColor); titleTextPaint.setTextSize(dpToPx(12f)); titleTextPaint.setTextAlign(Paint.Align.CENTER); titleTextPaint.setFakeBoldText(true);
-            dataPointPaintDefault = new Paint(Paint.ANTI_ALIAS_FLAG); dataPointPaintDefault.setStyle(Paint.Style.FILL); dataPointPaintDefault.setColor(defaultPointColor);
-
-            emptyMessagePaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
-            emptyMessagePaint.setColor(getColorFromAttr(android.R.attr.textColorSecondary, R.color.textColorSecondary));
-            emptyMessagePaint.setTextSize(dpToPx(14f));
-            emptyMessagePaint.setTextAlign(Paint.Align.CENTER);
+            renderer = new GraphRenderer(GraphRenderer.Style.fromTheme(getContext()), getResources().getDisplayMetrics().density);
+            renderer.setData(null, null, new ArrayList<>(), null, "Select City, Time, and Value(s)");
+        }
+
+        public GraphRenderer getRenderer() {
+            return renderer;
+        }
+
+        /**
+         * Selects how long series are reduced before drawing.
+         * @param mode {@link SeriesDecimator#MODE_LTTB} or {@link SeriesDecimator#MODE_MIN_MAX}.
+         */
+        public void setDecimationMode(int mode) {
+            renderer.setDecimationMode(mode);
+            invalidate();
+        }
+
+        /**
+         * Selects the data point marker, see {@link GraphRenderer#setMarkerShape(int)}.
+         */
+        public void setMarkerShape(int shape) {
+            renderer.setMarkerShape(shape);
+            invalidate();
         }
 
         public float dpToPx(float dp) {
             return TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, dp, getResources().getDisplayMetrics());
         }
 
-        public float[] getDeterministicDataPoints(String dataKey, String districtKeyForPattern, String timePeriodText, int daysInMonthConstant) {
-            Log.d(GRAPH_VIEW_TAG, "getDeterministicDataPoints: For " + dataKey + ", " + districtKeyForPattern + ", " + timePeriodText);
-            String patternKey = dataKey + "_" + (districtKeyForPattern != null ? districtKeyForPattern : "default_district");
-            float[] basePattern = baseGraphDataPatterns.get(patternKey);
-            if (basePattern == null) {
-                Log.w(GRAPH_VIEW_TAG, "No pattern for '" + patternKey + "'. Using default for " + dataKey);
-                basePattern = baseGraphDataPatterns.get(dataKey + "_default_district");
-                if(basePattern == null) return new float[0];
+        /**
+         * Returns the timestamped samples of a (metric, district) pair for the time period, with
+         * anomalous samples flagged for the graph. Readings persisted
+         * from sensor feeds are served by an indexed range query on the {@link ReadingDatabase};
+         * pairs without persisted history fall back to the most recent samples of their history segment,
+         * copied straight out of the memory-mapped segment. Call off the main thread.
+         * @param districtId The catalog district ID, or {@link CityCatalog#NO_ID} for the city-wide default.
+         */
+        public HistorySeries getHistorySeries(String dataKey, int cityId, int districtId, String timePeriodText, int daysInMonthConstant) {
+            Log.d(GRAPH_VIEW_TAG, "getHistorySeries: For " + dataKey + ", district " + districtId + ", " + timePeriodText);
+            int metric = ReadingStore.metricIndex(dataKey);
+            if (metric < 0) return HistorySeries.EMPTY;
+            int numDays = getDaysForTimePeriod(timePeriodText, daysInMonthConstant);
+
+            int row = districtId != CityCatalog.NO_ID ? districtId : readingStore.overviewRow(cityId);
+            HistorySeries persisted = row != CityCatalog.NO_ID ? readPersistedHistory(row, metric, numDays) : null;
+            if (persisted != null) return persisted.withAnomaliesFlagged();
+
+            HistorySegmentStore.Segment segment = getOrCreateHistorySegment(metric, districtId, dataKey);
+            if (segment == null || segment.size() == 0) return HistorySeries.EMPTY;
+            int numPointsToExtract = numDays;
+            if (numPointsToExtract <= 0) numPointsToExtract = Math.min(2, segment.size());
+            float[] tail = segment.readTail(numPointsToExtract);
+            // The tail ends with the segment's last sample; timestamps follow from the segment's cadence
+            long tailStartMillis = segment.startMillis + (long) (segment.size() - tail.length) * segment.stepMillis;
+            return HistorySeries.ofCadence(tail, tailStartMillis, segment.stepMillis).withAnomaliesFlagged();
+        }
+
+        /**
+         * Reads the persisted history of the last {@code numDays} days from the rollup tier that fits
+         * the plot width (bucket averages), or from the raw readings for short periods. Values are scaled to 0..1 between their minimum and maximum (the graph
+         * has a relative value axis).
+         * @return The samples, stamped with their reading times or bucket starts, or null if fewer than
+         *         two buckets or readings were persisted in the range.
+         */
+        private HistorySeries readPersistedHistory(int row, int metric, int numDays) {
+            long toMillis = System.currentTimeMillis();
+            long periodMillis = TimeUnit.DAYS.toMillis(numDays);
+            // Before the first layout, assume the graph spans the screen
+            int plotWidth = plotWidthPx > 0 ? plotWidthPx : getResources().getDisplayMetrics().widthPixels;
+            int tier = HistoryRollups.chooseTier(periodMillis, plotWidth);
+            long[] timestamps;
+            double[] values;
+            int count;
+            try {
+                if (tier == HistoryRollups.TIER_RAW) {
+                    ReadingDatabase.Range range = readingDatabase.queryRange(row, metric, toMillis - periodMillis, toMillis);
+                    timestamps = range.timestamps;
+                    values = range.values;
+                    count = range.count;
+                } else {
+                    ReadingDatabase.RollupRange range = readingDatabase.queryRollups(tier, row, metric, toMillis - periodMillis, toMillis);
+                    timestamps = range.bucketStarts;
+                    values = range.avg;
+                    count = range.count;
+                }
+            } catch (RuntimeException e) {
+                Log.e(GRAPH_VIEW_TAG, "readPersistedHistory: Query failed for row " + row + ", metric " + metric, e);
+                return null;
+            }
+            if (count < 2) return null;
+            double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < count; i++) {
+                min = Math.min(min, values[i]);
+                max = Math.max(max, values[i]);
+            }
+            double span = max - min;
+            float[] points = new float[count];
+            for (int i = 0; i < count; i++) {
+                points[i] = span > 0 ? (float) ((values[i] - min) / span) : 0.5f;
             }
-            int numPointsToExtract;
-            if (timePeriodText == null || timePeriodText.isEmpty()) numPointsToExtract = daysInMonthConstant;
-            else if (timePeriodText.equals(getContext().getString(R.string.time_option_all))) numPointsToExtract = MAX_DAYS_FOR_FULL_YEAR_GRAPH;
+            Log.d(GRAPH_VIEW_TAG, "readPersistedHistory: " + count + " points (tier " + tier + ") for row " + row + ", metric " + metric);
+            return new HistorySeries(Arrays.copyOf(timestamps, count), points);
+        }
+
+        // Days covered by a time period option ("1", "3", ... months, or "all")
+        private int getDaysForTimePeriod(String timePeriodText, int daysInMonthConstant) {
+            int numDays;
+            if (timePeriodText == null || timePeriodText.isEmpty()) numDays = daysInMonthConstant;
+            else if (timePeriodText.equals(getContext().getString(R.string.time_option_all))) numDays = MAX_DAYS_FOR_FULL_YEAR_GRAPH;
             else {
                 try {
-                    numPointsToExtract = Integer.parseInt(timePeriodText) * daysInMonthConstant;
+                    numDays = Integer.parseInt(timePeriodText) * daysInMonthConstant;
                 } catch (NumberFormatException e) {
-                    numPointsToExtract = daysInMonthConstant;
+                    numDays = daysInMonthConstant;
                 }
             }
-            numPointsToExtract = Math.min(numPointsToExtract, basePattern.length);
-            if (numPointsToExtract <= 0) numPointsToExtract = Math.min(2, basePattern.length > 0 ? basePattern.length : (basePattern.length == 1 ? 1 : 2) );
-            if (basePattern.length == 1 && numPointsToExtract > 0) numPointsToExtract = 1;
-            if (numPointsToExtract > basePattern.length || numPointsToExtract < 0) return new float[0];
-            return Arrays.copyOfRange(basePattern, 0, numPointsToExtract);
+            return numDays;
         }
 
-        public void updateData(String city, String districtForTitleDisplay, List<DatasetForGraph> datasets, String overallTimePeriod) {
-            this.city = city; this.districtForTitle = districtForTitleDisplay;
-            this.datasetsToDraw = new ArrayList<>(datasets); this.viewTimePeriod = overallTimePeriod;
-            if (datasetsToDraw.isEmpty()) {
+        public void updateData(String city, String districtForTitleDisplay, List<GraphRenderer.Dataset> datasets, String overallTimePeriod) {
+            String emptyGraphMessage = null;
+            if (datasets.isEmpty()) {
                 if (city == null) emptyGraphMessage = getString(R.string.placeholder_select_city_verlauf);
                 else if (overallTimePeriod == null || overallTimePeriod.isEmpty()) emptyGraphMessage = getString(R.string.placeholder_select_time);
                 else emptyGraphMessage = getString(R.string.placeholder_select_at_least_one_value);
             }
-            Log.i(GRAPH_VIEW_TAG, "updateData: Received " + datasetsToDraw.size() + " datasets. City=" + city);
+            renderer.setData(city, districtForTitleDisplay, datasets, overallTimePeriod, emptyGraphMessage);
+            Log.i(GRAPH_VIEW_TAG, "updateData: Received " + datasets.size() + " datasets. City=" + city);
+            renderer.layout(getWidth(), getHeight());
             invalidate();
         }
 
+        @Override
+        protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+            super.onSizeChanged(w, h, oldw, oldh);
+            Log.d(GRAPH_VIEW_TAG, "onSizeChanged: " + w + "x" + h);
+            plotWidthPx = w;
+            renderer.layout(w, h);
+        }
+
         @Override
         protected void onDraw(Canvas canvas) {
             super.onDraw(canvas);
             int width = getWidth(); int height = getHeight();
             if (width == 0 || height == 0) return;
-
-            TypedValue bgValue = new TypedValue();
-            getContext().getTheme().resolveAttribute(android.R.attr.colorBackground, bgValue, true);
-            canvas.drawColor(bgValue.resourceId != 0 ? ContextCompat.getColor(getContext(), bgValue.resourceId) : bgValue.data);
-
-
-            float paddingLeft = dpToPx(50f); float paddingRight = dpToPx(20f);
-            float paddingTop = dpToPx(50f); float paddingBottom = dpToPx(50f);
-            float graphWidth = width - paddingLeft - paddingRight;
-            float graphHeight = height - paddingTop - paddingBottom;
-
-            String title = "";
-            if (datasetsToDraw != null && !datasetsToDraw.isEmpty()) {
-                if (datasetsToDraw.size() == 1 && datasetsToDraw.get(0).label != null) title = datasetsToDraw.get(0).label + " Trend";
-                else {
-                    StringBuilder labels = new StringBuilder();
-                    for (int i = 0; i < datasetsToDraw.size(); i++) {
-                        labels.append(datasetsToDraw.get(i).label);
-                        if (i < datasetsToDraw.size() - 1) labels.append(" & ");
-                    }
-                    title = labels.toString() + " Trends";
-                }
-            } else title = "Historical Data Overview";
-            String contextSuffix = ""; boolean cityShown = false;
-            if (city != null && !city.equals(getString(R.string.hint_select_city))) {
-                contextSuffix += " in " + city;
-                cityShown = true;
-            }
-            if (districtForTitle != null && !districtForTitle.equals(getString(R.string.hint_select_district))) {
-                if (cityShown) contextSuffix += "/" + districtForTitle;
-                else contextSuffix += " in " + districtForTitle;
-            }
-            if (viewTimePeriod != null && !viewTimePeriod.isEmpty()) {
-                contextSuffix += ((cityShown || (districtForTitle != null && !districtForTitle.equals(getString(R.string.hint_select_district)))) ? " " : "") + "(" + viewTimePeriod + (viewTimePeriod.matches("\\d+") ? " mo" : "") + ")";
-            }
-            title += contextSuffix;
-            canvas.drawText(title, width / 2f, paddingTop / 2f + titleTextPaint.getTextSize() / 3f, titleTextPaint);
-
-            canvas.drawLine(paddingLeft, paddingTop, paddingLeft, height - paddingBottom, axisPaint);
-            textPaint.setTextAlign(Paint.Align.RIGHT);
-            for (int i = 0; i <= 4; i++) {
-                float yPos = paddingTop + (graphHeight * ((float)i / 4f));
-                canvas.drawText(String.format(Locale.getDefault(), "%.0f", 100f * (1f - (float)i/4f)), paddingLeft-dpToPx(6f), yPos+textPaint.getTextSize()/3f, textPaint);
-                if(i < 4) canvas.drawLine(paddingLeft, yPos, width - paddingRight, yPos, gridPaint);
-            }
-            textPaint.setTextAlign(Paint.Align.CENTER); canvas.save();
-            canvas.rotate(-90, paddingLeft/2f-dpToPx(4f), paddingTop+graphHeight/2f);
-            canvas.drawText("Normalized Value (%)", paddingLeft/2f-dpToPx(4f), paddingTop+graphHeight/2f + textPaint.getTextSize()/2f, textPaint);
-            canvas.restore();
-
-            canvas.drawLine(paddingLeft, height - paddingBottom, width - paddingRight, height - paddingBottom, axisPaint);
-            int xAxisScalingMaxPoints;
-            if (datasetsToDraw != null && !datasetsToDraw.isEmpty()) {
-                xAxisScalingMaxPoints = 0;
-                for (DatasetForGraph ds : datasetsToDraw) if (ds.points != null) xAxisScalingMaxPoints = Math.max(xAxisScalingMaxPoints, ds.points.length);
-                if (xAxisScalingMaxPoints == 0) xAxisScalingMaxPoints = 1;
-            } else {
-                if (viewTimePeriod != null && viewTimePeriod.matches("\\d+")) {
-                    try { xAxisScalingMaxPoints = Integer.parseInt(viewTimePeriod) * APPROX_DAYS_IN_MONTH; }
-                    catch (NumberFormatException e) { xAxisScalingMaxPoints = APPROX_DAYS_IN_MONTH; }
-                } else if (viewTimePeriod != null && viewTimePeriod.equals(getContext().getString(R.string.time_option_all))) {
-                    xAxisScalingMaxPoints = MAX_DAYS_FOR_FULL_YEAR_GRAPH;
-                } else xAxisScalingMaxPoints = APPROX_DAYS_IN_MONTH;
-                if (xAxisScalingMaxPoints == 0) xAxisScalingMaxPoints = 1;
-            }
-            float xInterval = (xAxisScalingMaxPoints > 1) ? graphWidth / (xAxisScalingMaxPoints - 1) : graphWidth;
-            int numXLabels = Math.min(xAxisScalingMaxPoints, xAxisScalingMaxPoints <=5 ? xAxisScalingMaxPoints : 5);
-            if (xAxisScalingMaxPoints == 1) numXLabels = 1;
-            if (numXLabels == 0 && xAxisScalingMaxPoints > 0) numXLabels = 1;
-
-            for (int i = 0; i < numXLabels; i++) {
-                int dataIdx = (numXLabels <= 1 || xAxisScalingMaxPoints <=1 ) ? 0 : Math.round(i * (float)(xAxisScalingMaxPoints - 1) / (numXLabels - 1));
-                float xPos = paddingLeft + dataIdx * xInterval;
-                if (xAxisScalingMaxPoints == 1) xPos = paddingLeft + graphWidth / 2f;
-                String xLabel = "T" + (dataIdx + 1);
-                if (this.viewTimePeriod != null && !this.viewTimePeriod.isEmpty()) {
-                    if (this.viewTimePeriod.equals(getContext().getString(R.string.time_option_all))) xLabel = "Seg." + (dataIdx + 1);
-                    else if (this.viewTimePeriod.matches("\\d+")) {
-                        try {
-                            int totalMonths = Integer.parseInt(this.viewTimePeriod);
-                            int actualPointsToConsiderForLabeling = (datasetsToDraw != null && !datasetsToDraw.isEmpty() && datasetsToDraw.get(0).points != null) ? datasetsToDraw.get(0).points.length : xAxisScalingMaxPoints;
-                            if (actualPointsToConsiderForLabeling > totalMonths && actualPointsToConsiderForLabeling <= totalMonths * APPROX_DAYS_IN_MONTH * 1.2) xLabel = "Day " + (dataIdx + 1);
-                            else if (actualPointsToConsiderForLabeling == totalMonths || (datasetsToDraw != null && datasetsToDraw.isEmpty() && xAxisScalingMaxPoints == totalMonths)) xLabel = "Mo " + (dataIdx +1);
-                        } catch (NumberFormatException e) { /* Keep default */ }
-                    }
-                }
-                canvas.drawText(xLabel, xPos, height - paddingBottom + dpToPx(15f), textPaint);
-            }
-            String xAxisTitle = getContext().getString(R.string.graph_x_axis_label_time);
-            canvas.drawText(xAxisTitle, paddingLeft + graphWidth / 2f, height - paddingBottom + dpToPx(35f), textPaint);
-
-            if (datasetsToDraw != null && !datasetsToDraw.isEmpty()) {
-                for (DatasetForGraph dataset : datasetsToDraw) {
-                    if (dataset.points == null || dataset.points.length == 0) continue;
-                    Path currentPath = new Path();
-                    int currentDatasetPointCount = dataset.points.length;
-                    float currentXInterval = (currentDatasetPointCount > 1) ? graphWidth / (currentDatasetPointCount - 1) : graphWidth;
-                    for (int i = 0; i < currentDatasetPointCount; i++) {
-                        float x = paddingLeft + i * currentXInterval;
-                        if (currentDatasetPointCount == 1) x = paddingLeft + graphWidth / 2f;
-                        float y = paddingTop + (1 - dataset.points[i]) * graphHeight;
-                        if (i == 0) currentPath.moveTo(x, y); else currentPath.lineTo(x, y);
-                        canvas.drawCircle(x, y, dpToPx(3.5f), dataset.pointPaint != null ? dataset.pointPaint : dataPointPaintDefault);
-                    }
-                    if (currentDatasetPointCount > 1) canvas.drawPath(currentPath, dataset.linePaint);
-                }
-            } else {
-                emptyMessagePaint.setTextAlign(Paint.Align.CENTER);
-                float textMaxWidth = graphWidth - dpToPx(20f);
-                if (textMaxWidth <= 0) textMaxWidth = width - dpToPx(40f);
-
-                if (textMaxWidth > 0 && graphHeight > 0) {
-                    StaticLayout staticLayout = StaticLayout.Builder.obtain(
-                                    emptyGraphMessage, 0, emptyGraphMessage.length(),
-                                    emptyMessagePaint, (int) textMaxWidth)
-                            .setAlignment(Layout.Alignment.ALIGN_CENTER)
-                            .setLineSpacing(0, 1.0f)
-                            .setIncludePad(false)
-                            .build();
-                    float textX = paddingLeft + (graphWidth - staticLayout.getWidth()) / 2f;
-                    float textY = paddingTop + (graphHeight - staticLayout.getHeight()) / 2f;
-                    canvas.save();
-                    canvas.translate(textX, textY);
-                    staticLayout.draw(canvas);
-                    canvas.restore();
-                } else {
-                    canvas.drawText(emptyGraphMessage, paddingLeft + graphWidth / 2f, paddingTop + graphHeight / 2f, emptyMessagePaint);
-                }
-            }
+            // No-op unless a change was not laid out yet (e.g. a mode switch)
+            renderer.layout(width, height);
+            renderer.draw(canvas);
         }
     }
 
@@ -1168,5 +1328,13 @@ public class VerlaufActivity extends AppCompatActivity
     @Override protected void onStart() { super.onStart(); Log.d(TAG, "onStart"); }
     @Override protected void onPause() { super.onPause(); Log.d(TAG, "onPause"); }
     @Override protected void onStop() { super.onStop(); Log.d(TAG, "onStop"); }
-    @Override protected void onDestroy() { super.onDestroy(); Log.d(TAG, "onDestroy"); }
+    @Override protected void onDestroy() {
+        graphPipeline.shutdown();
+        if (currentExportJob != null) currentExportJob.cancel();
+        if (currentBatchExport != null) currentBatchExport.cancel();
+        // A cancelled job may still release its bitmap afterwards; the closed pool recycles it
+        graphBitmapPool.close();
+        super.onDestroy();
+        Log.d(TAG, "onDestroy");
+    }
 }
\ No newline at end of file
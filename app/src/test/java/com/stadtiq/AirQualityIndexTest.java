@@ -0,0 +1,108 @@
+package com.stadtiq;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Local unit tests for {@link AirQualityIndex}.
+ */
+public class AirQualityIndexTest {
+
+    private static final int CO2 = ReadingStore.metricIndex(ReadingStore.KEY_CO2);
+    private static final int PM25 = ReadingStore.metricIndex(ReadingStore.KEY_PM25);
+    private static final int SO2 = ReadingStore.metricIndex(ReadingStore.KEY_SO2);
+    // Positions of the pollutants in AirQualityIndex.POLLUTANTS
+    private static final int P_PM25 = 0, P_SO2 = 1, P_CO2 = 2;
+
+    private CityCatalog catalog;
+    private ReadingStore store;
+    private AirQualityIndex aqi;
+    private int braunschweig;
+
+    @Before
+    public void setUp() throws IOException {
+        catalog = TestCatalogs.twoCities();
+        store = TestCatalogs.emptyStore(catalog);
+        aqi = new AirQualityIndex(catalog, store);
+        braunschweig = catalog.findCity("Braunschweig");
+    }
+
+    @Test
+    public void subIndex_interpolatesWithinBreakpoints() {
+        assertEquals(86, AirQualityIndex.subIndex(P_PM25, 28));
+        assertEquals(100, AirQualityIndex.subIndex(P_PM25, 35.4));
+        assertEquals(101, AirQualityIndex.subIndex(P_PM25, 35.5));
+        // Truncated to 9.0 before the lookup, so it does not fall between two segments
+        assertEquals(50, AirQualityIndex.subIndex(P_PM25, 9.05));
+        assertEquals(10, AirQualityIndex.subIndex(P_SO2, 7.5));
+        assertEquals(30, AirQualityIndex.subIndex(P_CO2, 480));
+        assertEquals(AirQualityIndex.MAX_INDEX, AirQualityIndex.subIndex(P_PM25, 1000));
+        assertEquals(AirQualityIndex.NO_INDEX, AirQualityIndex.subIndex(P_SO2, Double.NaN));
+    }
+
+    @Test
+    public void get_takesHighestSubIndex() {
+        int row = district("Innere Stadt");
+        store.set(row, CO2, 480);
+        store.set(row, PM25, 28);
+        store.set(row, SO2, 7.5);
+
+        assertEquals(86, aqi.get(row));
+        assertEquals(PM25, aqi.getDominantMetric(row));
+
+        store.set(row, SO2, 200);
+        assertEquals(157, aqi.get(row));
+        assertEquals(SO2, aqi.getDominantMetric(row));
+    }
+
+    @Test
+    public void get_missingReadings() {
+        int row = district("Weststadt");
+        assertEquals(AirQualityIndex.NO_INDEX, aqi.get(row));
+
+        store.set(row, CO2, 900);
+        assertEquals(75, aqi.get(row));
+        assertEquals(CO2, aqi.getDominantMetric(row));
+
+        store.set(row, CO2, Double.NaN);
+        assertEquals(AirQualityIndex.NO_INDEX, aqi.get(row));
+    }
+
+    @Test
+    public void rankDistricts_worstFirstAndUpdated() {
+        store.set(district("Innere Stadt"), PM25, 28);
+        store.set(district("Weststadt"), PM25, 11);
+        store.set(district("Südstadt"), PM25, 28);
+        // Bebelhof has no reading and is left out
+        store.set(district("Stadtmitte"), PM25, 200);
+
+        assertArrayEquals(new int[] { district("Innere Stadt"), district("Südstadt"), district("Weststadt") },
+                aqi.rankDistricts(braunschweig));
+
+        store.set(district("Weststadt"), PM25, 60);
+        assertArrayEquals(new int[] { district("Weststadt"), district("Innere Stadt"), district("Südstadt") },
+                aqi.rankDistricts(braunschweig));
+    }
+
+    @Test
+    public void category_matchesBands() {
+        assertEquals(-1, AirQualityIndex.category(AirQualityIndex.NO_INDEX));
+        assertEquals(0, AirQualityIndex.category(50));
+        assertEquals(1, AirQualityIndex.category(51));
+        assertEquals(4, AirQualityIndex.category(300));
+        assertEquals(5, AirQualityIndex.category(301));
+    }
+
+    private int district(String name) {
+        for (int city = 0; city < catalog.getCityCount(); city++) {
+            int id = catalog.findDistrict(city, name);
+            if (id != CityCatalog.NO_ID) return id;
+        }
+        throw new IllegalArgumentException(name);
+    }
+}
@@ -0,0 +1,83 @@
+package com.stadtiq;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit tests for {@link AnomalyDetector}.
+ */
+public class AnomalyDetectorTest {
+
+    @Test
+    public void flagSeries_flagsSpikeAfterWarmup() {
+        float[] values = noisySeries(new Random(1), 2000);
+        values[1500] += 40;
+
+        int[] flagged = AnomalyDetector.flagSeries(values);
+        assertTrue(Arrays.binarySearch(flagged, 1500) >= 0);
+        // Plain noise is only rarely flagged
+        assertTrue(flagged.length < values.length / 50);
+    }
+
+    @Test
+    public void flagSeries_ignoresSpikeDuringWarmup() {
+        float[] values = noisySeries(new Random(2), 50);
+        values[3] += 40;
+
+        assertEquals(0, AnomalyDetector.flagSeries(values).length);
+    }
+
+    @Test
+    public void flagSeries_constantSeriesIsNotFlagged() {
+        float[] values = new float[100];
+        Arrays.fill(values, 415f);
+
+        assertEquals(0, AnomalyDetector.flagSeries(values).length);
+    }
+
+    @Test
+    public void flagSeries_invariantToScaleAndShift() {
+        float[] values = noisySeries(new Random(3), 300);
+        values[120] -= 35;
+        values[250] += 50;
+        float[] scaled = new float[values.length];
+        for (int i = 0; i < values.length; i++) scaled[i] = values[i] * 0.01f - 3;
+
+        assertArrayEquals(AnomalyDetector.flagSeries(values), AnomalyDetector.flagSeries(scaled));
+    }
+
+    @Test
+    public void observe_flagsChangedReadings() {
+        ReadingStore store = new ReadingStore(2, 1);
+        AnomalyDetector detector = new AnomalyDetector(store.getRowCount());
+        int co2 = 0;
+        Random random = new Random(4);
+        for (int i = 0; i < 50; i++) {
+            store.set(0, co2, 420 + random.nextGaussian());
+            store.set(1, co2, 420 + random.nextGaussian());
+            detector.observe(store);
+        }
+        assertFalse(detector.isAnomalous(0, co2));
+
+        store.set(0, co2, 900);
+        assertTrue(detector.observe(store));
+        assertTrue(detector.isAnomalous(0, co2));
+        assertFalse(detector.isAnomalous(1, co2));
+        // Nothing changed since, so nothing is re-evaluated
+        assertFalse(detector.observe(store));
+        assertTrue(detector.isAnomalous(0, co2));
+    }
+
+    private static float[] noisySeries(Random random, int count) {
+        float[] values = new float[count];
+        for (int i = 0; i < count; i++) values[i] = (float) (100 + 5 * random.nextGaussian());
+        return values;
+    }
+}
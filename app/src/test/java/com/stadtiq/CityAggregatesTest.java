@@ -0,0 +1,113 @@
+package com.stadtiq;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Local unit tests for {@link CityAggregates}.
+ */
+public class CityAggregatesTest {
+
+    private static final int CO2 = 0;
+    private static final double EPSILON = 1e-9;
+
+    private CityCatalog catalog;
+    private ReadingStore store;
+    private CityAggregates aggregates;
+    private int braunschweig;
+
+    @Before
+    public void setUp() throws IOException {
+        catalog = TestCatalogs.twoCities();
+        store = TestCatalogs.emptyStore(catalog);
+        aggregates = new CityAggregates(catalog, store);
+        braunschweig = catalog.findCity("Braunschweig");
+    }
+
+    @Test
+    public void get_computesStatisticsAcrossDistricts() {
+        setCo2("Innere Stadt", 480);
+        setCo2("Weststadt", 412);
+        setCo2("Südstadt", 418);
+        setCo2("Bebelhof", 428);
+
+        CityAggregates.Stats stats = aggregates.get(braunschweig, CO2);
+        assertEquals(4, stats.count);
+        assertEquals(434.5, stats.mean, EPSILON);
+        assertEquals(423, stats.median, EPSILON);
+        assertEquals(412, stats.min, EPSILON);
+        assertEquals(480, stats.max, EPSILON);
+    }
+
+    @Test
+    public void get_leavesOutMissingReadingsAndOtherCities() {
+        setCo2("Innere Stadt", 480);
+        setCo2("Weststadt", 412);
+        store.set(catalog.findDistrict(catalog.findCity("Wolfsburg"), "Stadtmitte"), CO2, 100);
+
+        CityAggregates.Stats stats = aggregates.get(braunschweig, CO2);
+        assertEquals(2, stats.count);
+        assertEquals(446, stats.median, EPSILON);
+        assertEquals(0, aggregates.get(braunschweig, 1).count);
+    }
+
+    @Test
+    public void get_followsChangedReadings() {
+        setCo2("Innere Stadt", 480);
+        setCo2("Weststadt", 412);
+        setCo2("Südstadt", 418);
+        setCo2("Bebelhof", 428);
+        aggregates.get(braunschweig, CO2);
+
+        // One changed district is patched into the existing aggregate
+        setCo2("Innere Stadt", 400);
+        CityAggregates.Stats stats = aggregates.get(braunschweig, CO2);
+        assertEquals(414.5, stats.mean, EPSILON);
+        assertEquals(400, stats.min, EPSILON);
+        assertEquals(428, stats.max, EPSILON);
+
+        // A reading that disappears is removed
+        setCo2("Bebelhof", Double.NaN);
+        stats = aggregates.get(braunschweig, CO2);
+        assertEquals(3, stats.count);
+        assertEquals(412, stats.median, EPSILON);
+    }
+
+    @Test
+    public void incrementalUpdates_matchFullRecomputation() {
+        Random random = new Random(42);
+        int districts = catalog.getTotalDistrictCount();
+        for (int step = 0; step < 500; step++) {
+            int row = random.nextInt(districts);
+            store.set(row, CO2, random.nextInt(5) == 0 ? Double.NaN : 380 + random.nextInt(100));
+            CityAggregates.Stats incremental = aggregates.get(braunschweig, CO2);
+            CityAggregates.Stats full = new CityAggregates(catalog, store).get(braunschweig, CO2);
+            assertEquals(full.count, incremental.count);
+            if (full.count == 0) continue;
+            assertEquals(full.mean, incremental.mean, 1e-6);
+            assertEquals(full.median, incremental.median, EPSILON);
+            assertEquals(full.min, incremental.min, EPSILON);
+            assertEquals(full.max, incremental.max, EPSILON);
+        }
+    }
+
+    @Test
+    public void get_coversEveryMetric() {
+        double[] readings = new double[ReadingStore.METRIC_COUNT];
+        Arrays.fill(readings, 1.0);
+        store.setRow(catalog.findDistrict(braunschweig, "Weststadt"), readings);
+        for (int m = 0; m < ReadingStore.METRIC_COUNT; m++) {
+            assertEquals(1, aggregates.get(braunschweig, m).count);
+        }
+    }
+
+    private void setCo2(String district, double value) {
+        store.set(catalog.findDistrict(braunschweig, district), CO2, value);
+    }
+}
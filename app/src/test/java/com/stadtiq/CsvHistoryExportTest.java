@@ -0,0 +1,160 @@
+package com.stadtiq;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Local unit tests for {@link CsvHistoryExport}.
+ */
+public class CsvHistoryExportTest {
+
+    private static final long START_MILLIS = Instant.parse("2024-02-29T23:59:58Z").toEpochMilli();
+
+    @Test
+    public void write_quotesFieldsAndAddsUnit() throws IOException {
+        CsvHistoryExport.Series series = new CsvHistoryExport.Series(ReadingStore.KEY_PM25, 3, "Halle \"Saale\"", "Nord, Alt");
+        String csv = write(Collections.singletonList(series), s -> samples(2), 16);
+
+        String[] lines = csv.split("\n");
+        assertEquals(CsvHistoryExport.HEADER, lines[0] + "\n");
+        assertEquals(3, lines.length);
+        assertEquals("2024-02-29T23:59:58Z,\"Halle \"\"Saale\"\"\",\"Nord, Alt\",\"PM2,5\",0.5,µg/m³", lines[1]);
+        assertEquals("2024-02-29T23:59:59Z,\"Halle \"\"Saale\"\"\",\"Nord, Alt\",\"PM2,5\",1.5,µg/m³", lines[2]);
+    }
+
+    @Test
+    public void write_leavesCityWideDistrictAndMissingValuesEmpty() throws IOException {
+        CsvHistoryExport.Series series = new CsvHistoryExport.Series(ReadingStore.KEY_CO2, CityCatalog.NO_ID, "Wolfsburg", null);
+        CsvHistoryExport.SampleReader reader = new CsvHistoryExport.SampleReader() {
+            private boolean done;
+
+            @Override
+            public int read(long[] timestamps, double[] values) {
+                if (done) return 0;
+                done = true;
+                timestamps[0] = 0;
+                values[0] = Double.NaN;
+                return 1;
+            }
+        };
+        String csv = write(Collections.singletonList(series), s -> reader, 16);
+
+        assertEquals(CsvHistoryExport.HEADER + "1970-01-01T00:00:00Z,Wolfsburg,,CO₂,,ppm\n", csv);
+    }
+
+    @Test
+    public void write_streamsAcrossChunkBoundaries() throws IOException {
+        int sampleCount = 10;
+        int chunkSize = 3;
+        int[] largestRequest = new int[1];
+        List<CsvHistoryExport.Series> series = Arrays.asList(
+                new CsvHistoryExport.Series(ReadingStore.KEY_T, 0, "Braunschweig", "Weststadt"),
+                new CsvHistoryExport.Series("unknown", 0, "Braunschweig", "Weststadt"),
+                new CsvHistoryExport.Series(ReadingStore.KEY_RH, 0, "Braunschweig", "Weststadt"));
+        String csv = write(series, s -> {
+            if (s.dataKey.equals(ReadingStore.KEY_RH)) return null; // No history
+            CsvHistoryExport.SampleReader samples = samples(sampleCount);
+            return (timestamps, values) -> {
+                largestRequest[0] = Math.max(largestRequest[0], timestamps.length);
+                return samples.read(timestamps, values);
+            };
+        }, chunkSize);
+
+        String[] lines = csv.split("\n");
+        assertEquals(1 + sampleCount, lines.length);
+        assertEquals(chunkSize, largestRequest[0]);
+        for (int i = 0; i < sampleCount; i++) {
+            String timestamp = DateTimeFormatter.ISO_INSTANT.format(Instant.ofEpochMilli(START_MILLIS + i * 1000L));
+            assertEquals(timestamp + ",Braunschweig,Weststadt,T," + (i + 0.5) + ",°C", lines[1 + i]);
+        }
+    }
+
+    @Test
+    public void segmentReader_readsTailOfPeriodInChunks() throws IOException {
+        File directory = Files.createTempDirectory("history").toFile();
+        try {
+            HistorySegmentStore store = new HistorySegmentStore(directory);
+            long stepMillis = TimeUnit.DAYS.toMillis(1);
+            float[] pattern = new float[10];
+            for (int i = 0; i < pattern.length; i++) pattern[i] = 0.1f * i;
+            HistorySegmentStore.Segment segment = store.openOrCreate(0, 1, stepMillis, () -> pattern);
+
+            // A 7-day period covers the last 7 daily samples, read 3 at a time
+            CsvHistoryExport.SampleReader reader = CsvHistoryExport.segmentReader(segment, TimeUnit.DAYS.toMillis(7));
+            long[] timestamps = new long[3];
+            double[] values = new double[3];
+            int read = 0;
+            int count;
+            while ((count = reader.read(timestamps, values)) > 0) {
+                for (int i = 0; i < count; i++) {
+                    int index = 3 + read + i;
+                    assertEquals(segment.startMillis + index * stepMillis, timestamps[i]);
+                    assertEquals(Double.parseDouble(Float.toString(pattern[index])), values[i], 0);
+                }
+                read += count;
+            }
+            assertEquals(7, read);
+        } finally {
+            File[] files = directory.listFiles();
+            if (files != null) for (File file : files) file.delete();
+            directory.delete();
+        }
+    }
+
+    @Test
+    public void appendIsoUtc_matchesJavaTime() {
+        Random random = new Random(1);
+        long from = Instant.parse("1900-01-01T00:00:00Z").toEpochMilli();
+        long to = Instant.parse("2100-01-01T00:00:00Z").toEpochMilli();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            long time = from + (long) (random.nextDouble() * (to - from));
+            sb.setLength(0);
+            CsvHistoryExport.appendIsoUtc(sb, time);
+            String expected = DateTimeFormatter.ISO_INSTANT.format(Instant.ofEpochMilli(time).truncatedTo(ChronoUnit.SECONDS));
+            assertEquals(expected, sb.toString());
+        }
+        sb.setLength(0);
+        CsvHistoryExport.appendIsoUtc(sb, -1);
+        assertEquals("1969-12-31T23:59:59Z", sb.toString());
+    }
+
+    // Samples one second apart with values 0.5, 1.5, ..., handed out as requested
+    private static CsvHistoryExport.SampleReader samples(int count) {
+        return new CsvHistoryExport.SampleReader() {
+            private int next;
+
+            @Override
+            public int read(long[] timestamps, double[] values) {
+                int length = Math.min(timestamps.length, count - next);
+                for (int i = 0; i < length; i++) {
+                    timestamps[i] = START_MILLIS + (next + i) * 1000L;
+                    values[i] = next + i + 0.5;
+                }
+                next += length;
+                return length;
+            }
+        };
+    }
+
+    private static String write(List<CsvHistoryExport.Series> series, CsvHistoryExport.SeriesSource source, int chunkSize)
+            throws IOException {
+        StringWriter out = new StringWriter();
+        CsvHistoryExport.write(out, source, series, chunkSize);
+        return out.toString();
+    }
+}
@@ -0,0 +1,93 @@
+package com.stadtiq;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit tests for {@link DerivedMetrics}, through the {@link ReadingStore} that uses it.
+ */
+public class DerivedMetricsTest {
+
+    private static final int T = ReadingStore.metricIndex(ReadingStore.KEY_T);
+    private static final int RH = ReadingStore.metricIndex(ReadingStore.KEY_RH);
+    private static final int P = ReadingStore.metricIndex(ReadingStore.KEY_P);
+    private static final int TD = ReadingStore.metricIndex(ReadingStore.KEY_TD);
+    private static final int ABS_HUMIDITY = ReadingStore.metricIndex(ReadingStore.KEY_ABS_HUMIDITY);
+    private static final int CO2 = ReadingStore.metricIndex(ReadingStore.KEY_CO2);
+
+    private ReadingStore store;
+
+    @Before
+    public void setUp() {
+        store = new ReadingStore(2, 1);
+    }
+
+    @Test
+    public void get_derivesFromTemperatureAndHumidity() {
+        store.set(0, T, 20);
+        store.set(0, RH, 50);
+
+        assertEquals(9.26, store.get(0, TD), 0.01);
+        assertEquals(8.62, store.get(0, ABS_HUMIDITY), 0.01);
+        // Saturated air is at its dew point
+        store.set(0, RH, 100);
+        assertEquals(20, store.get(0, TD), 1e-9);
+    }
+
+    @Test
+    public void get_followsChangedInputsOnly() {
+        store.set(0, T, 20);
+        store.set(0, RH, 50);
+        double absHumidity = store.get(0, ABS_HUMIDITY);
+
+        store.set(0, CO2, 480);
+        assertEquals(absHumidity, store.get(0, ABS_HUMIDITY), 0);
+
+        // Moist air at sea level holds slightly more vapour than the plain Magnus formula says
+        store.set(0, P, 1013.25);
+        double withPressure = store.get(0, ABS_HUMIDITY);
+        assertTrue(withPressure > absHumidity);
+        assertEquals(absHumidity, withPressure, 0.1);
+        // The dew point does not depend on the pressure
+        assertEquals(9.26, store.get(0, TD), 0.01);
+
+        store.set(0, T, 25);
+        assertTrue(store.get(0, ABS_HUMIDITY) > withPressure);
+        // Other rows are independent
+        assertTrue(Double.isNaN(store.get(1, TD)));
+    }
+
+    @Test
+    public void get_missingInputIsMissing() {
+        store.set(0, T, 20);
+        assertTrue(Double.isNaN(store.get(0, TD)));
+        assertTrue(Double.isNaN(store.get(0, ABS_HUMIDITY)));
+
+        store.set(0, RH, 50);
+        store.set(0, T, Double.NaN);
+        assertTrue(Double.isNaN(store.get(0, TD)));
+    }
+
+    @Test
+    public void writesToDerivedMetricsAreIgnored() {
+        long version = store.getVersion();
+        store.set(0, TD, 12);
+
+        assertTrue(Double.isNaN(store.get(0, TD)));
+        assertEquals(version, store.getVersion());
+    }
+
+    @Test
+    public void getRow_fillsDerivedColumns() {
+        store.set(0, T, 20);
+        store.set(0, RH, 50);
+        double[] row = new double[ReadingStore.METRIC_COUNT];
+        store.getRow(0, row);
+
+        assertEquals(store.get(0, TD), row[TD], 0);
+        assertEquals(store.get(0, ABS_HUMIDITY), row[ABS_HUMIDITY], 0);
+    }
+}
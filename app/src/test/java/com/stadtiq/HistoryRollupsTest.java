@@ -0,0 +1,86 @@
+package com.stadtiq;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Local unit tests for {@link HistoryRollups}.
+ */
+public class HistoryRollupsTest {
+
+    // Plot width of a typical phone graph, in pixels
+    private static final int PHONE_PLOT_WIDTH = 1000;
+
+    @Test
+    public void chooseTier_followsPlotResolution() {
+        assertEquals(HistoryRollups.TIER_RAW, HistoryRollups.chooseTier(days(7), PHONE_PLOT_WIDTH));
+        assertEquals(HistoryRollups.TIER_HOURLY, HistoryRollups.chooseTier(days(30), PHONE_PLOT_WIDTH));
+        assertEquals(HistoryRollups.TIER_DAILY, HistoryRollups.chooseTier(days(90), PHONE_PLOT_WIDTH));
+        assertEquals(HistoryRollups.TIER_DAILY, HistoryRollups.chooseTier(days(365), PHONE_PLOT_WIDTH));
+        assertEquals(HistoryRollups.TIER_MONTHLY, HistoryRollups.chooseTier(days(3 * 365), PHONE_PLOT_WIDTH));
+    }
+
+    @Test
+    public void chooseTier_narrowPlotUsesCoarserTiers() {
+        assertEquals(HistoryRollups.TIER_DAILY, HistoryRollups.chooseTier(days(30), 400));
+        assertEquals(HistoryRollups.TIER_MONTHLY, HistoryRollups.chooseTier(days(2 * 365), 400));
+        // Not laid out yet: still a usable tier
+        assertEquals(HistoryRollups.TIER_MONTHLY, HistoryRollups.chooseTier(days(365), 0));
+    }
+
+    @Test
+    public void bucketStart_truncatesToHourAndDay() {
+        long time = Instant.parse("2024-02-29T13:45:30.250Z").toEpochMilli();
+        assertEquals(Instant.parse("2024-02-29T13:00:00Z").toEpochMilli(), HistoryRollups.bucketStart(HistoryRollups.TIER_HOURLY, time));
+        assertEquals(Instant.parse("2024-02-29T00:00:00Z").toEpochMilli(), HistoryRollups.bucketStart(HistoryRollups.TIER_DAILY, time));
+        // Before the epoch, buckets still start at the earlier boundary
+        long beforeEpoch = Instant.parse("1969-12-31T23:30:00Z").toEpochMilli();
+        assertEquals(Instant.parse("1969-12-31T23:00:00Z").toEpochMilli(), HistoryRollups.bucketStart(HistoryRollups.TIER_HOURLY, beforeEpoch));
+        assertEquals(Instant.parse("1969-12-31T00:00:00Z").toEpochMilli(), HistoryRollups.bucketStart(HistoryRollups.TIER_DAILY, beforeEpoch));
+    }
+
+    @Test
+    public void bucketStart_monthlyMatchesCalendar() {
+        assertEquals(Instant.parse("2024-02-01T00:00:00Z").toEpochMilli(),
+                HistoryRollups.bucketStart(HistoryRollups.TIER_MONTHLY, Instant.parse("2024-02-29T23:59:59.999Z").toEpochMilli()));
+        assertEquals(Instant.parse("2000-03-01T00:00:00Z").toEpochMilli(),
+                HistoryRollups.bucketStart(HistoryRollups.TIER_MONTHLY, Instant.parse("2000-03-01T00:00:00Z").toEpochMilli()));
+        assertEquals(Instant.parse("1969-12-01T00:00:00Z").toEpochMilli(),
+                HistoryRollups.bucketStart(HistoryRollups.TIER_MONTHLY, Instant.parse("1969-12-15T08:00:00Z").toEpochMilli()));
+
+        Random random = new Random(1);
+        long from = Instant.parse("1900-01-01T00:00:00Z").toEpochMilli();
+        long to = Instant.parse("2100-01-01T00:00:00Z").toEpochMilli();
+        for (int i = 0; i < 10_000; i++) {
+            long time = from + (long) (random.nextDouble() * (to - from));
+            LocalDate date = Instant.ofEpochMilli(time).atZone(ZoneOffset.UTC).toLocalDate();
+            long expected = date.withDayOfMonth(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+            assertEquals("at " + time, expected, HistoryRollups.bucketStart(HistoryRollups.TIER_MONTHLY, time));
+            long expectedIndex = ChronoUnit.MONTHS.between(LocalDate.of(1970, 1, 1), date.withDayOfMonth(1));
+            assertEquals("at " + time, expectedIndex, HistoryRollups.bucketIndex(HistoryRollups.TIER_MONTHLY, time));
+        }
+    }
+
+    @Test
+    public void bucketStart_rejectsRawTier() {
+        try {
+            HistoryRollups.bucketStart(HistoryRollups.TIER_RAW, 0);
+            fail("Raw readings have no buckets");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+    }
+
+    private static long days(int days) {
+        return TimeUnit.DAYS.toMillis(days);
+    }
+}
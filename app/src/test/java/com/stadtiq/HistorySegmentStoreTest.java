@@ -0,0 +1,94 @@
+package com.stadtiq;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Local unit tests for {@link HistorySegmentStore}.
+ */
+public class HistorySegmentStoreTest {
+
+    private static final long STEP_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private File directory;
+    private HistorySegmentStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("history").toFile();
+        store = new HistorySegmentStore(directory);
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) for (File file : files) file.delete();
+        directory.delete();
+    }
+
+    @Test
+    public void openOrCreate_generatesOnceAndReusesSegment() throws IOException {
+        AtomicInteger generated = new AtomicInteger();
+        HistorySegmentStore.Generator generator = () -> {
+            generated.incrementAndGet();
+            return new float[] { 0.1f, 0.2f, 0.3f };
+        };
+
+        HistorySegmentStore.Segment first = store.openOrCreate(0, 3, STEP_MILLIS, generator);
+        HistorySegmentStore.Segment second = store.openOrCreate(0, 3, STEP_MILLIS, generator);
+
+        assertEquals(1, generated.get());
+        assertEquals(3, second.size());
+        assertEquals(0.3f, second.get(2), 0);
+        assertEquals(first.startMillis, second.startMillis);
+        assertEquals(STEP_MILLIS, second.stepMillis);
+    }
+
+    @Test
+    public void openOrCreate_concurrentCallersWriteSegmentOnce() throws Exception {
+        int threads = 5;
+        float[] pattern = new float[365];
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<HistorySegmentStore.Segment>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                Callable<HistorySegmentStore.Segment> task = () -> {
+                    start.await();
+                    return store.openOrCreate(1, 7, STEP_MILLIS, () -> pattern);
+                };
+                results.add(executor.submit(task));
+            }
+            start.countDown();
+            for (Future<HistorySegmentStore.Segment> result : results) {
+                assertEquals(pattern.length, result.get().size());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(pattern.length, store.open(1, 7).size());
+    }
+
+    @Test
+    public void openOrCreate_emptyPatternWritesNothing() throws IOException {
+        assertNull(store.openOrCreate(2, 0, STEP_MILLIS, () -> new float[0]));
+        assertNull(store.open(2, 0));
+    }
+}
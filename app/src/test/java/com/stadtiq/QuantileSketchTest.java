@@ -0,0 +1,115 @@
+package com.stadtiq;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit tests for {@link QuantileSketch}.
+ */
+public class QuantileSketchTest {
+
+    private static final int VALUES = 200_000;
+    private static final double[] QUANTILES = { 0.01, 0.1, 0.5, 0.9, 0.99 };
+    // Allowed error of an estimate, in ranks (share of all values)
+    private static final double RANK_TOLERANCE = 0.005;
+
+    @Test
+    public void quantile_tracksExactQuantiles() {
+        double[] values = skewedValues(new Random(1), VALUES);
+        QuantileSketch sketch = new QuantileSketch();
+        for (double value : values) sketch.add(value);
+
+        assertEquals(VALUES, sketch.count());
+        assertWithinRank(values, sketch);
+    }
+
+    @Test
+    public void merge_equalsSketchOfUnion() {
+        Random random = new Random(2);
+        double[] values = skewedValues(random, VALUES);
+        // Districts of very different sizes, as in a real city
+        QuantileSketch city = new QuantileSketch();
+        int from = 0;
+        while (from < values.length) {
+            int to = Math.min(values.length, from + 1 + random.nextInt(20_000));
+            QuantileSketch district = new QuantileSketch();
+            for (int i = from; i < to; i++) district.add(values[i]);
+            city.merge(district);
+            from = to;
+        }
+
+        assertEquals(VALUES, city.count());
+        assertWithinRank(values, city);
+    }
+
+    @Test
+    public void bytes_roundTrip() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (double value : skewedValues(new Random(3), 10_000)) sketch.add(value);
+
+        QuantileSketch restored = QuantileSketch.fromBytes(sketch.toBytes());
+        assertEquals(sketch.count(), restored.count());
+        for (double q : QUANTILES) assertEquals(sketch.quantile(q), restored.quantile(q), 0);
+    }
+
+    @Test
+    public void emptyAndSingleValue() {
+        QuantileSketch sketch = new QuantileSketch();
+        assertTrue(Double.isNaN(sketch.quantile(0.5)));
+        assertTrue(Double.isNaN(sketch.cdf(1)));
+
+        sketch.add(42);
+        assertEquals(42, sketch.quantile(0.5), 0);
+        assertEquals(1, sketch.cdf(42), 0);
+        assertEquals(0, sketch.cdf(41), 0);
+    }
+
+    @Test
+    public void quantile_singleCentroid_returnsMinAndMaxAtBounds() {
+        // One centroid of 50 values around 20, seen between 10 and 30
+        ByteBuffer bytes = ByteBuffer.allocate(4 + 8 + 8 + 4 + 16);
+        bytes.putInt(1).putDouble(10).putDouble(30).putInt(1).putDouble(20).putDouble(50);
+        QuantileSketch sketch = QuantileSketch.fromBytes(bytes.array());
+
+        assertEquals(10, sketch.quantile(0), 0);
+        assertEquals(10, sketch.quantile(-0.5), 0);
+        assertEquals(30, sketch.quantile(1), 0);
+        assertEquals(30, sketch.quantile(1.5), 0);
+        assertEquals(20, sketch.quantile(0.5), 0);
+        assertTrue(sketch.quantile(0.25) > 10 && sketch.quantile(0.25) < 20);
+        assertTrue(sketch.quantile(0.75) > 20 && sketch.quantile(0.75) < 30);
+    }
+
+    @Test
+    public void size_isBounded() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (double value : skewedValues(new Random(4), VALUES)) sketch.add(value);
+        assertTrue(sketch.toBytes().length < 24 + 16 * 2 * QuantileSketch.COMPRESSION);
+    }
+
+    // Log-normal values, e.g. particulate matter readings
+    private static double[] skewedValues(Random random, int count) {
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) values[i] = 20 * Math.exp(random.nextGaussian());
+        return values;
+    }
+
+    private static void assertWithinRank(double[] values, QuantileSketch sketch) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        for (double q : QUANTILES) {
+            double estimate = sketch.quantile(q);
+            // Rank of the estimate among the exact values
+            int rank = Arrays.binarySearch(sorted, estimate);
+            if (rank < 0) rank = -rank - 1;
+            assertEquals("q=" + q, q, (double) rank / sorted.length, RANK_TOLERANCE);
+            assertEquals("cdf at q=" + q, q, sketch.cdf(sorted[(int) (q * sorted.length)]), RANK_TOLERANCE);
+        }
+    }
+}
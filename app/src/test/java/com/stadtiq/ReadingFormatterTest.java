@@ -0,0 +1,84 @@
+package com.stadtiq;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Local unit tests for {@link ReadingFormatter} and {@link UnitSystem}.
+ */
+public class ReadingFormatterTest {
+
+    private static final int CO2 = ReadingStore.metricIndex(ReadingStore.KEY_CO2);
+    private static final int O2 = ReadingStore.metricIndex(ReadingStore.KEY_O2);
+    private static final int SO2 = ReadingStore.metricIndex(ReadingStore.KEY_SO2);
+    private static final int CH4 = ReadingStore.metricIndex(ReadingStore.KEY_CH4);
+    private static final int P = ReadingStore.metricIndex(ReadingStore.KEY_P);
+    private static final int TD = ReadingStore.metricIndex(ReadingStore.KEY_TD);
+    private static final int T = ReadingStore.metricIndex(ReadingStore.KEY_T);
+
+    private static final UnitSystem STORED = UnitSystem.of(0);
+    private final ReadingFormatter english = ReadingFormatter.forLocale(Locale.ENGLISH);
+    private final ReadingFormatter german = ReadingFormatter.forLocale(Locale.GERMAN);
+
+    @Test
+    public void format_storedUnits() {
+        assertEquals("480 ppm", english.format(STORED, CO2, 480));
+        assertEquals("1010.0 hPa", english.format(STORED, P, 1010));
+        assertEquals("9.5 °C", english.format(STORED, TD, 9.5));
+        // "0.0#": one decimal at least, two at most
+        assertEquals("20.6 %", english.format(STORED, O2, 20.6));
+        assertEquals("20.88 %", english.format(STORED, O2, 20.88));
+        assertEquals("1.95 ppm", english.format(STORED, CH4, 1.95));
+        assertEquals("N/A", english.format(STORED, CO2, Double.NaN));
+    }
+
+    @Test
+    public void format_localeSymbolsAndRounding() {
+        assertEquals("1010,0 hPa", german.format(STORED, P, 1010));
+        assertEquals("-3,5", german.formatNumber(STORED, TD, -3.46));
+        // Rounds to zero without a sign
+        assertEquals("0.0", english.formatNumber(STORED, TD, -0.04));
+        assertEquals("10.0", english.formatNumber(STORED, TD, 9.96));
+        assertEquals("1", english.formatNumber(STORED, CO2, 0.5));
+    }
+
+    @Test
+    public void format_convertedUnits() {
+        UnitSystem fahrenheit = UnitSystem.of(UnitSystem.FAHRENHEIT);
+        assertEquals("49.1 °F", english.format(fahrenheit, TD, 9.5));
+        assertEquals("-40.0 °F", english.format(fahrenheit, T, -40));
+        // Pressure is unaffected by the temperature flag
+        assertEquals("1010.0 hPa", english.format(fahrenheit, P, 1010));
+
+        UnitSystem inHg = UnitSystem.of(UnitSystem.INCHES_OF_MERCURY);
+        assertEquals("29.92 inHg", english.format(inHg, P, 1013.25));
+
+        UnitSystem mass = UnitSystem.of(UnitSystem.MASS_CONCENTRATION);
+        assertEquals("864 mg/m³", english.format(mass, CO2, 480));
+        assertEquals("19.7 µg/m³", english.format(mass, SO2, 7.5));
+        assertEquals("1.44 mg/m³", english.format(mass, CH4, 2.2));
+        assertEquals("N/A", english.format(mass, CO2, Double.NaN));
+    }
+
+    @Test
+    public void format_writesIntoBuffer() {
+        char[] buffer = new char[ReadingFormatter.MAX_LENGTH];
+        int length = english.format(UnitSystem.of(UnitSystem.ALL_FLAGS), P, 1010, buffer);
+        assertEquals("29.83 inHg", new String(buffer, 0, length));
+        // A shorter reading overwrites the start of the same buffer
+        length = english.format(STORED, CO2, 412, buffer);
+        assertEquals("412 ppm", new String(buffer, 0, length));
+    }
+
+    @Test
+    public void of_sharesInstancesAndIgnoresUnknownBits() {
+        assertSame(UnitSystem.of(UnitSystem.FAHRENHEIT), UnitSystem.of(UnitSystem.FAHRENHEIT | 64));
+        assertSame(english, ReadingFormatter.forLocale(Locale.ENGLISH));
+        assertEquals(UnitSystem.ALL_FLAGS, UnitSystem.of(-1).getFlags());
+        assertEquals(ReadingStore.unit(P), STORED.unit(P));
+    }
+}
@@ -0,0 +1,189 @@
+package com.stadtiq;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Local unit tests for the sensor feed ingestion path ({@link ReadingFeedParser} and {@link ReadingIngestor}).
+ */
+public class ReadingIngestorTest {
+
+    // Required sustained rate of the ingestion path on a single core
+    private static final long BENCHMARK_READINGS = 1_000_000;
+    private static final long BENCHMARK_BUDGET_MILLIS = 60_000;
+    // Wall-clock benchmarks only run on request (STADTIQ_BENCHMARKS=true), not on shared CI machines
+    private static final boolean RUN_BENCHMARKS = Boolean.parseBoolean(System.getenv("STADTIQ_BENCHMARKS"));
+
+    private CityCatalog catalog;
+    private ReadingStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        catalog = TestCatalogs.twoCities();
+        store = TestCatalogs.emptyStore(catalog);
+    }
+
+    @Test
+    public void ingest_writesReadingsIntoStore() throws IOException {
+        String payload = "[\n"
+                + " {\"city\": \"Braunschweig\", \"district\": \"Weststadt\", \"metric\": \"CO₂\", \"value\": 412.5, \"timestamp\": 1000},\n"
+                + " {\"timestamp\": 1000, \"value\": -3.25e1, \"metric\": \"T\", \"district\": \"S\\u00fcdstadt\", \"city\": \"Braunschweig\"},\n"
+                + " {\"city\": \"Wolfsburg\", \"district\": null, \"metric\": \"p\", \"value\": 1013, \"unit\": {\"name\": \"hPa\", \"tags\": [\"a]\", 1]}}\n"
+                + "]";
+        ReadingIngestor ingestor = new ReadingIngestor(catalog, store);
+
+        assertEquals(3, ingestor.ingest(new StringReader(payload)));
+
+        int weststadt = catalog.findDistrict(catalog.findCity("Braunschweig"), "Weststadt");
+        int suedstadt = catalog.findDistrict(catalog.findCity("Braunschweig"), "Südstadt");
+        assertEquals(412.5, store.get(weststadt, ReadingStore.metricIndex("CO₂")), 0);
+        assertEquals(-32.5, store.get(suedstadt, ReadingStore.metricIndex("T")), 0);
+        assertEquals(1013, store.get(store.overviewRow(catalog.findCity("Wolfsburg")), ReadingStore.metricIndex("p")), 0);
+    }
+
+    @Test
+    public void ingest_skipsUnknownAndIncompleteReadings() throws IOException {
+        String payload = "[{\"city\": \"Hannover\", \"metric\": \"p\", \"value\": 1},"
+                + "{\"city\": \"Braunschweig\", \"district\": \"Mitte\", \"metric\": \"p\", \"value\": 1},"
+                + "{\"city\": \"Braunschweig\", \"metric\": \"NO₂\", \"value\": 1},"
+                + "{\"city\": \"Braunschweig\", \"metric\": \"p\", \"value\": null},"
+                + "{}]";
+        ReadingIngestor ingestor = new ReadingIngestor(catalog, store);
+
+        assertEquals(0, ingestor.ingest(new StringReader(payload)));
+        assertEquals(5, ingestor.getRejectedCount());
+    }
+
+    @Test
+    public void ingest_rejectsDerivedMetricsAndDerivesThem() throws IOException {
+        ReadingIngestor ingestor = new ReadingIngestor(catalog, store);
+        ingestor.ingest(new StringReader("[{\"city\": \"Wolfsburg\", \"district\": \"Stadtmitte\", \"metric\": \"Td\", \"value\": 30},"
+                + "{\"city\": \"Wolfsburg\", \"district\": \"Stadtmitte\", \"metric\": \"T\", \"value\": 20},"
+                + "{\"city\": \"Wolfsburg\", \"district\": \"Stadtmitte\", \"metric\": \"RH\", \"value\": 50}]"));
+
+        int stadtmitte = catalog.findDistrict(catalog.findCity("Wolfsburg"), "Stadtmitte");
+        assertEquals(1, ingestor.getRejectedCount());
+        assertEquals(9.26, store.get(stadtmitte, ReadingStore.metricIndex("Td")), 0.01);
+        assertEquals(8.62, store.get(stadtmitte, ReadingStore.metricIndex("ABS_HUMIDITY_KEY")), 0.01);
+    }
+
+    @Test
+    public void ingest_keepsNewestReading() throws IOException {
+        ReadingIngestor ingestor = new ReadingIngestor(catalog, store);
+        ingestor.ingest(new StringReader("[{\"city\": \"Wolfsburg\", \"district\": \"Stadtmitte\", \"metric\": \"lx\", \"value\": 20, \"timestamp\": 2000},"
+                + "{\"city\": \"Wolfsburg\", \"district\": \"Stadtmitte\", \"metric\": \"lx\", \"value\": 10, \"timestamp\": 1000}]"));
+
+        int stadtmitte = catalog.findDistrict(catalog.findCity("Wolfsburg"), "Stadtmitte");
+        assertEquals(20, store.get(stadtmitte, ReadingStore.metricIndex("lx")), 0);
+        assertEquals(1, ingestor.getStaleCount());
+    }
+
+    @Test
+    public void ingest_writesReadingsBeforeSyntaxError() {
+        ReadingIngestor ingestor = new ReadingIngestor(catalog, store);
+        try {
+            ingestor.ingest(new StringReader("[{\"city\": \"Wolfsburg\", \"metric\": \"p\", \"value\": 999}, {\"city\": "));
+            fail("Truncated payload must be reported");
+        } catch (IOException expected) {
+            // Expected
+        }
+        assertEquals(999, store.get(store.overviewRow(catalog.findCity("Wolfsburg")), ReadingStore.metricIndex("p")), 0);
+    }
+
+    /**
+     * Streams one million readings through parser, ingestor and store on the test thread and
+     * requires them to finish within a minute. Skipped unless benchmarks are enabled.
+     */
+    @Test
+    public void ingest_sustainsOneMillionReadingsPerMinute() throws IOException {
+        assumeTrue("Benchmarks disabled; set STADTIQ_BENCHMARKS=true", RUN_BENCHMARKS);
+        // Warm up the JIT with a smaller payload
+        new ReadingIngestor(catalog, store).ingest(new GeneratedFeedReader(catalog, 50_000));
+        ReadingIngestor ingestor = new ReadingIngestor(catalog, store);
+
+        long start = System.nanoTime();
+        long written = ingestor.ingest(new GeneratedFeedReader(catalog, BENCHMARK_READINGS));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(BENCHMARK_READINGS, written);
+        assertTrue("Ingestion took " + elapsedMillis + " ms", elapsedMillis < BENCHMARK_BUDGET_MILLIS);
+    }
+
+    /**
+     * Produces a feed payload of {@code count} readings on the fly, cycling through all
+     * districts and stored metrics with increasing timestamps, so the payload is never held in memory.
+     */
+    private static final class GeneratedFeedReader extends Reader {
+        private final CityCatalog catalog;
+        private final long count;
+        private final StringBuilder pending = new StringBuilder(256);
+        private int pendingPos;
+        private long produced;
+        private boolean closed;
+
+        private static final int[] STORED_METRICS = storedMetrics();
+
+        private static int[] storedMetrics() {
+            int[] metrics = new int[ReadingStore.METRIC_COUNT];
+            int count = 0;
+            for (int m = 0; m < ReadingStore.METRIC_COUNT; m++) {
+                if (!ReadingStore.isDerived(m)) metrics[count++] = m;
+            }
+            return Arrays.copyOf(metrics, count);
+        }
+
+        GeneratedFeedReader(CityCatalog catalog, long count) {
+            this.catalog = catalog;
+            this.count = count;
+            pending.append('[');
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            int n = 0;
+            while (n < len) {
+                if (pendingPos == pending.length()) {
+                    if (closed) break;
+                    nextChunk();
+                }
+                int chunk = Math.min(len - n, pending.length() - pendingPos);
+                pending.getChars(pendingPos, pendingPos + chunk, cbuf, off + n);
+                pendingPos += chunk;
+                n += chunk;
+            }
+            return n == 0 ? -1 : n;
+        }
+
+        private void nextChunk() {
+            pending.setLength(0);
+            pendingPos = 0;
+            if (produced == count) {
+                pending.append(']');
+                closed = true;
+                return;
+            }
+            int district = (int) (produced % catalog.getTotalDistrictCount());
+            int metric = STORED_METRICS[(int) ((produced / catalog.getTotalDistrictCount()) % STORED_METRICS.length)];
+            if (produced > 0) pending.append(",\n");
+            pending.append("{\"city\":\"").append(catalog.getCityName(catalog.getCityOfDistrict(district)))
+                    .append("\",\"district\":\"").append(catalog.getDistrictName(district))
+                    .append("\",\"metric\":\"").append(ReadingStore.METRIC_KEYS[metric])
+                    .append("\",\"value\":").append(400 + (produced % 1000) / 10.0)
+                    .append(",\"timestamp\":").append(1_700_000_000_000L + produced).append('}');
+            produced++;
+        }
+
+        @Override
+        public void close() { }
+    }
+}
@@ -0,0 +1,30 @@
+package com.stadtiq;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * Shared fixture of the tests that run against a {@link ReadingStore}: a small catalog of two
+ * cities and an empty store sized for it.
+ */
+final class TestCatalogs {
+
+    // Braunschweig with four districts, Wolfsburg with one
+    private static final String TWO_CITIES =
+            "Braunschweig\tInnere Stadt\tWeststadt\tSüdstadt\tBebelhof\n"
+            + "Wolfsburg\tStadtmitte\n";
+
+    private TestCatalogs() {
+    }
+
+    static CityCatalog twoCities() throws IOException {
+        return CityCatalog.parse(new StringReader(TWO_CITIES));
+    }
+
+    /**
+     * Returns an empty store with a row per district and city of the catalog.
+     */
+    static ReadingStore emptyStore(CityCatalog catalog) {
+        return new ReadingStore(catalog.getTotalDistrictCount(), catalog.getCityCount());
+    }
+}